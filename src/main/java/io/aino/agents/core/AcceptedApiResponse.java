@@ -0,0 +1,37 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+/**
+ * Response of sinks that accept every batch without talking to Aino.io API.
+ */
+final class AcceptedApiResponse implements ApiResponse {
+    static final AcceptedApiResponse INSTANCE = new AcceptedApiResponse();
+
+    private AcceptedApiResponse() {
+    }
+
+    @Override
+    public int getStatus() {
+        return 202;
+    }
+
+    @Override
+    public String getPayload() {
+        return "";
+    }
+}
@@ -18,80 +18,299 @@ package io.aino.agents.core;
 
 import io.aino.agents.core.config.InvalidAgentConfigException;
 import io.aino.agents.core.overloadchecker.SenderOverloadCheckerTask;
-import io.aino.agents.core.overloadchecker.ThreadAmountObserver;
+import io.aino.agents.core.overloadchecker.ThreadCountAwareObserver;
 import io.aino.agents.core.config.AgentConfig;
 import io.aino.agents.core.config.AgentConfigBuilder;
-import io.aino.agents.core.validators.ApplicationValidator;
-import io.aino.agents.core.validators.TransactionValidator;
-import io.aino.agents.core.validators.OperationValidator;
-import io.aino.agents.core.validators.IdTypeValidator;
+import io.aino.agents.core.config.ConfigWatcher;
+import io.aino.agents.core.config.SinkConfig;
+import io.aino.agents.core.validators.CompiledValidator;
+import io.aino.agents.core.validators.ValidationResult;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Main class. Used for creating the agent and logging to aino.io.
  */
-public class Agent implements ThreadAmountObserver {
+public class Agent implements ThreadCountAwareObserver {
 
     private static final Log log = LogFactory.getLog(Agent.class);
 
+    private static final long OVERLOAD_CHECK_INTERVAL = 5000;
+    static final long MAX_SPILL_TIME = 1000;
+    private static ScheduledExecutorService sharedExecutor;
+
     private TransactionDataBuffer dataBuffer;
-    private Map<Thread, Sender> senderThreads;
+    // All buffers. In partitioned mode one per partition, otherwise just dataBuffer.
+    private final TransactionDataBuffer[] buffers;
+    private final AtomicInteger nextPartition = new AtomicInteger();
+    // Ring of preallocated slots and its own sender, null if no ring size is configured.
+    private final TransactionRing ring;
+    private final Sender ringSender;
+    private final List<Sender> senders = new ArrayList<Sender>();
+    private final List<Sender> retiredSenders = new ArrayList<Sender>();
+    private final ScheduledExecutorService executor;
+    private final Executor worker;
     private final AgentConfig agentConfig;
-    private List<TransactionValidator> validators;
-    private Timer overloadCheckerTimer;
-
-    private final int MAX_THREAD_AMOUNT = 5;
-
-    private Agent(AgentConfig config) {
+    private final ApiClient apiClient;
+    private final FanOutApiClient sinks;
+    private final SenderContext senderContext;
+    private final CompiledValidator validator;
+    // Fixed at creation: senders are only started for an agent created enabled.
+    private final boolean enabled;
+    private ConfigWatcher configWatcher;
+    private final ScheduledFuture<?> overloadChecker;
+    private boolean stopped = false;
+
+    private Agent(AgentConfig config, ApiClient client, List<ApiClient> extraSinks, ScheduledExecutorService executor) {
         this.agentConfig = config;
+        this.enabled = config.isEnabled();
+        this.executor = null == executor ? sharedExecutor() : executor;
+        this.worker = createWorker();
+        this.apiClient = null == client ? createApiClient() : client;
+        this.sinks = isEnabled() ? createSinks(extraSinks) : null;
+        this.senderContext = new SenderContext(config, sinks);
 
-        senderThreads = new HashMap<Thread, Sender>();
+        validator = new CompiledValidator(this.agentConfig);
 
         dataBuffer = new TransactionDataBuffer(agentConfig.getSizeThreshold());
-        Sender sender = createSender();
-        senderThreads.put(new Thread(sender), sender);
+        if(isPartitioned()) {
+            // One buffer and one sender per partition keeps each flow in order.
+            buffers = new TransactionDataBuffer[agentConfig.getSenderPartitions()];
+            for(int i = 0; i < buffers.length; i++) {
+                buffers[i] = 0 == i ? dataBuffer : new TransactionDataBuffer(agentConfig.getSizeThreshold());
+                senders.add(createSender(buffers[i]));
+            }
+        } else {
+            buffers = new TransactionDataBuffer[] { dataBuffer };
+            // On virtual threads idle senders cost next to nothing, so all of them are started right away.
+            int senderCount = null == worker ? agentConfig.getMinSenderThreads() : agentConfig.getMaxInFlight();
+            for(int i = 0; i < senderCount; i++) {
+                senders.add(createSender(dataBuffer));
+            }
+        }
+
 
-        validators = new ArrayList<TransactionValidator>();
-        validators.add(new OperationValidator(this.agentConfig));
-        validators.add(new IdTypeValidator(this.agentConfig));
-        validators.add(new ApplicationValidator(this.agentConfig));
+        if(agentConfig.getRingSize() > 0) {
+            ring = new TransactionRing(agentConfig, validator);
+            ringSender = createSender(ring);
+        } else {
+            ring = null;
+            ringSender = null;
+        }
 
-        overloadCheckerTimer = new Timer(true);
-        overloadCheckerTimer.schedule(new SenderOverloadCheckerTask(this, dataBuffer, agentConfig), 5000, 5000);
+        overloadChecker = null != worker || isPartitioned() ? null : this.executor.scheduleWithFixedDelay(
+                new SenderOverloadCheckerTask(this, dataBuffer, agentConfig, senderContext.metrics),
+                OVERLOAD_CHECK_INTERVAL, OVERLOAD_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
 
         if(isEnabled()) {
-            log.info("Aino logger is enabled, starting sender thread.");
-            for (Map.Entry<Thread, Sender> thread: senderThreads.entrySet()) {
-                thread.getKey().start();
+            log.info("Aino logger is enabled, starting senders.");
+            for (Sender sender : senders) {
+                sender.start(this.executor, this.worker);
+            }
+            if(null != ringSender) {
+                ringSender.start(this.executor, this.worker);
             }
+        } else if(null != ring) {
+            ring.close();
         }
         log.info("Aino logger initialized.");
     }
 
-    public int getSenderThreadCount() {
-        return this.senderThreads.size();
+    @Override
+    public synchronized int getSenderThreadCount() {
+        return this.senders.size();
     }
 
     /**
-     * Gracefully stop the sender threads.
+     * Gets the runtime metrics of this agent.
+     *
+     * @return metrics
+     */
+    public AgentMetrics getMetrics() {
+        return this.senderContext.metrics;
+    }
+
+    /**
+     * Sends the transactions added so far without waiting for batches to fill up.
+     *
+     * @param timeout maximum time in milliseconds to keep trying
+     * @return future completing with true when the transactions have been delivered, spilled or dropped,
+     * or with false when the timeout passes first
+     */
+    public Future<Boolean> flush(long timeout) {
+        long deadline = deadline(timeout);
+        long target = getAddedCount();
+        senderContext.requestFlush(target);
+        synchronized (this) {
+            for(Sender sender : senders) {
+                sender.flush();
+            }
+            if(null != ringSender) {
+                ringSender.flush();
+            }
+        }
+        return new FlushFuture(senderContext.metrics, target, deadline);
+    }
+
+    /**
+     * Gracefully stop the senders.
+     * Waits until the remaining data has been sent.
      */
     public void stop() {
-        overloadCheckerTimer.cancel();
+        stop(Long.MAX_VALUE);
+    }
 
-        for(Map.Entry<Thread, Sender> thread : senderThreads.entrySet()) {
-            thread.getValue().stop();
+    /**
+     * Stops the senders, sending as much of the remaining data as possible within the given time.
+     * The last tenth of the time, at most {@value #MAX_SPILL_TIME} ms, is reserved for storing
+     * what is left to the dead-letter store. Without a dead-letter store it is dropped.
+     *
+     * @param timeout maximum time to wait in milliseconds
+     * @return counts of delivered, spilled and dropped transactions
+     */
+    public ShutdownReport stop(long timeout) {
+        long deadline = deadline(timeout);
+        long drainDeadline = deadline - Math.min(timeout / 10, MAX_SPILL_TIME);
+
+        List<Sender> stopping;
+        synchronized (this) {
+            stopped = true;
+            if(null != overloadChecker) {
+                overloadChecker.cancel(false);
+            }
+            closeConfigWatcher();
+
+            for(Sender sender : senders) {
+                sender.stop();
+            }
+
+            stopping = new ArrayList<Sender>(senders);
+            stopping.addAll(retiredSenders);
+            if(null != ringSender) {
+                ring.close();
+                ringSender.stop();
+                stopping.add(ringSender);
+            }
+            senders.clear();
+            retiredSenders.clear();
+        }
+
+        // Wait without holding the lock: the senders may share a single thread with the overload checker.
+        if(!awaitSenders(stopping, drainDeadline)) {
+            log.warn("Could not send all data to Aino.io in time. Storing the rest to dead-letter store.");
+            for(Sender sender : stopping) {
+                sender.abort();
+            }
+            spillBuffer();
+            awaitSenders(stopping, deadline);
+        }
+
+        if(null != senderContext.encoder) {
+            senderContext.encoder.shutdown();
+        }
+        if(null != sinks) {
+            sinks.close(Math.max(0, Math.min(FanOutApiClient.CLOSE_TIMEOUT, deadline - System.currentTimeMillis())));
+        }
+        if(apiClient instanceof Closeable) {
+            try {
+                ((Closeable) apiClient).close();
+            } catch (IOException e) {
+                log.warn("Failed to close Aino.io API client.", e);
+            }
         }
 
-        for(Map.Entry<Thread, Sender> thread : senderThreads.entrySet()) {
+        ShutdownReport report = new ShutdownReport(senderContext.metrics, getAddedCount());
+        log.info("Aino logger stopped: " + report);
+        return report;
+    }
+
+    private static long deadline(long timeout) {
+        long now = System.currentTimeMillis();
+        return timeout > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeout;
+    }
+
+    private static boolean awaitSenders(List<Sender> senders, long deadline) {
+        for(Sender sender : senders) {
             try {
-                thread.getKey().join();
-            } catch (InterruptedException ignored) { }
+                if(!sender.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()))) {
+                    return false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void spillBuffer() {
+        for(TransactionDataBuffer buffer : buffers) {
+            spillBuffer(buffer);
+        }
+        if(null != ring) {
+            spillBuffer(ring);
+        }
+    }
+
+    private void spillBuffer(TransactionSource buffer) {
+        List<TransactionSerializable> batch;
+        while(!(batch = buffer.drainEntries(agentConfig.getBatchMaxCount(), agentConfig.getBatchMaxBytes())).isEmpty()) {
+            byte[] gzipped = null;
+            if(null != senderContext.deadLetterStore) {
+                try {
+                    gzipped = Gzip.compress(buffer.serialize(batch).getBytes());
+                } catch (IOException e) {
+                    log.error("Failed to store LogEntries because the JSON serialization failed.", e);
+                }
+            }
+            senderContext.spill(batch, gzipped);
+        }
+    }
+
+    private long getAddedCount() {
+        long count = 0;
+        for(TransactionDataBuffer buffer : buffers) {
+            count += buffer.getAddedCount();
         }
+        if(null != ring) {
+            count += ring.getAddedCount();
+        }
+        return count;
+    }
+
+    private boolean isPartitioned() {
+        return this.agentConfig.getSenderPartitions() > 0;
+    }
 
-        senderThreads.clear();
+    /**
+     * Picks the buffer for a transaction.
+     * In partitioned mode transactions of the same flow always go to the same partition.
+     * Transactions without a flow id are spread evenly.
+     */
+    private TransactionDataBuffer bufferFor(Transaction entry) {
+        return buffers[partitionOf(entry)];
+    }
+
+    private int partitionOf(Transaction entry) {
+        if(1 == buffers.length) {
+            return 0;
+        }
+        String flowId = entry.getFlowId();
+        int hash = null == flowId ? nextPartition.getAndIncrement() : flowId.hashCode();
+        return (hash & Integer.MAX_VALUE) % buffers.length;
     }
 
     /**
@@ -105,11 +324,13 @@ public class Agent implements ThreadAmountObserver {
      * Returns new entry.
      * Returned Transaction should be populated with applications, operations, etc before passing
      * to {@link #addTransaction(Transaction)}.
+     * When recycling is enabled, the transaction must not be used after it has been added.
      *
      * @return new Transaction for logging
      */
     public Transaction newTransaction() {
-        return new Transaction(this.agentConfig);
+        TransactionPool pool = senderContext.pool;
+        return null == pool ? new Transaction(this.agentConfig) : pool.transaction();
     }
 
     /**
@@ -121,25 +342,235 @@ public class Agent implements ThreadAmountObserver {
         if(!isEnabled()) {
             return;
         }
-        validateTransaction(entry);
-        TransactionSerializable les = TransactionSerializable.from(entry);
-        dataBuffer.addTransaction(les);
+        if(!entry.isResolved()) {
+            validateTransaction(entry);
+        }
+        TransactionSerializable les = serializable(entry);
+        TransactionDataBuffer buffer = bufferFor(entry);
+        recycle(entry);
+        buffer.addTransaction(les);
         log.debug("Added log entry.");
     }
 
+    /**
+     * Adds log entry to be sent to aino.io, reporting a validation failure as a result code instead of an exception.
+     *
+     * @param entry log entry to be sent
+     * @return {@link ValidationResult#VALID} if the entry was added or this agent is disabled,
+     * otherwise the reason the entry was not added
+     */
+    public ValidationResult tryAddTransaction(Transaction entry) {
+        if(!isEnabled()) {
+            return ValidationResult.VALID;
+        }
+        if(!entry.isResolved()) {
+            ValidationResult result = validator.check(entry);
+            if(!result.isValid()) {
+                return result;
+            }
+        }
+        TransactionSerializable les = serializable(entry);
+        TransactionDataBuffer buffer = bufferFor(entry);
+        recycle(entry);
+        buffer.addTransaction(les);
+        return ValidationResult.VALID;
+    }
+
+    /**
+     * Adds log entry to be sent to aino.io, with a future for finding out whether it got there.
+     * Tracking the delivery is opt-in: transactions added with {@link #addTransaction(Transaction)} cost nothing extra.
+     *
+     * @param entry log entry to be sent
+     * @return future completing when the entry has been delivered, spilled or dropped.
+     * Completes with {@link DeliveryOutcome#DROPPED} right away if this agent is disabled.
+     */
+    public Future<DeliveryOutcome> addTransactionAsync(Transaction entry) {
+        if(!isEnabled()) {
+            DeliveryFuture future = new DeliveryFuture();
+            future.complete(DeliveryOutcome.DROPPED);
+            return future;
+        }
+        if(!entry.isResolved()) {
+            validateTransaction(entry);
+        }
+        TransactionSerializable les = serializable(entry);
+        DeliveryFuture future = senderContext.track(les);
+        TransactionDataBuffer buffer = bufferFor(entry);
+        recycle(entry);
+        buffer.addTransaction(les);
+        log.debug("Added log entry.");
+        return future;
+    }
+
+    /**
+     * Adds several log entries to be sent to aino.io.
+     * All transactions are validated first, the valid ones are then added to the buffer in one go and
+     * the senders are woken up once. Invalid transactions are left out and reported in the result
+     * instead of failing the whole call.
+     * When recycling is enabled, the added transactions must not be used after this call.
+     *
+     * @param entries log entries to be sent
+     * @return number of added transactions and the rejected ones.
+     * Nothing is added if this agent is disabled.
+     */
+    public BulkAddResult addTransactions(Collection<? extends Transaction> entries) {
+        if(!isEnabled() || entries.isEmpty()) {
+            return new BulkAddResult(0, null);
+        }
+        List<List<TransactionSerializable>> partitions = new ArrayList<List<TransactionSerializable>>(buffers.length);
+        for(int i = 0; i < buffers.length; i++) {
+            partitions.add(new ArrayList<TransactionSerializable>(1 == buffers.length ? entries.size() : 16));
+        }
+        List<BulkAddResult.Rejection> rejections = null;
+        int added = 0;
+        for(Transaction entry : entries) {
+            ValidationResult result = entry.isResolved() ? ValidationResult.VALID : validator.check(entry);
+            if(!result.isValid()) {
+                if(null == rejections) {
+                    rejections = new ArrayList<BulkAddResult.Rejection>();
+                }
+                rejections.add(new BulkAddResult.Rejection(entry, result, validator));
+                continue;
+            }
+            partitions.get(partitionOf(entry)).add(serializable(entry));
+            recycle(entry);
+            added++;
+        }
+        for(int i = 0; i < buffers.length; i++) {
+            buffers[i].addTransactions(partitions.get(i));
+        }
+        if(log.isDebugEnabled()) {
+            log.debug(new StringBuilder("Added ").append(added).append(" log entries."));
+        }
+        return new BulkAddResult(added, rejections);
+    }
+
+    private TransactionSerializable serializable(Transaction entry) {
+        TransactionPool pool = senderContext.pool;
+        return null == pool ? TransactionSerializable.from(entry) : TransactionSerializable.from(entry, pool.entry());
+    }
+
+    private void recycle(Transaction entry) {
+        if(null != senderContext.pool) {
+            senderContext.pool.release(entry);
+        }
+    }
+
+    /**
+     * Gets the ring of preallocated transaction slots, for logging without allocating per transaction.
+     * Transactions published to the ring are sent alongside those added with {@link #addTransaction(Transaction)}.
+     *
+     * The ring of a disabled or stopped agent is closed: claiming a slot from it throws {@link AgentCoreException}.
+     *
+     * @return ring
+     * @throws AgentCoreException if no ring size is configured
+     */
+    public TransactionRing getRing() {
+        if(null == ring) {
+            throw new AgentCoreException("No transaction ring is configured.");
+        }
+        return ring;
+    }
+
+    /**
+     * Adds a listener notified once per batch about the outcome of sending it.
+     *
+     * @param listener listener to add
+     */
+    public void addBatchListener(BatchListener listener) {
+        senderContext.addBatchListener(listener);
+    }
+
     private void validateTransaction(Transaction trans) {
-        for(TransactionValidator validator : this.validators) {
-            validator.validate(trans);
+        ValidationResult result = validator.check(trans);
+        if(!result.isValid()) {
+            throw validator.toException(trans, result);
         }
     }
 
+    /**
+     * Gets a pre-validated handle for an application.
+     *
+     * @param key application key
+     * @return handle
+     * @throws AgentCoreException if the application is not configured
+     */
+    public KeyHandle application(String key) {
+        return handle(KeyHandle.Type.APPLICATION, key, this.agentConfig.getApplications().getEntry(key), "Application");
+    }
+
+    /**
+     * Gets a pre-validated handle for an operation.
+     *
+     * @param key operation key
+     * @return handle
+     * @throws AgentCoreException if the operation is not configured
+     */
+    public KeyHandle operation(String key) {
+        return handle(KeyHandle.Type.OPERATION, key, this.agentConfig.getOperations().getEntry(key), "Operation");
+    }
+
+    /**
+     * Gets a pre-validated handle for a payload type.
+     *
+     * @param key payload type key
+     * @return handle
+     * @throws AgentCoreException if the payload type is not configured
+     */
+    public KeyHandle payloadType(String key) {
+        return handle(KeyHandle.Type.PAYLOAD_TYPE, key, this.agentConfig.getPayloadTypes().getEntry(key), "Payload type");
+    }
+
+    /**
+     * Gets a pre-validated handle for an id type.
+     *
+     * @param key id type key
+     * @return handle
+     * @throws AgentCoreException if the id type is not configured
+     */
+    public KeyHandle idType(String key) {
+        return handle(KeyHandle.Type.ID_TYPE, key, this.agentConfig.getIdTypes().getEntry(key), "IdType");
+    }
+
+    private static KeyHandle handle(KeyHandle.Type type, String key, String name, String description) {
+        if(null == name) {
+            throw new AgentCoreException(description + " does not exist: " + key);
+        }
+        return new KeyHandle(type, key, name);
+    }
+
+    /**
+     * Creates a reusable template for transactions between two applications.
+     *
+     * @param from 'from application' handle
+     * @param to 'to application' handle
+     * @param operation operation handle, or null
+     * @return template
+     */
+    public TransactionTemplate newTemplate(KeyHandle from, KeyHandle to, KeyHandle operation) {
+        return newTemplate(from, to, operation, null);
+    }
+
+    /**
+     * Creates a reusable template for transactions between two applications.
+     *
+     * @param from 'from application' handle
+     * @param to 'to application' handle
+     * @param operation operation handle, or null
+     * @param payloadType payload type handle, or null
+     * @return template
+     */
+    public TransactionTemplate newTemplate(KeyHandle from, KeyHandle to, KeyHandle operation, KeyHandle payloadType) {
+        return new TransactionTemplate(this, from, to, operation, payloadType);
+    }
+
     /**
      * Checks if this agent is enabled.
      *
      * @return true if enabled
      */
     public boolean isEnabled() {
-        return this.agentConfig.isEnabled();
+        return this.enabled;
     }
 
     /**
@@ -171,6 +602,36 @@ public class Agent implements ThreadAmountObserver {
         return this.agentConfig.getPayloadTypes().entryExists(payloadTypeKey);
     }
 
+    /**
+     * Reloads the configuration of this agent whenever the given file changes.
+     * New keys and tuning values take effect without pausing, an invalid file is logged and ignored.
+     * The file is checked on the executor of this agent. Watching ends when the agent is stopped.
+     *
+     * @param file configuration file, usually the one this agent was created from
+     * @throws AgentCoreException if the file cannot be watched
+     */
+    public synchronized void watchConfiguration(File file) {
+        closeConfigWatcher();
+        try {
+            configWatcher = new ConfigWatcher(file, agentConfig);
+        } catch (IOException e) {
+            throw new AgentCoreException("Could not watch configuration file " + file, e);
+        }
+        configWatcher.start(this.executor);
+    }
+
+    private void closeConfigWatcher() {
+        if(null == configWatcher) {
+            return;
+        }
+        try {
+            configWatcher.close();
+        } catch (IOException e) {
+            log.warn("Failed to stop watching the configuration file.", e);
+        }
+        configWatcher = null;
+    }
+
     /**
      * Gets the configration object for this agent.
      *
@@ -190,26 +651,121 @@ public class Agent implements ThreadAmountObserver {
     }
 
     @Override
-    public void increaseThreads() {
+    public synchronized void increaseThreads() {
         log.info("increaseThreads() called.");
-        if(MAX_THREAD_AMOUNT <= senderThreads.size())
+        int maxSenders = null == worker ? this.agentConfig.getMaxSenderThreads() : this.agentConfig.getMaxInFlight();
+        if(stopped || isPartitioned() || maxSenders <= senders.size())
             return;
 
-        Sender sender = createSender();
-        Thread thread = new Thread(sender);
-        senderThreads.put(thread, sender);
+        Sender sender = createSender(dataBuffer);
+        senders.add(sender);
 
-        thread.start();
-        log.info("Added new sender thread to Aino.io logger core.");
+        if(isEnabled()) {
+            sender.start(this.executor, this.worker);
+        }
+        log.info("Added new sender to Aino.io logger core.");
     }
 
     @Override
-    public void decreaseThreads() {
-        log.info("Not implemented yet!");
+    public synchronized void decreaseThreads() {
+        log.info("decreaseThreads() called.");
+        if(isPartitioned() || Math.max(1, this.agentConfig.getMinSenderThreads()) >= senders.size())
+            return;
+
+        Sender sender = senders.remove(senders.size() - 1);
+        // The sender finishes the batch it has taken and leaves the rest of the buffer to the others.
+        sender.retire();
+
+        Iterator<Sender> retired = retiredSenders.iterator();
+        while(retired.hasNext()) {
+            try {
+                if(retired.next().awaitTermination(0)) {
+                    retired.remove();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        retiredSenders.add(sender);
+        log.info("Retired a sender from Aino.io logger core.");
     }
 
-    private Sender createSender() {
-        return new Sender(this.agentConfig, this.dataBuffer, new DefaultApiClient(this.agentConfig));
+    /**
+     * Gets the executor shared by all agents that are not given their own.
+     * Its threads are daemon threads, so it does not need to be shut down.
+     */
+    private static synchronized ScheduledExecutorService sharedExecutor() {
+        if(null == sharedExecutor) {
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            sharedExecutor = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "aino-sender-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sharedExecutor;
+    }
+
+    private Executor createWorker() {
+        if(!this.agentConfig.isVirtualThreadsEnabled()) {
+            return null;
+        }
+        if(!VirtualThreads.isAvailable()) {
+            log.warn("Virtual threads need Java 21 or later. Sending on platform threads instead.");
+            return null;
+        }
+        return new ThreadPerTaskExecutor(VirtualThreads.factory());
+    }
+
+    private Sender createSender(TransactionSource buffer) {
+        return new Sender(this.agentConfig, buffer, this.apiClient, this.senderContext);
+    }
+
+    private ApiClient createApiClient() {
+        if(this.agentConfig.getLogServiceUris().size() > 1) {
+            return new LoadBalancingApiClient(this.agentConfig);
+        }
+        return new DefaultApiClient(this.agentConfig);
+    }
+
+    private FanOutApiClient createSinks(List<ApiClient> extraSinks) {
+        // Sinks get threads of their own, so a slow sink cannot hold the sender threads.
+        // Virtual threads are not shared, so sinks may use the worker of the senders.
+        FanOutApiClient fanOut = null == this.worker ? new FanOutApiClient() : new FanOutApiClient(this.worker);
+        for(SinkConfig sink : this.agentConfig.getSinks()) {
+            fanOut.addSink(createSink(sink), sink.getQueueSize());
+        }
+        for(ApiClient sink : extraSinks) {
+            fanOut.addSink(sink, SinkConfig.DEFAULT_QUEUE_SIZE);
+        }
+        return fanOut.isEmpty() ? null : fanOut;
+    }
+
+    private ApiClient createSink(SinkConfig sink) {
+        if(SinkConfig.Type.FILE == sink.getType()) {
+            return new RollingFileApiClient(new File(sink.getTarget()), this.agentConfig.isGzipEnabled(),
+                    sink.getMaxFileBytes(), sink.getMaxFiles());
+        }
+
+        try {
+            Class<?> type = Class.forName(sink.getTarget());
+            if(!ApiClient.class.isAssignableFrom(type)) {
+                throw new InvalidAgentConfigException(sink.getTarget() + " does not implement " + ApiClient.class.getName());
+            }
+            try {
+                return (ApiClient) type.getConstructor(AgentConfig.class).newInstance(this.agentConfig);
+            } catch (NoSuchMethodException e) {
+                return (ApiClient) type.getConstructor().newInstance();
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new InvalidAgentConfigException("Could not create sink " + sink.getTarget(), e);
+        }
     }
 
     /**
@@ -217,6 +773,9 @@ public class Agent implements ThreadAmountObserver {
      */
     public static class LoggerFactory {
         private AgentConfigBuilder builder;
+        private ApiClient apiClient;
+        private final List<ApiClient> sinks = new ArrayList<ApiClient>();
+        private ScheduledExecutorService executor;
 
         /**
          * Sets the configuration builder this factory should use.
@@ -229,6 +788,42 @@ public class Agent implements ThreadAmountObserver {
             return this;
         }
 
+        /**
+         * Sets the client used for sending batches instead of the configured Aino.io API address.
+         *
+         * @param apiClient client to use
+         * @return this factory
+         */
+        public LoggerFactory setApiClient(ApiClient apiClient) {
+            this.apiClient = apiClient;
+            return this;
+        }
+
+        /**
+         * Adds a sink that receives a copy of every new batch, in addition to sinks in the configuration.
+         * Sinks that implement {@link Closeable} are closed when the agent stops.
+         *
+         * @param sink sink to add
+         * @return this factory
+         */
+        public LoggerFactory addSink(ApiClient sink) {
+            this.sinks.add(sink);
+            return this;
+        }
+
+        /**
+         * Sets the executor the agent runs its senders and sinks on.
+         * By default, all agents in the JVM share one small pool of daemon threads.
+         * The agent does not shut down the given executor.
+         *
+         * @param executor executor to use
+         * @return this factory
+         */
+        public LoggerFactory setExecutor(ScheduledExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
         /**
          * Builds the logger agent.
          *
@@ -243,7 +838,7 @@ public class Agent implements ThreadAmountObserver {
                 agentConfig = builder.build();
             }
 
-            return new Agent(agentConfig);
+            return new Agent(agentConfig, apiClient, sinks, executor);
         }
 
     }
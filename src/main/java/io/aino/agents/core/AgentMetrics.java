@@ -0,0 +1,273 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+/**
+ * Runtime metrics of an {@link Agent}.
+ *
+ * Averages are exponentially weighted moving averages, so recent behaviour weighs more than old.
+ * Arrival rate and queue depth are sampled periodically by the sender pool controller,
+ * send latency is recorded on every request to Aino.io API.
+ */
+public class AgentMetrics {
+    static final double EWMA_WEIGHT = 0.3;
+
+    private double arrivalRate = 0;
+    private double queueDepth = 0;
+    private double sendLatency = 0;
+    private int senderThreads = 0;
+    private long sentTransactions = 0;
+    private long sendRequests = 0;
+    private int batchSize = 0;
+    private int encodeQueueDepth = 0;
+    private int sendQueueDepth = 0;
+    private long deliveredTransactions = 0;
+    private long spilledTransactions = 0;
+    private long droppedTransactions = 0;
+
+    private long lastAddedCount = 0;
+    private long lastSampleTime = 0;
+    private boolean sampled = false;
+
+    /**
+     * Takes a sample of the buffer state.
+     * Called periodically by {@link io.aino.agents.core.overloadchecker.SenderOverloadCheckerTask}.
+     *
+     * @param currentQueueDepth number of transactions waiting in the buffer
+     * @param addedCount total number of transactions added to the buffer so far
+     * @param currentSenderThreads number of sender threads
+     */
+    public synchronized void sample(int currentQueueDepth, long addedCount, int currentSenderThreads) {
+        long now = System.nanoTime();
+        senderThreads = currentSenderThreads;
+        if(!sampled) {
+            sampled = true;
+            queueDepth = currentQueueDepth;
+        } else if(now > lastSampleTime) {
+            double rate = (addedCount - lastAddedCount) * 1e9 / (now - lastSampleTime);
+            arrivalRate += EWMA_WEIGHT * (rate - arrivalRate);
+            queueDepth += EWMA_WEIGHT * (currentQueueDepth - queueDepth);
+        }
+        lastAddedCount = addedCount;
+        lastSampleTime = now;
+    }
+
+    /**
+     * Records a request to Aino.io API.
+     *
+     * @param latencyNanos duration of the request in nanoseconds
+     * @param transactions number of transactions in the request
+     */
+    synchronized void recordSend(long latencyNanos, int transactions) {
+        double latencyMillis = latencyNanos / 1e6;
+        sendLatency = 0 == sendRequests ? latencyMillis : sendLatency + EWMA_WEIGHT * (latencyMillis - sendLatency);
+        sendRequests++;
+        sentTransactions += transactions;
+    }
+
+    /**
+     * Records transactions accepted by Aino.io API.
+     *
+     * @param transactions transaction count
+     */
+    synchronized void recordDelivered(int transactions) {
+        deliveredTransactions += transactions;
+        notifyAll();
+    }
+
+    /**
+     * Records transactions stored to the dead-letter store.
+     *
+     * @param transactions transaction count
+     */
+    synchronized void recordSpilled(int transactions) {
+        spilledTransactions += transactions;
+        notifyAll();
+    }
+
+    /**
+     * Records transactions that were rejected or could not be stored.
+     *
+     * @param transactions transaction count
+     */
+    synchronized void recordDropped(int transactions) {
+        droppedTransactions += transactions;
+        notifyAll();
+    }
+
+    /**
+     * Waits until the given number of transactions have been delivered, spilled or dropped.
+     *
+     * @param count transaction count to wait for
+     * @param timeout maximum time to wait in milliseconds
+     * @return true if the count was reached
+     * @throws InterruptedException when interrupted
+     */
+    synchronized boolean awaitSettled(long count, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        long remaining = timeout;
+        while(getSettledTransactions() < count && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return getSettledTransactions() >= count;
+    }
+
+    /**
+     * Records batches entering or leaving the encoding stage.
+     *
+     * @param delta change in the number of batches waiting to be encoded
+     */
+    synchronized void recordEncodeQueued(int delta) {
+        encodeQueueDepth += delta;
+    }
+
+    /**
+     * Records batches entering or leaving the sending stage.
+     *
+     * @param delta change in the number of encoded batches waiting to be sent
+     */
+    synchronized void recordSendQueued(int delta) {
+        sendQueueDepth += delta;
+    }
+
+    /**
+     * Records the batch size chosen by auto-tuning.
+     *
+     * @param size transaction count
+     */
+    synchronized void recordBatchSize(int size) {
+        batchSize = size;
+    }
+
+    /**
+     * Gets the average rate at which transactions are added.
+     *
+     * @return transactions per second
+     */
+    public synchronized double getArrivalRate() {
+        return arrivalRate;
+    }
+
+    /**
+     * Gets the average number of transactions waiting in the buffer.
+     *
+     * @return transaction count
+     */
+    public synchronized double getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Gets the average duration of requests to Aino.io API.
+     *
+     * @return latency in milliseconds
+     */
+    public synchronized double getSendLatency() {
+        return sendLatency;
+    }
+
+    /**
+     * Gets the number of sender threads at the last sample.
+     *
+     * @return thread count
+     */
+    public synchronized int getSenderThreads() {
+        return senderThreads;
+    }
+
+    /**
+     * Gets the number of transactions sent to Aino.io API, including failed attempts.
+     *
+     * @return transaction count
+     */
+    public synchronized long getSentTransactions() {
+        return sentTransactions;
+    }
+
+    /**
+     * Gets the number of requests made to Aino.io API.
+     *
+     * @return request count
+     */
+    public synchronized long getSendRequests() {
+        return sendRequests;
+    }
+
+    /**
+     * Gets the current batch size when batch size auto-tuning is enabled.
+     *
+     * @return transaction count, or 0 if auto-tuning is not enabled
+     */
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Gets the number of transactions accepted by Aino.io API.
+     *
+     * @return transaction count
+     */
+    public synchronized long getDeliveredTransactions() {
+        return deliveredTransactions;
+    }
+
+    /**
+     * Gets the number of transactions stored to the dead-letter store instead of being sent.
+     *
+     * @return transaction count
+     */
+    public synchronized long getSpilledTransactions() {
+        return spilledTransactions;
+    }
+
+    /**
+     * Gets the number of transactions rejected by Aino.io API or lost because they could not be stored.
+     *
+     * @return transaction count
+     */
+    public synchronized long getDroppedTransactions() {
+        return droppedTransactions;
+    }
+
+    /**
+     * Gets the number of transactions that have been delivered, spilled or dropped.
+     *
+     * @return transaction count
+     */
+    public synchronized long getSettledTransactions() {
+        return deliveredTransactions + spilledTransactions + droppedTransactions;
+    }
+
+    /**
+     * Gets the number of batches waiting for or being encoded on the encoder pool.
+     *
+     * @return batch count, always 0 without an encoder pool
+     */
+    public synchronized int getEncodeQueueDepth() {
+        return encodeQueueDepth;
+    }
+
+    /**
+     * Gets the number of batches encoded on the encoder pool and waiting to be sent.
+     *
+     * @return batch count, always 0 without an encoder pool
+     */
+    public synchronized int getSendQueueDepth() {
+        return sendQueueDepth;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+/**
+ * Listener notified once per batch about the outcome of sending it to Aino.io API.
+ * Called on the sender thread, so implementations should return quickly.
+ */
+public interface BatchListener {
+
+    /**
+     * Called when a batch has been accepted by Aino.io API.
+     *
+     * @param transactions number of transactions in the batch
+     */
+    void onSent(int transactions);
+
+    /**
+     * Called when sending a batch failed and it will be retried.
+     *
+     * @param transactions number of transactions in the batch
+     * @param attempt number of attempts made so far
+     */
+    void onRetried(int transactions, int attempt);
+
+    /**
+     * Called when a batch has been stored to the dead-letter store instead of being sent.
+     *
+     * @param transactions number of transactions in the batch
+     */
+    void onSpilled(int transactions);
+
+    /**
+     * Called when a batch has been rejected by Aino.io API or could not be sent nor stored.
+     *
+     * @param transactions number of transactions in the batch
+     */
+    void onDropped(int transactions);
+}
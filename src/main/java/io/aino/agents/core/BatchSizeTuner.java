@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Tunes the number of transactions per request from the observed request latency, shared by all
+ * {@link Sender}s of an agent.
+ *
+ * The batch size is treated like a congestion window: it grows additively while requests succeed
+ * and latency stays close to the best seen, and is halved when requests fail, are throttled or
+ * latency degrades.
+ */
+class BatchSizeTuner {
+    private static final Log log = LogFactory.getLog(BatchSizeTuner.class);
+
+    static final double LATENCY_TOLERANCE = 2.0;
+    static final double DECREASE_FACTOR = 0.5;
+    static final double EWMA_WEIGHT = 0.3;
+    static final double BASELINE_DRIFT = 0.01;
+
+    private final int minSize;
+    private final int maxSize;
+    private final int increment;
+    private final AgentMetrics metrics;
+
+    private int size;
+    private double latency = -1;
+    private double baseline = -1;
+
+    /**
+     * Constructor. Starts from the minimum size.
+     *
+     * @param minSize smallest batch size, also used as the additive increment
+     * @param maxSize largest batch size
+     * @param metrics metrics to publish the current size to
+     */
+    BatchSizeTuner(int minSize, int maxSize, AgentMetrics metrics) {
+        this.minSize = minSize;
+        this.maxSize = Math.max(minSize, maxSize);
+        this.increment = Math.max(1, minSize);
+        this.metrics = metrics;
+        this.size = minSize;
+        metrics.recordBatchSize(size);
+    }
+
+    /**
+     * Gets the current batch size.
+     *
+     * @return transaction count
+     */
+    synchronized int getBatchSize() {
+        return size;
+    }
+
+    /**
+     * Records a request and adjusts the batch size.
+     *
+     * @param latencyNanos duration of the request in nanoseconds
+     * @param degraded true if the request failed or was throttled
+     */
+    synchronized void record(long latencyNanos, boolean degraded) {
+        if(degraded) {
+            decrease("request failed");
+            return;
+        }
+
+        latency = latency < 0 ? latencyNanos : latency + EWMA_WEIGHT * (latencyNanos - latency);
+        if(baseline < 0 || latency < baseline) {
+            baseline = latency;
+        } else {
+            // Follow lasting changes in the network slowly.
+            baseline += BASELINE_DRIFT * (latency - baseline);
+        }
+
+        if(latency > baseline * LATENCY_TOLERANCE) {
+            decrease("latency " + Math.round(latency / 1e6) + " ms");
+        } else {
+            setSize(Math.min(maxSize, size + increment));
+        }
+    }
+
+    private void decrease(String reason) {
+        int decreased = Math.max(minSize, (int) (size * DECREASE_FACTOR));
+        if(decreased < size && log.isDebugEnabled()) {
+            log.debug(new StringBuilder("Decreasing batch size to ").append(decreased).append(": ").append(reason));
+        }
+        setSize(decreased);
+        // Let latency recover before comparing again.
+        latency = -1;
+    }
+
+    private void setSize(int newSize) {
+        size = newSize;
+        metrics.recordBatchSize(newSize);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import io.aino.agents.core.validators.CompiledValidator;
+import io.aino.agents.core.validators.ValidationResult;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of {@link Agent#addTransactions(java.util.Collection)}.
+ */
+public final class BulkAddResult {
+
+    /**
+     * A transaction that was not added, with the reason.
+     */
+    public static final class Rejection {
+        private final Transaction transaction;
+        private final ValidationResult result;
+        private final CompiledValidator validator;
+
+        Rejection(Transaction transaction, ValidationResult result, CompiledValidator validator) {
+            this.transaction = transaction;
+            this.result = result;
+            this.validator = validator;
+        }
+
+        /**
+         * Gets the transaction that was not added.
+         *
+         * @return transaction
+         */
+        public Transaction getTransaction() { return transaction; }
+
+        /**
+         * Gets the reason the transaction was not added.
+         *
+         * @return validation result
+         */
+        public ValidationResult getResult() { return result; }
+
+        /**
+         * Gets the reason the transaction was not added as an exception, naming the offending key.
+         *
+         * @return validation error, created by this call
+         */
+        public AgentCoreException getError() { return validator.toException(transaction, result); }
+    }
+
+    private final int addedCount;
+    private final List<Rejection> rejections;
+
+    BulkAddResult(int addedCount, List<Rejection> rejections) {
+        this.addedCount = addedCount;
+        this.rejections = null == rejections ? Collections.<Rejection>emptyList() : Collections.unmodifiableList(rejections);
+    }
+
+    /**
+     * Gets the number of transactions added for sending.
+     *
+     * @return transaction count
+     */
+    public int getAddedCount() { return addedCount; }
+
+    /**
+     * Gets the transactions that were not added, in the order they were given.
+     *
+     * @return rejections, empty if all transactions were added
+     */
+    public List<Rejection> getRejections() { return rejections; }
+
+    /**
+     * Checks if any transaction was rejected.
+     *
+     * @return true if some transactions were not added
+     */
+    public boolean hasRejections() { return !rejections.isEmpty(); }
+
+    @Override
+    public String toString() {
+        return new StringBuilder("added ").append(addedCount).append(", rejected ").append(rejections.size()).toString();
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+/**
+ * Observer that is told how many entries were added at once.
+ */
+interface BulkDataObserver extends TransactionDataObserver {
+
+    /**
+     * Called when entries have been added to the observed buffer in one go.
+     *
+     * @param newSize new size of the buffer
+     * @param addedCount number of entries added
+     */
+    void logDataAdded(int newSize, int addedCount);
+}
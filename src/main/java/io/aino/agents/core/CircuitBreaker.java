@@ -0,0 +1,143 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Circuit breaker shared by all {@link Sender}s of an agent.
+ *
+ * Opens after a configured amount of consecutive failed sends. While open, no requests are made.
+ * After the open time has passed a single probe request is let through (half-open state).
+ * A successful probe closes the breaker.
+ */
+class CircuitBreaker {
+    private static final Log log = LogFactory.getLog(CircuitBreaker.class);
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openTime;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long stateChangedAt = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param failureThreshold consecutive failures needed to open the breaker
+     * @param openTime time in milliseconds to wait before probing
+     */
+    CircuitBreaker(int failureThreshold, long openTime) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openTime = Math.max(0, openTime);
+    }
+
+    /**
+     * Checks whether a request could be made right now.
+     * Does not reserve the probe request in half-open state.
+     *
+     * @return true if a request is permitted
+     */
+    synchronized boolean isRequestPermitted() {
+        switch (state) {
+            case OPEN:
+                return timeInState() >= openTime;
+            case HALF_OPEN:
+                // The probe might have been lost. Allow a new one after another open period.
+                return timeInState() >= openTime;
+            case CLOSED:
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Reserves permission for making a request.
+     * When the open time has passed, only the first caller gets to send the probe.
+     *
+     * @return true if the request may be made
+     */
+    synchronized boolean tryAcquire() {
+        if(State.CLOSED == state) {
+            return true;
+        }
+        if(!isRequestPermitted()) {
+            return false;
+        }
+        changeState(State.HALF_OPEN);
+        log.info("Aino.io circuit breaker half-open. Sending probe request.");
+        return true;
+    }
+
+    /**
+     * Records a request that reached the API.
+     */
+    synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        if(State.CLOSED != state) {
+            log.info("Aino.io circuit breaker closed. Resuming sending.");
+            changeState(State.CLOSED);
+        }
+    }
+
+    /**
+     * Records a request that failed because of the API being unavailable.
+     */
+    synchronized void recordFailure() {
+        consecutiveFailures++;
+        if(State.HALF_OPEN == state || (State.CLOSED == state && consecutiveFailures >= failureThreshold)) {
+            log.warn(new StringBuilder("Aino.io circuit breaker opened for ").append(openTime).append(" ms after ")
+                    .append(consecutiveFailures).append(" consecutive failures."));
+            changeState(State.OPEN);
+        }
+    }
+
+    /**
+     * Gets the time until requests are permitted again.
+     *
+     * @return time in milliseconds, 0 if requests are permitted
+     */
+    synchronized long permissionDelay() {
+        if(State.CLOSED == state) {
+            return 0;
+        }
+        return Math.max(0, openTime - timeInState());
+    }
+
+    /**
+     * Gets the current state.
+     *
+     * @return state
+     */
+    synchronized State getState() {
+        return state;
+    }
+
+    private void changeState(State newState) {
+        state = newState;
+        stateChangedAt = System.currentTimeMillis();
+    }
+
+    private long timeInState() {
+        return System.currentTimeMillis() - stateChangedAt;
+    }
+}
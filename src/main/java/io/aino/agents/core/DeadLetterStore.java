@@ -0,0 +1,223 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Local directory for batches that could not be delivered to aino.io.
+ *
+ * Each batch is stored as one gzipped JSON file, exactly in the format sent to the API.
+ * File names sort by age. When the configured size limit would be exceeded, the oldest batches are evicted.
+ * Batches are claimed one at a time for re-drive, so several senders can replay the store concurrently.
+ */
+class DeadLetterStore {
+    private static final Log log = LogFactory.getLog(DeadLetterStore.class);
+
+    private static final String FILE_PREFIX = "aino-batch-";
+    private static final String FILE_SUFFIX = ".json.gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long maxBytes;
+
+    private final TreeMap<String, Long> files = new TreeMap<String, Long>();
+    private final Set<String> claimed = new HashSet<String>();
+    private long totalBytes = 0;
+    private long sequence = 0;
+
+    /**
+     * Constructor.
+     * Picks up batches left in the directory by earlier runs.
+     *
+     * @param directory directory to store the batches in
+     * @param maxBytes maximum disk usage in bytes
+     */
+    DeadLetterStore(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new AgentCoreException("Could not create dead-letter directory: " + directory.getAbsolutePath());
+        }
+
+        File[] existing = directory.listFiles();
+        if(null != existing) {
+            for(File file : existing) {
+                if(isBatchFile(file.getName())) {
+                    files.put(file.getName(), file.length());
+                    totalBytes += file.length();
+                }
+            }
+        }
+        if(!files.isEmpty()) {
+            log.info(new StringBuilder("Found ").append(files.size()).append(" undelivered batches in ").append(directory.getAbsolutePath()));
+        }
+    }
+
+    /**
+     * Stores a gzipped batch.
+     *
+     * @param gzippedBatch batch in API format, gzipped
+     * @return true if stored, false if the batch does not fit or writing failed
+     */
+    synchronized boolean store(byte[] gzippedBatch) {
+        if(gzippedBatch.length > maxBytes) {
+            return false;
+        }
+        evictUntilFits(gzippedBatch.length);
+
+        String name = nextFileName();
+        File temp = new File(directory, name + TEMP_SUFFIX);
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(gzippedBatch);
+            } finally {
+                out.close();
+            }
+            if(!temp.renameTo(new File(directory, name))) {
+                throw new IOException("Could not rename " + temp.getAbsolutePath());
+            }
+        } catch (IOException e) {
+            log.error("Failed to write batch to dead-letter store.", e);
+            temp.delete();
+            return false;
+        }
+
+        files.put(name, (long) gzippedBatch.length);
+        totalBytes += gzippedBatch.length;
+        return true;
+    }
+
+    /**
+     * Claims the oldest batch for re-drive.
+     * A claimed batch must be either removed or released.
+     *
+     * @return name of the batch or null if there is nothing to re-drive
+     */
+    synchronized String claim() {
+        for(String name : files.keySet()) {
+            if(claimed.add(name)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a claimed batch.
+     *
+     * @param name name of the batch
+     * @return gzipped batch
+     * @throws IOException when reading fails
+     */
+    byte[] read(String name) throws IOException {
+        return Files.readAllBytes(new File(directory, name).toPath());
+    }
+
+    /**
+     * Removes a claimed batch after it has been delivered or found undeliverable.
+     *
+     * @param name name of the batch
+     */
+    synchronized void remove(String name) {
+        claimed.remove(name);
+        delete(name);
+    }
+
+    /**
+     * Returns a claimed batch to the store for a later re-drive.
+     *
+     * @param name name of the batch
+     */
+    synchronized void release(String name) {
+        claimed.remove(name);
+    }
+
+    /**
+     * Checks if there are batches waiting for re-drive.
+     *
+     * @return true if batches are waiting
+     */
+    synchronized boolean hasBatches() {
+        return files.size() > claimed.size();
+    }
+
+    /**
+     * Gets the number of stored batches.
+     *
+     * @return batch count
+     */
+    synchronized int size() {
+        return files.size();
+    }
+
+    /**
+     * Gets the disk usage of stored batches.
+     *
+     * @return size in bytes
+     */
+    synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private void evictUntilFits(long incoming) {
+        Iterator<Map.Entry<String, Long>> oldestFirst = files.entrySet().iterator();
+        while(totalBytes + incoming > maxBytes && oldestFirst.hasNext()) {
+            Map.Entry<String, Long> oldest = oldestFirst.next();
+            if(claimed.contains(oldest.getKey())) {
+                continue;
+            }
+            log.warn("Dead-letter store is full. Evicting the oldest batch: " + oldest.getKey());
+            totalBytes -= oldest.getValue();
+            new File(directory, oldest.getKey()).delete();
+            oldestFirst.remove();
+        }
+    }
+
+    private void delete(String name) {
+        Long size = files.remove(name);
+        if(null != size) {
+            totalBytes -= size;
+        }
+        new File(directory, name).delete();
+    }
+
+    private String nextFileName() {
+        String name;
+        do {
+            name = String.format("%s%013d-%06d%s", FILE_PREFIX, System.currentTimeMillis(), sequence++ % 1000000, FILE_SUFFIX);
+        } while(files.containsKey(name));
+        return name;
+    }
+
+    private static boolean isBatchFile(String name) {
+        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+    }
+}
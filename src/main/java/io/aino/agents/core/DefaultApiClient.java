@@ -26,18 +26,44 @@ import javax.ws.rs.core.HttpHeaders;
 
 /**
  * Default implementation for {@link ApiClient}
+ * The HTTP client is created on the first send, so agents that never send do not pay for it.
  */
 public class DefaultApiClient implements ApiClient {
     private static final String AUTHORIZATION_HEADER = "Authorization";
 
-    private final WebResource resource;
+    private final String uri;
+    private volatile WebResource resource;
     private final AgentConfig agentConfig;
 
     public DefaultApiClient(final AgentConfig config) {
+        this(config, config.getLogServiceUri());
+    }
+
+    /**
+     * Creates a client for one of the configured endpoints.
+     *
+     * @param config agent configuration
+     * @param uri address of aino.io API endpoint
+     */
+    public DefaultApiClient(final AgentConfig config, final String uri) {
         this.agentConfig = config;
-        URLConnectionClientHandler connection = HttpProxyFactory.getConnectionHandler(agentConfig);
-        Client restClient = new Client(connection);
-        resource = restClient.resource(agentConfig.getLogServiceUri());
+        this.uri = uri;
+    }
+
+    private WebResource resource() {
+        WebResource current = resource;
+        if(null == current) {
+            synchronized (this) {
+                current = resource;
+                if(null == current) {
+                    URLConnectionClientHandler connection = HttpProxyFactory.getConnectionHandler(agentConfig);
+                    Client restClient = new Client(connection);
+                    current = restClient.resource(uri);
+                    resource = current;
+                }
+            }
+        }
+        return current;
     }
 
     @Override
@@ -46,7 +72,7 @@ public class DefaultApiClient implements ApiClient {
     }
 
     private WebResource.Builder buildRequest() {
-        WebResource.Builder builder = resource.accept("text/plain").type("application/json")
+        WebResource.Builder builder = resource().accept("text/plain").type("application/json")
                 .header(AUTHORIZATION_HEADER, "apikey " + agentConfig.getApiKey());
 
         if(agentConfig.isGzipEnabled()) {
@@ -57,7 +83,7 @@ public class DefaultApiClient implements ApiClient {
         return builder;
     }
 
-    private static final class ApiResponseImpl implements ApiResponse {
+    private static final class ApiResponseImpl implements HeaderAwareApiResponse {
         private final ClientResponse response;
 
         ApiResponseImpl(ClientResponse response) {
@@ -73,5 +99,10 @@ public class DefaultApiClient implements ApiClient {
         public String getPayload() {
             return response.getEntity(String.class);
         }
+
+        @Override
+        public String getHeader(String name) {
+            return response.getHeaders().getFirst(name);
+        }
     }
 }
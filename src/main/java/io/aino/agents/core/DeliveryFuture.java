@@ -0,0 +1,72 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of {@link Agent#addTransactionAsync(Transaction)}.
+ * Completed by the sender once the transaction has been delivered, spilled or dropped.
+ */
+class DeliveryFuture implements Future<DeliveryOutcome> {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile DeliveryOutcome outcome;
+
+    /**
+     * Completes this future. Only the first outcome counts.
+     *
+     * @param result what happened to the transaction
+     */
+    synchronized void complete(DeliveryOutcome result) {
+        if(null == outcome) {
+            outcome = result;
+            done.countDown();
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return null != outcome;
+    }
+
+    @Override
+    public DeliveryOutcome get() throws InterruptedException {
+        done.await();
+        return outcome;
+    }
+
+    @Override
+    public DeliveryOutcome get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if(!done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return outcome;
+    }
+}
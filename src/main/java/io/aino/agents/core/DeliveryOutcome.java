@@ -0,0 +1,29 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+/**
+ * What happened to a transaction added with {@link Agent#addTransactionAsync(Transaction)}.
+ */
+public enum DeliveryOutcome {
+    /** Accepted by Aino.io API. */
+    DELIVERED,
+    /** Stored to the dead-letter store. It is re-driven to Aino.io API later. */
+    SPILLED,
+    /** Rejected by Aino.io API, or could not be sent nor stored. */
+    DROPPED
+}
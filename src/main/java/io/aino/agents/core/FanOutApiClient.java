@@ -0,0 +1,260 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ApiClient} writing every batch to several sinks concurrently.
+ *
+ * Each sink has its own bounded queue, written by one task at a time, so a slow or failing sink never holds back
+ * the caller or the other sinks. When a queue is full, its oldest batch is dropped. A task writes at most one
+ * queue's worth of batches before handing its thread back, so sinks share an executor fairly.
+ * Sending always succeeds from the caller's point of view.
+ */
+public class FanOutApiClient implements ApiClient, Closeable {
+    private static final Log log = LogFactory.getLog(FanOutApiClient.class);
+
+    static final long CLOSE_TIMEOUT = 5000;
+
+    private final Executor executor;
+    // Executor created by this client, shut down on close.
+    private final ExecutorService ownExecutor;
+    private final List<SinkWorker> workers = new CopyOnWriteArrayList<SinkWorker>();
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor for a client writing to the sinks on daemon threads of its own, at most one per sink.
+     */
+    public FanOutApiClient() {
+        this.ownExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "aino-sink-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor = ownExecutor;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param executor executor to write to the sinks on, not to be one whose threads are needed elsewhere
+     */
+    public FanOutApiClient(Executor executor) {
+        this.executor = executor;
+        this.ownExecutor = null;
+    }
+
+    /**
+     * Adds a sink.
+     *
+     * @param sink sink to write the batches to
+     * @param queueSize number of batches queued for the sink before the oldest is dropped
+     * @return this client
+     */
+    public FanOutApiClient addSink(ApiClient sink, int queueSize) {
+        if(closed) {
+            throw new IllegalStateException("Fan-out client is closed.");
+        }
+        workers.add(new SinkWorker(sink, queueSize));
+        return this;
+    }
+
+    @Override
+    public ApiResponse send(byte[] data) {
+        for(SinkWorker worker : workers) {
+            worker.offer(data);
+        }
+        return AcceptedApiResponse.INSTANCE;
+    }
+
+    /**
+     * Checks if any sinks have been added.
+     *
+     * @return true if there are no sinks
+     */
+    public boolean isEmpty() {
+        return workers.isEmpty();
+    }
+
+    /**
+     * Gets the number of batches dropped because a sink could not keep up.
+     *
+     * @return dropped batches over all sinks
+     */
+    public long getDroppedCount() {
+        long dropped = 0;
+        for(SinkWorker worker : workers) {
+            dropped += worker.dropped.get();
+        }
+        return dropped;
+    }
+
+    /**
+     * Writes the queued batches, waiting at most a few seconds, and closes the sinks.
+     */
+    @Override
+    public void close() {
+        close(CLOSE_TIMEOUT);
+    }
+
+    /**
+     * Stops the sinks, waiting at most the given time for them to write the queued batches.
+     *
+     * @param timeout maximum time to wait in milliseconds
+     */
+    public void close(long timeout) {
+        closed = true;
+        long deadline = System.currentTimeMillis() + timeout;
+        for(SinkWorker worker : workers) {
+            try {
+                if(!worker.awaitIdle(deadline)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for(SinkWorker worker : workers) {
+            if(!worker.isIdle()) {
+                // The batch being written is finished, the rest are dropped.
+                worker.abandoned = true;
+                log.warn("Sink did not finish in time. Dropping " + worker.queue.size() + " batches.");
+                worker.queue.clear();
+            }
+            if(worker.sink instanceof Closeable) {
+                try {
+                    ((Closeable) worker.sink).close();
+                } catch (IOException e) {
+                    log.warn("Failed to close sink.", e);
+                }
+            }
+        }
+        if(null != ownExecutor) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    private final class SinkWorker implements Runnable {
+        private final ApiClient sink;
+        private final BlockingQueue<byte[]> queue;
+        private final int queueSize;
+        private final AtomicLong dropped = new AtomicLong();
+        // Set while a task writing the queue is scheduled or running, so there is at most one per sink.
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean abandoned = false;
+
+        SinkWorker(ApiClient sink, int queueSize) {
+            this.sink = sink;
+            this.queue = new ArrayBlockingQueue<byte[]>(queueSize);
+            this.queueSize = queueSize;
+        }
+
+        void offer(byte[] data) {
+            while(!queue.offer(data)) {
+                if(null != queue.poll()) {
+                    if(dropped.incrementAndGet() % 100 == 1) {
+                        log.warn("Sink " + sink.getClass().getName() + " cannot keep up. Dropped " + dropped.get() + " batches so far.");
+                    }
+                }
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if(abandoned || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                log.warn("Executor refused to write to sink " + sink.getClass().getName() + ".", e);
+                idle();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                byte[] data;
+                int written = 0;
+                while(written++ < queueSize && !abandoned && null != (data = queue.poll())) {
+                    write(data);
+                }
+            } finally {
+                idle();
+            }
+            // The rest of the queue, and a batch offered after the queue was found empty, are written by a new task.
+            if(!queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private synchronized void idle() {
+            scheduled.set(false);
+            notifyAll();
+        }
+
+        synchronized boolean isIdle() {
+            return !scheduled.get() && queue.isEmpty();
+        }
+
+        synchronized boolean awaitIdle(long deadline) throws InterruptedException {
+            while(!isIdle()) {
+                long wait = deadline - System.currentTimeMillis();
+                if(wait <= 0) {
+                    return false;
+                }
+                wait(wait);
+            }
+            return true;
+        }
+
+        private void write(byte[] data) {
+            try {
+                ApiResponse response = sink.send(data);
+                if(response.getStatus() >= 300) {
+                    log.warn("Sink " + sink.getClass().getName() + " refused a batch with status " + response.getStatus());
+                }
+            } catch (RuntimeException e) {
+                log.warn("Sink " + sink.getClass().getName() + " failed to write a batch.", e);
+            }
+        }
+    }
+}
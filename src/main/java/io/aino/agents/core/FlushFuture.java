@@ -0,0 +1,70 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of {@link Agent#flush(long)}.
+ * Completes with true when the flushed transactions have been delivered, spilled or dropped,
+ * or with false when the flush deadline passes first.
+ */
+class FlushFuture implements Future<Boolean> {
+    private final AgentMetrics metrics;
+    private final long settledCount;
+    private final long deadline;
+
+    FlushFuture(AgentMetrics metrics, long settledCount, long deadline) {
+        this.metrics = metrics;
+        this.settledCount = settledCount;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return metrics.getSettledTransactions() >= settledCount || System.currentTimeMillis() >= deadline;
+    }
+
+    @Override
+    public Boolean get() throws InterruptedException {
+        return metrics.awaitSettled(settledCount, deadline - System.currentTimeMillis());
+    }
+
+    @Override
+    public Boolean get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        long remaining = deadline - System.currentTimeMillis();
+        if(metrics.awaitSettled(settledCount, Math.min(remaining, unit.toMillis(timeout)))) {
+            return true;
+        }
+        if(System.currentTimeMillis() < deadline) {
+            throw new TimeoutException();
+        }
+        return false;
+    }
+}
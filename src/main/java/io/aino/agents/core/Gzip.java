@@ -0,0 +1,76 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip helpers for request bodies.
+ */
+final class Gzip {
+
+    private Gzip() {
+    }
+
+    /**
+     * Compresses data.
+     *
+     * @param data data to compress
+     * @return gzipped data
+     * @throws AgentCoreException when compression fails
+     */
+    static byte[] compress(byte[] data) {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(32, data.length / 4));
+            GZIPOutputStream gzipStream = new GZIPOutputStream(baos);
+            gzipStream.write(data);
+
+            gzipStream.finish();
+            gzipStream.close();
+
+            return baos.toByteArray();
+        } catch (IOException e) {
+            throw new AgentCoreException("Failed to compress Aino log message using gzip.", e);
+        }
+    }
+
+    /**
+     * Decompresses gzipped data.
+     *
+     * @param data gzipped data
+     * @return decompressed data
+     * @throws IOException when data is not valid gzip
+     */
+    static byte[] decompress(byte[] data) throws IOException {
+        GZIPInputStream gzipStream = new GZIPInputStream(new ByteArrayInputStream(data));
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(data.length * 4);
+            byte[] chunk = new byte[4096];
+            int read;
+            while((read = gzipStream.read(chunk)) != -1) {
+                baos.write(chunk, 0, read);
+            }
+            return baos.toByteArray();
+        } finally {
+            gzipStream.close();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+/**
+ * Response from Aino.io API that also exposes its headers.
+ * Optional for {@link ApiClient} implementations; a response without headers is handled as if none were sent.
+ */
+public interface HeaderAwareApiResponse extends ApiResponse {
+
+    /**
+     * Gets the first value of a response header.
+     *
+     * @param name header name
+     * @return header value or null if not present
+     */
+    String getHeader(String name);
+}
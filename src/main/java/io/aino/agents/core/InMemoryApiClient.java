@@ -0,0 +1,96 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * {@link ApiClient} keeping the most recent batches in memory.
+ * Useful for tests and for inspecting what the agent sends.
+ */
+public class InMemoryApiClient implements ApiClient {
+    static final int DEFAULT_CAPACITY = 1000;
+
+    private final int capacity;
+    private final Deque<byte[]> batches = new ArrayDeque<byte[]>();
+
+    /**
+     * Constructor keeping the last {@value #DEFAULT_CAPACITY} batches.
+     */
+    public InMemoryApiClient() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity number of batches to keep, older ones are dropped
+     */
+    public InMemoryApiClient(int capacity) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized ApiResponse send(byte[] data) {
+        if(batches.size() == capacity) {
+            batches.removeFirst();
+        }
+        batches.addLast(data);
+        notifyAll();
+        return AcceptedApiResponse.INSTANCE;
+    }
+
+    /**
+     * Gets the kept batches, oldest first.
+     *
+     * @return batches as sent
+     */
+    public synchronized List<byte[]> getBatches() {
+        return new ArrayList<byte[]>(batches);
+    }
+
+    /**
+     * Waits until at least the given number of batches is kept.
+     *
+     * @param count number of batches
+     * @param maxWait maximum time to wait in milliseconds
+     * @return true if the batches arrived in time
+     * @throws InterruptedException when interrupted
+     */
+    public synchronized boolean awaitBatches(int count, long maxWait) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + maxWait;
+        long remaining = maxWait;
+        while(batches.size() < count && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return batches.size() >= count;
+    }
+
+    /**
+     * Removes all kept batches.
+     */
+    public synchronized void clear() {
+        batches.clear();
+    }
+}
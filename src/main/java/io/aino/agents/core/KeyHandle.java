@@ -0,0 +1,68 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+/**
+ * A configured key with its name already looked up and validated.
+ * Get one from {@link Agent#application(String)}, {@link Agent#operation(String)},
+ * {@link Agent#payloadType(String)} or {@link Agent#idType(String)}.
+ * Transactions using handles are not validated again when they are added.
+ */
+public final class KeyHandle {
+
+    public enum Type {
+        APPLICATION, OPERATION, PAYLOAD_TYPE, ID_TYPE
+    }
+
+    private final Type type;
+    private final String key;
+    private final String name;
+
+    KeyHandle(Type type, String key, String name) {
+        this.type = type;
+        this.key = key;
+        this.name = name;
+    }
+
+    /**
+     * Gets the kind of key.
+     *
+     * @return key type
+     */
+    public Type getType() { return type; }
+
+    /**
+     * Gets the key.
+     *
+     * @return key
+     */
+    public String getKey() { return key; }
+
+    /**
+     * Gets the name configured for the key.
+     *
+     * @return name
+     */
+    public String getName() { return name; }
+
+    KeyHandle require(Type expected) {
+        if(expected != type) {
+            throw new AgentCoreException(type + " " + key + " cannot be used as " + expected);
+        }
+        return this;
+    }
+}
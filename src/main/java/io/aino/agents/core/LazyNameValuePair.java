@@ -0,0 +1,51 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+/**
+ * Name-value pair whose value is computed only when the transaction is encoded for sending.
+ */
+final class LazyNameValuePair extends NameValuePair {
+    final LazyValue lazyValue;
+
+    /**
+     * Constructor.
+     *
+     * @param name name of the name-value pair
+     * @param lazyValue value of the name-value pair
+     */
+    LazyNameValuePair(String name, LazyValue lazyValue) {
+        super(name, null);
+        this.lazyValue = lazyValue;
+    }
+
+    /**
+     * Gets value part, computing it on the first call.
+     *
+     * @return value
+     */
+    @Override
+    public String getValue() {
+        return lazyValue.get();
+    }
+
+    @Override
+    public int hashCode() {
+        String value = getValue();
+        return 31 * (null == getName() ? 0 : getName().hashCode()) + (null == value ? 0 : value.hashCode());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Value computed only when a transaction is encoded for sending.
+ * The result is cut to the configured maximum length and kept, so retries do not compute it again.
+ */
+final class LazyValue {
+    private static final Log log = LogFactory.getLog(LazyValue.class);
+
+    // Size assumed for batching before the value is known.
+    static final int ESTIMATED_LENGTH = 256;
+
+    private final Callable<String> supplier;
+    private final int maxLength;
+    private String value;
+    private boolean evaluated;
+
+    /**
+     * Constructor.
+     *
+     * @param supplier computes the value
+     * @param maxLength maximum length of the value, 0 for no limit
+     */
+    LazyValue(Callable<String> supplier, int maxLength) {
+        if(null == supplier) {
+            throw new AgentCoreException("Value supplier cannot be null.");
+        }
+        this.supplier = supplier;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Gets the value, computing it on the first call.
+     * A supplier that fails is logged and gives null.
+     *
+     * @return value
+     */
+    synchronized String get() {
+        if(!evaluated) {
+            try {
+                value = truncate(supplier.call());
+            } catch (Exception e) {
+                log.warn("Could not compute a lazy transaction value.", e);
+                value = null;
+            }
+            evaluated = true;
+        }
+        return value;
+    }
+
+    /**
+     * Gets the approximate length of the value without computing it.
+     *
+     * @return length in characters
+     */
+    synchronized int estimateLength() {
+        if(evaluated) {
+            return null == value ? 0 : value.length();
+        }
+        return 0 == maxLength ? ESTIMATED_LENGTH : Math.min(maxLength, ESTIMATED_LENGTH);
+    }
+
+    private String truncate(String computed) {
+        if(null == computed || 0 == maxLength || computed.length() <= maxLength) {
+            return computed;
+        }
+        // Do not split a surrogate pair.
+        int end = Character.isHighSurrogate(computed.charAt(maxLength - 1)) ? maxLength - 1 : maxLength;
+        return computed.substring(0, end);
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.aino.agents.core;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import io.aino.agents.core.config.AgentConfig;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link ApiClient} spreading requests over several endpoints.
+ *
+ * Endpoints are picked by smooth weighted round-robin, weighted by their recent latency and error rate.
+ * Endpoints that keep failing or are much slower than the others are ejected for a while.
+ * A request that fails on one endpoint is immediately retried on the next one.
+ */
+public class LoadBalancingApiClient implements ApiClient {
+    private static final Log log = LogFactory.getLog(LoadBalancingApiClient.class);
+
+    static final double EWMA_WEIGHT = 0.2;
+    static final int MAX_WEIGHT = 100;
+    static final int EJECT_AFTER_FAILURES = 3;
+    static final double SLOW_OUTLIER_FACTOR = 5.0;
+    static final int MIN_LATENCY_SAMPLES = 5;
+    static final long BASE_EJECTION_TIME = 10000;
+    static final long MAX_EJECTION_TIME = 5 * 60 * 1000;
+
+    private final List<Endpoint> endpoints;
+
+    /**
+     * Creates a client with a {@link DefaultApiClient} for every configured endpoint.
+     *
+     * @param config agent configuration
+     */
+    public LoadBalancingApiClient(AgentConfig config) {
+        List<Endpoint> list = new ArrayList<Endpoint>();
+        for(String uri : config.getLogServiceUris()) {
+            list.add(new Endpoint(uri, new DefaultApiClient(config, uri)));
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Creates a client balancing over the given clients.
+     *
+     * @param names names of the endpoints, used for logging
+     * @param clients clients to balance over, in the same order as names
+     */
+    public LoadBalancingApiClient(List<String> names, List<? extends ApiClient> clients) {
+        if(names.size() != clients.size() || clients.isEmpty()) {
+            throw new IllegalArgumentException("Each endpoint needs exactly one name.");
+        }
+        List<Endpoint> list = new ArrayList<Endpoint>();
+        for(int i = 0; i < clients.size(); i++) {
+            list.add(new Endpoint(names.get(i), clients.get(i)));
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+    }
+
+    @Override
+    public ApiResponse send(byte[] data) {
+        List<Endpoint> tried = new ArrayList<Endpoint>(endpoints.size());
+        ApiResponse lastResponse = null;
+        ClientHandlerException lastException = null;
+
+        Endpoint endpoint;
+        while(null != (endpoint = pick(tried))) {
+            tried.add(endpoint);
+            long start = System.nanoTime();
+            try {
+                ApiResponse response = endpoint.client.send(data);
+                boolean serverError = response.getStatus() >= 500;
+                endpoint.record(System.nanoTime() - start, serverError);
+                if(!serverError) {
+                    return response;
+                }
+                lastResponse = response;
+            } catch (ClientHandlerException e) {
+                endpoint.record(System.nanoTime() - start, true);
+                lastException = e;
+            }
+            if(log.isDebugEnabled()) {
+                log.debug("Sending to " + endpoint.name + " failed. Failing over to next endpoint.");
+            }
+        }
+
+        if(null != lastResponse) {
+            return lastResponse;
+        }
+        throw lastException;
+    }
+
+    /**
+     * Picks the next endpoint to send to.
+     *
+     * @param exclude endpoints already tried for this request
+     * @return endpoint or null if all endpoints have been tried
+     */
+    private synchronized Endpoint pick(List<Endpoint> exclude) {
+        long now = System.currentTimeMillis();
+        List<Endpoint> candidates = new ArrayList<Endpoint>(endpoints.size());
+        for(Endpoint endpoint : endpoints) {
+            if(!exclude.contains(endpoint) && !endpoint.isEjected(now)) {
+                candidates.add(endpoint);
+            }
+        }
+        if(candidates.isEmpty()) {
+            // Everything healthy has been tried. Ejected endpoints are better than nothing.
+            for(Endpoint endpoint : endpoints) {
+                if(!exclude.contains(endpoint)) {
+                    candidates.add(endpoint);
+                }
+            }
+        }
+        if(candidates.isEmpty()) {
+            return null;
+        }
+
+        double fastest = Double.MAX_VALUE;
+        for(Endpoint endpoint : candidates) {
+            if(endpoint.samples > 0) {
+                fastest = Math.min(fastest, endpoint.latency);
+            }
+        }
+
+        int totalWeight = 0;
+        Endpoint best = null;
+        for(Endpoint endpoint : candidates) {
+            int weight = endpoint.weight(fastest);
+            endpoint.currentWeight += weight;
+            totalWeight += weight;
+            if(null == best || endpoint.currentWeight > best.currentWeight) {
+                best = endpoint;
+            }
+        }
+        best.currentWeight -= totalWeight;
+        return best;
+    }
+
+    /**
+     * Ejects endpoints that are much slower than the fastest healthy one.
+     */
+    private synchronized void ejectSlowOutliers(long now) {
+        double fastest = Double.MAX_VALUE;
+        int healthy = 0;
+        for(Endpoint endpoint : endpoints) {
+            if(!endpoint.isEjected(now) && endpoint.samples >= MIN_LATENCY_SAMPLES) {
+                fastest = Math.min(fastest, endpoint.latency);
+                healthy++;
+            }
+        }
+        if(healthy < 2) {
+            return;
+        }
+        for(Endpoint endpoint : endpoints) {
+            if(!endpoint.isEjected(now) && endpoint.samples >= MIN_LATENCY_SAMPLES
+                    && endpoint.latency > fastest * SLOW_OUTLIER_FACTOR && healthy > 1) {
+                endpoint.eject(now, "latency " + Math.round(endpoint.latency / 1000000) + " ms");
+                healthy--;
+            }
+        }
+    }
+
+    /**
+     * Gets the endpoint names that are currently in use.
+     *
+     * @return names of endpoints that are not ejected
+     */
+    public synchronized List<String> getHealthyEndpoints() {
+        long now = System.currentTimeMillis();
+        List<String> healthy = new ArrayList<String>();
+        for(Endpoint endpoint : endpoints) {
+            if(!endpoint.isEjected(now)) {
+                healthy.add(endpoint.name);
+            }
+        }
+        return healthy;
+    }
+
+    private final class Endpoint {
+        private final String name;
+        private final ApiClient client;
+
+        private double latency = 0;
+        private int samples = 0;
+        private double errorRate = 0;
+        private int consecutiveFailures = 0;
+        private int ejections = 0;
+        private long ejectedUntil = 0;
+        private int currentWeight = 0;
+
+        Endpoint(String name, ApiClient client) {
+            this.name = name;
+            this.client = client;
+        }
+
+        void record(long latencyNanos, boolean failed) {
+            long now = System.currentTimeMillis();
+            synchronized (LoadBalancingApiClient.this) {
+                latency = 0 == samples++ ? latencyNanos : latency + EWMA_WEIGHT * (latencyNanos - latency);
+                errorRate += EWMA_WEIGHT * ((failed ? 1 : 0) - errorRate);
+
+                if(!failed) {
+                    consecutiveFailures = 0;
+                    ejections = 0;
+                } else if(++consecutiveFailures >= EJECT_AFTER_FAILURES && !isEjected(now)) {
+                    eject(now, consecutiveFailures + " consecutive failures");
+                }
+            }
+            ejectSlowOutliers(now);
+        }
+
+        int weight(double fastest) {
+            double speed = samples > 0 && fastest < Double.MAX_VALUE ? fastest / Math.max(1, latency) : 1;
+            return Math.max(1, (int) Math.round(MAX_WEIGHT * (1 - errorRate) * speed));
+        }
+
+        boolean isEjected(long now) {
+            return now < ejectedUntil;
+        }
+
+        void eject(long now, String reason) {
+            long ejectionTime = Math.min(MAX_EJECTION_TIME, BASE_EJECTION_TIME << Math.min(ejections, 10));
+            ejections++;
+            ejectedUntil = now + ejectionTime;
+            // Start from a clean slate when the endpoint comes back.
+            consecutiveFailures = 0;
+            samples = 0;
+            log.warn(new StringBuilder("Ejecting Aino.io endpoint ").append(name).append(" for ").append(ejectionTime)
+                    .append(" ms: ").append(reason));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of numeric ids backed by a primitive array.
+ */
+final class LongIdList {
+    // Long.MIN_VALUE has 19 digits and a sign.
+    static final int MAX_DIGITS = 20;
+
+    private long[] values;
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity initial capacity
+     */
+    LongIdList(int capacity) {
+        this.values = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * Adds ids.
+     *
+     * @param ids ids to add
+     */
+    void add(long[] ids) {
+        ensureCapacity(size + ids.length);
+        System.arraycopy(ids, 0, values, size, ids.length);
+        size += ids.length;
+    }
+
+    /**
+     * Adds ids.
+     *
+     * @param ids ids to add
+     */
+    void add(int[] ids) {
+        ensureCapacity(size + ids.length);
+        for(int id : ids) {
+            values[size++] = id;
+        }
+    }
+
+    /**
+     * Adds all ids of another list.
+     *
+     * @param ids ids to add
+     */
+    void add(LongIdList ids) {
+        ensureCapacity(size + ids.size);
+        System.arraycopy(ids.values, 0, values, size, ids.size);
+        size += ids.size;
+    }
+
+    /**
+     * Removes all ids, keeping the array.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Gets the number of ids.
+     *
+     * @return id count
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets an id.
+     *
+     * @param index index of the id
+     * @return id
+     */
+    long get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Gets the ids as an exact-sized array.
+     *
+     * @return copy of the ids
+     */
+    long[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Gets the length of all ids as decimal text.
+     *
+     * @return number of characters
+     */
+    int textLength() {
+        int length = 0;
+        for(int i = 0; i < size; i++) {
+            length += digits(values[i]);
+        }
+        return length;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if(capacity > values.length) {
+            values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+        }
+    }
+
+    private static int digits(long value) {
+        int digits = value < 0 ? 2 : 1;
+        for(long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Writes a number as decimal digits to the end of a buffer, without creating a string.
+     *
+     * @param value number to write
+     * @param buffer buffer of at least {@link #MAX_DIGITS} characters
+     * @return index of the first character written, the text ends at the end of the buffer
+     */
+    static int format(long value, char[] buffer) {
+        int position = buffer.length;
+        long rest = value;
+        do {
+            // Works for Long.MIN_VALUE too, as the remainder keeps the sign of the value.
+            buffer[--position] = (char) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        } while(rest != 0);
+        if(value < 0) {
+            buffer[--position] = '-';
+        }
+        return position;
+    }
+}
@@ -38,7 +38,7 @@ public class NameValuePair {
         this.name = name;
         this.value = value;
 
-        this.hash = (name + value).hashCode();
+        this.hash = 31 * (null == name ? 0 : name.hashCode()) + (null == value ? 0 : value.hashCode());
     }
 
     /**
@@ -75,7 +75,7 @@ public class NameValuePair {
             return false;
         }
 
-        if(!StringUtils.equals(this.value, other.value)){
+        if(!StringUtils.equals(this.getValue(), other.getValue())){
             return false;
         }
 
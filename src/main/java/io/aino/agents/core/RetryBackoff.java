@@ -0,0 +1,64 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential retry backoff with decorrelated jitter.
+ * Each delay is picked randomly between the base delay and three times the previous delay,
+ * capped to the max delay. This keeps senders from retrying in lockstep.
+ */
+class RetryBackoff {
+    private final long baseDelay;
+    private final long maxDelay;
+    private long previousDelay;
+
+    /**
+     * Constructor.
+     *
+     * @param baseDelay smallest delay in milliseconds
+     * @param maxDelay largest delay in milliseconds
+     */
+    RetryBackoff(long baseDelay, long maxDelay) {
+        this.baseDelay = Math.max(0, baseDelay);
+        this.maxDelay = Math.max(this.baseDelay, maxDelay);
+        this.previousDelay = this.baseDelay;
+    }
+
+    /**
+     * Gets the delay before the next retry.
+     *
+     * @return delay in milliseconds
+     */
+    long nextDelay() {
+        long upperBound = Math.max(baseDelay, previousDelay * 3);
+        long delay = baseDelay;
+        if(upperBound > baseDelay) {
+            delay = ThreadLocalRandom.current().nextLong(baseDelay, upperBound + 1);
+        }
+        previousDelay = Math.min(maxDelay, delay);
+        return previousDelay;
+    }
+
+    /**
+     * Resets the backoff after a successful send.
+     */
+    void reset() {
+        previousDelay = baseDelay;
+    }
+}
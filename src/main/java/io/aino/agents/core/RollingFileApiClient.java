@@ -0,0 +1,157 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.TreeSet;
+
+/**
+ * {@link ApiClient} appending batches to rolling files in a local directory.
+ *
+ * Batches are written exactly as they would be sent to the API. Uncompressed batches are written one JSON
+ * document per line. Gzipped batches are concatenated, which is itself a valid gzip file.
+ * A new file is started when the current one would grow over the size limit, and the oldest files are
+ * deleted when there are more than the configured number of them.
+ */
+public class RollingFileApiClient implements ApiClient, Closeable {
+    private static final Log log = LogFactory.getLog(RollingFileApiClient.class);
+
+    private static final String FILE_PREFIX = "aino-archive-";
+    private static final byte[] LINE_SEPARATOR = {'\n'};
+
+    private final File directory;
+    private final String fileSuffix;
+    private final boolean gzipped;
+    private final long maxFileBytes;
+    private final int maxFiles;
+
+    private final TreeSet<String> files = new TreeSet<String>();
+    private OutputStream current;
+    private long currentBytes = 0;
+    private long sequence = 0;
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param directory directory to write the files to
+     * @param gzipped true if the batches are gzipped
+     * @param maxFileBytes size after which a new file is started
+     * @param maxFiles number of files to keep
+     */
+    public RollingFileApiClient(File directory, boolean gzipped, long maxFileBytes, int maxFiles) {
+        if(maxFileBytes < 1 || maxFiles < 1) {
+            throw new IllegalArgumentException("File size and count must be positive.");
+        }
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new AgentCoreException("Could not create sink directory: " + directory.getAbsolutePath());
+        }
+        this.directory = directory;
+        this.gzipped = gzipped;
+        this.fileSuffix = gzipped ? ".json.gz" : ".json";
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+
+        String[] existing = directory.list();
+        if(null != existing) {
+            for(String name : existing) {
+                if(name.startsWith(FILE_PREFIX) && name.endsWith(fileSuffix)) {
+                    files.add(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a batch to the current file.
+     *
+     * @param data batch to write
+     * @return accepted response
+     * @throws IllegalStateException if this client has been closed
+     */
+    @Override
+    public synchronized ApiResponse send(byte[] data) {
+        if(closed) {
+            throw new IllegalStateException("File sink is closed.");
+        }
+        long length = data.length + (gzipped ? 0 : LINE_SEPARATOR.length);
+        try {
+            if(null == current || (currentBytes > 0 && currentBytes + length > maxFileBytes)) {
+                roll();
+            }
+            current.write(data);
+            if(!gzipped) {
+                current.write(LINE_SEPARATOR);
+            }
+            current.flush();
+            currentBytes += length;
+        } catch (IOException e) {
+            closeCurrent();
+            throw new ClientHandlerException("Failed to write batch to " + directory.getAbsolutePath(), e);
+        }
+        return AcceptedApiResponse.INSTANCE;
+    }
+
+    /**
+     * Closes the current file. Batches sent after this are refused rather than starting a new file.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        closeCurrent();
+    }
+
+    private void roll() throws IOException {
+        closeCurrent();
+
+        String name;
+        do {
+            name = String.format("%s%013d-%06d%s", FILE_PREFIX, System.currentTimeMillis(), sequence++ % 1000000, fileSuffix);
+        } while(files.contains(name));
+
+        current = new FileOutputStream(new File(directory, name));
+        currentBytes = 0;
+        files.add(name);
+
+        while(files.size() > maxFiles) {
+            String oldest = files.pollFirst();
+            if(!new File(directory, oldest).delete()) {
+                log.warn("Could not delete old sink file: " + oldest);
+            }
+        }
+    }
+
+    private void closeCurrent() {
+        if(null == current) {
+            return;
+        }
+        try {
+            current.close();
+        } catch (IOException e) {
+            log.warn("Failed to close sink file.", e);
+        }
+        current = null;
+    }
+}
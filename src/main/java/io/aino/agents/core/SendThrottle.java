@@ -0,0 +1,142 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Server driven throttling shared by all {@link Sender}s of an agent.
+ *
+ * When the API responds with 429 or 503 and a Retry-After header, all senders are paused for the advised time.
+ * In addition, an adaptive minimum spacing between requests is kept: it is doubled every time the API
+ * throttles us and decreased additively after each accepted request.
+ */
+class SendThrottle {
+    private static final Log log = LogFactory.getLog(SendThrottle.class);
+
+    static final long MAX_PAUSE = 10 * 60 * 1000;
+    static final long MIN_SPACING_STEP = 50;
+    static final long MAX_SPACING = 60 * 1000;
+
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private long pausedUntil = 0;
+    private long nextRequestAt = 0;
+    private long requestSpacing = 0;
+
+    /**
+     * Checks whether a request could be made right now.
+     *
+     * @return true if not paused
+     */
+    synchronized boolean isRequestPermitted() {
+        return delay() <= 0;
+    }
+
+    /**
+     * Reserves a slot for a request.
+     *
+     * @return true if the request may be made
+     */
+    synchronized boolean tryAcquire() {
+        if(delay() > 0) {
+            return false;
+        }
+        nextRequestAt = System.currentTimeMillis() + requestSpacing;
+        return true;
+    }
+
+    /**
+     * Pauses all senders and slows down the request rate.
+     *
+     * @param pause time to pause in milliseconds
+     */
+    synchronized void throttled(long pause) {
+        long boundedPause = Math.min(MAX_PAUSE, Math.max(0, pause));
+        pausedUntil = Math.max(pausedUntil, System.currentTimeMillis() + boundedPause);
+        requestSpacing = Math.min(MAX_SPACING, Math.max(MIN_SPACING_STEP, requestSpacing * 2));
+        log.warn(new StringBuilder("Aino.io API is throttling requests. Pausing sending for ").append(boundedPause)
+                .append(" ms, minimum time between requests is now ").append(requestSpacing).append(" ms."));
+    }
+
+    /**
+     * Records an accepted request. Speeds up the request rate.
+     */
+    synchronized void accepted() {
+        if(requestSpacing > 0) {
+            requestSpacing = Math.max(0, requestSpacing - MIN_SPACING_STEP);
+            nextRequestAt = Math.min(nextRequestAt, System.currentTimeMillis() + requestSpacing);
+        }
+    }
+
+    /**
+     * Gets the time until requests are permitted again.
+     *
+     * @return time in milliseconds, 0 if requests are permitted
+     */
+    synchronized long permissionDelay() {
+        return Math.max(0, delay());
+    }
+
+    /**
+     * Gets the current minimum time between requests.
+     *
+     * @return time in milliseconds
+     */
+    synchronized long getRequestSpacing() {
+        return requestSpacing;
+    }
+
+    private long delay() {
+        return Math.max(pausedUntil, nextRequestAt) - System.currentTimeMillis();
+    }
+
+    /**
+     * Parses the value of a Retry-After header.
+     * Both delta-seconds and HTTP-date formats are supported.
+     *
+     * @param value header value
+     * @return time to wait in milliseconds, or -1 if the value is missing or invalid
+     */
+    static long parseRetryAfter(String value) {
+        if(StringUtils.isBlank(value)) {
+            return -1;
+        }
+        String trimmed = value.trim();
+        if(StringUtils.isNumeric(trimmed)) {
+            try {
+                return Long.parseLong(trimmed) * 1000;
+            } catch (NumberFormatException e) {
+                return MAX_PAUSE;
+            }
+        }
+        try {
+            SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return Math.max(0, format.parse(trimmed).getTime() - System.currentTimeMillis());
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+}
@@ -21,28 +21,81 @@ import io.aino.agents.core.config.AgentConfig;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * Class doing the message sending to aino.io.
+ *
+ * A batch is sent as soon as it reaches the size threshold, the maximum count or the maximum size,
+ * or when its oldest transaction has waited for the linger time, whichever comes first.
+ * While the buffer holds more than one batch, batches are sent back to back without waiting.
+ * With an encoder pool, the next batch is serialized and compressed on the pool while the current one is sent.
+ *
+ * Can run either on a dedicated thread through {@link #run()}, or as tasks on a shared
+ * executor through {@link #start(ScheduledExecutorService)}.
  */
-public class Sender implements Runnable, TransactionDataObserver {
+public class Sender implements Runnable, BulkDataObserver {
     private static final Log log = LogFactory.getLog(Sender.class);
 
     private enum Action {
-        RETRY, SEND, NONE
+        RETRY, SEND, LINGER, WAIT_FOR_PERMISSION, REDRIVE, NONE
     }
 
     private AtomicBoolean continueLoop = new AtomicBoolean(true);
-    private SenderStatus status = new SenderStatus();
+    private volatile boolean retired = false;
+    private volatile boolean aborted = false;
+    private volatile boolean started = false;
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    // Scheduling state, guarded by this.
+    private boolean wakeable = false;
+    private boolean wakeupRequested = false;
+    private boolean waitingForPermission = false;
+    private ScheduledExecutorService executor;
+    private Executor worker;
+    private ScheduledFuture<?> scheduledStep;
+    private long scheduledToken = 0;
+    private long tokenSequence = 0;
+    private final SenderStatus status;
+    private final SenderStatus redriveStatus;
+    private final RetryBackoff backoff;
 
     private final AgentConfig agentConfig;
-    private final TransactionDataBuffer transactionDataBuffer;
+    private final TransactionSource transactionDataBuffer;
     private final ApiClient client;
-    private String stringToSend;
+    private final CircuitBreaker circuitBreaker;
+    private final SendThrottle throttle;
+    private final DeadLetterStore deadLetterStore;
+    private final ApiClient sinks;
+    private final AgentMetrics metrics;
+    private final BatchSizeTuner batchSizeTuner;
+    private final SenderContext context;
+    private boolean redriveAllowed = false;
+    private final Deque<List<TransactionSerializable>> pendingBatches = new ArrayDeque<List<TransactionSerializable>>();
+    private byte[] requestContent;
+    private final ForkJoinPool encoder;
+    // Next batch, drained and being encoded while the current one is sent.
+    private List<TransactionSerializable> prefetchedBatch;
+    private Future<byte[]> prefetchedContent;
+    // Set by whichever comes first: the encoding finishing, or this sender giving up waiting for it.
+    private AtomicBoolean prefetchSettled;
+    // Set while there is data that could not be drained, so that any new data wakes the sender up.
+    private volatile boolean stalled = false;
 
     /**
      * Constructor.
@@ -51,9 +104,33 @@ public class Sender implements Runnable, TransactionDataObserver {
      * @param dataBuffer databuffer to use
      * @param client the Aino.io API client to use
      */
-    public Sender(AgentConfig config, TransactionDataBuffer dataBuffer, ApiClient client) {
+    public Sender(AgentConfig config, TransactionSource dataBuffer, ApiClient client) {
+        this(config, dataBuffer, client, new SenderContext(config));
+    }
+
+    /**
+     * Constructor for senders sharing state with other senders of the same agent.
+     *
+     * @param config agent configuration
+     * @param dataBuffer databuffer to use
+     * @param client the Aino.io API client to use
+     * @param context state shared between senders
+     */
+    Sender(AgentConfig config, TransactionSource dataBuffer, ApiClient client, SenderContext context) {
         agentConfig = config;
         this.client = client;
+        this.circuitBreaker = context.circuitBreaker;
+        this.throttle = context.throttle;
+        this.deadLetterStore = context.deadLetterStore;
+        this.sinks = context.sinks;
+        this.metrics = context.metrics;
+        this.batchSizeTuner = context.batchSizeTuner;
+        this.context = context;
+        this.encoder = context.encoder;
+        this.status = new SenderStatus(config.getMaxRetries(), config.isBisectRejectedEnabled());
+        this.redriveStatus = new SenderStatus(1, false);
+        this.backoff = new RetryBackoff(config.getRetryBaseDelay(), config.getRetryMaxDelay());
+        this.status.initialStatus();
         transactionDataBuffer = dataBuffer;
         transactionDataBuffer.addLogDataSizeObserver(this);
     }
@@ -64,110 +141,632 @@ public class Sender implements Runnable, TransactionDataObserver {
      */
     public void stop() {
         continueLoop.set(false);
+        wakeUpToStop();
+    }
+
+    /**
+     * Stop sending without draining the buffer.
+     * Batches already taken from the buffer are still sent. Used for scaling down when other senders
+     * share the same buffer.
+     */
+    public void retire() {
+        retired = true;
+        continueLoop.set(false);
+        wakeUpToStop();
+    }
+
+    /**
+     * Stop sending right away.
+     * Batches this sender holds are stored to the dead-letter store, or dropped if there is none.
+     * A request in progress is completed first. Used when a graceful stop takes too long.
+     */
+    void abort() {
+        synchronized (this) {
+            aborted = true;
+            // Cut short any wait, including retry backoff.
+            wakeable = true;
+        }
+        continueLoop.set(false);
+        wakeUp();
+    }
+
+    /**
+     * Sends without waiting for the batch to fill up.
+     * Used when the agent is flushed.
+     */
+    void flush() {
+        wakeUp();
+    }
+
+    /**
+     * Starts sending as tasks on the given executor instead of a dedicated thread.
+     * The executor can be shared by any number of senders.
+     *
+     * @param executor executor to run the sending on
+     */
+    public void start(ScheduledExecutorService executor) {
+        start(executor, null);
+    }
+
+    /**
+     * Starts sending as tasks that are timed by the given executor but run on another one.
+     * Used for running each round of sending on its own virtual thread.
+     *
+     * @param executor executor timing the rounds of sending
+     * @param worker executor running the rounds, null to run them on the timing executor
+     */
+    public synchronized void start(ScheduledExecutorService executor, Executor worker) {
+        this.started = true;
+        this.executor = executor;
+        this.worker = worker;
+        schedule(0);
+    }
+
+    /**
+     * Waits until this sender has stopped.
+     *
+     * @param timeout maximum time to wait in milliseconds
+     * @return true if the sender stopped in time or was never started
+     * @throws InterruptedException when interrupted
+     */
+    boolean awaitTermination(long timeout) throws InterruptedException {
+        return !started || finished.await(timeout, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void logDataAdded(int newSize) {
-        synchronized (this) {
-            if (newSize >= agentConfig.getSizeThreshold()) {
-                notify();
-            }
+        logDataAdded(newSize, 1);
+    }
+
+    @Override
+    public void logDataAdded(int newSize, int addedCount) {
+        // The first entries start the linger time, later ones may fill the batch.
+        if (newSize <= addedCount || isBatchFull(newSize) || stalled) {
+            wakeUp();
         }
     }
 
     @Override
     public void run() {
-        status.initialStatus();
-
+        started = true;
         try {
-            while (transactionDataBuffer.containsData() || continueLoop.get()) {
-                switch(action()) {
-                    case RETRY: retry(); break;
-                    case SEND: send(); break;
-                    case NONE: default: sleep(); break;
-                }
+            long delay;
+            while((delay = step()) >= 0) {
+                await(delay);
             }
         } catch (InterruptedException ignored) {
             // Thread has been interrupted. Stop processing.
+            finish();
         }
     }
 
+    /**
+     * Does one round of sending.
+     *
+     * @return time in milliseconds until the next round, or -1 when this sender has stopped
+     */
+    long step() {
+        synchronized (this) {
+            wakeable = false;
+            wakeupRequested = false;
+            waitingForPermission = false;
+        }
+
+        if(aborted) {
+            spillPendingBatches();
+            finish();
+            return -1;
+        }
+
+        if(!hasDataToSend() && !continueLoop.get()) {
+            finish();
+            return -1;
+        }
+
+        switch(action()) {
+            case RETRY: return retry();
+            case SEND: return send();
+            case LINGER: return linger();
+            case WAIT_FOR_PERMISSION: return permissionDelay();
+            case REDRIVE: redrive(); return 0;
+            case NONE: default: return idle();
+        }
+    }
+
+    private boolean hasDataToSend() {
+        return !pendingBatches.isEmpty() || null != prefetchedBatch
+                || (!retired && !aborted && transactionDataBuffer.containsData());
+    }
+
     private Action action() {
-        if(status.retryLastSend) {
-            return Action.RETRY;
+        if(!hasDataToSend()) {
+            return shouldRedrive() ? Action.REDRIVE : Action.NONE;
         }
 
-        if(transactionDataBuffer.containsData()){
-            return Action.SEND;
+        if(pendingBatches.isEmpty() && null == prefetchedBatch && batchDelay() > 0) {
+            return Action.LINGER;
         }
 
-        return Action.NONE;
+        if(!circuitBreaker.isRequestPermitted() || !throttle.isRequestPermitted()) {
+            return Action.WAIT_FOR_PERMISSION;
+        }
+
+        return pendingBatches.isEmpty() ? Action.SEND : Action.RETRY;
     }
 
-    private void retry() throws InterruptedException {
-        performRequest();
-        sleep();
+    /**
+     * Gets the time until the next batch should be sent.
+     *
+     * @return time in milliseconds, 0 if the batch should be sent now
+     */
+    private long batchDelay() {
+        if(!continueLoop.get() || context.isFlushing() || isBatchFull(transactionDataBuffer.getSize())) {
+            return 0;
+        }
+        long age = transactionDataBuffer.getOldestEntryAge();
+        if(age < 0) {
+            // Drained by another sender meanwhile.
+            return agentConfig.getBatchLinger();
+        }
+        return Math.max(0, agentConfig.getBatchLinger() - age);
     }
 
-    private void send() throws InterruptedException {
-        sendLogData();
-        sleep();
+    private boolean isBatchFull(int size) {
+        // An auto-tuned batch size replaces the size threshold.
+        int threshold = null == batchSizeTuner ? Math.max(1, agentConfig.getSizeThreshold()) : batchSizeTuner.getBatchSize();
+        return size >= threshold
+                || size >= batchMaxCount()
+                || transactionDataBuffer.getSizeInBytes() >= agentConfig.getBatchMaxBytes();
+    }
+
+    private int batchMaxCount() {
+        return null == batchSizeTuner ? agentConfig.getBatchMaxCount() : batchSizeTuner.getBatchSize();
+    }
+
+    private boolean shouldRedrive() {
+        // Dead letters are replayed only when idle and after a successful send.
+        return redriveAllowed && null != deadLetterStore && deadLetterStore.hasBatches()
+                && circuitBreaker.isRequestPermitted() && throttle.isRequestPermitted();
+    }
+
+    private long retry() {
+        return performRequest() ? pause() : 0;
+    }
+
+    private long send() {
+        if(!takeBatch()) {
+            // Data that cannot be drained yet, such as ring slots behind a claimed but unpublished head,
+            // is waited for instead of spinning. Publishing the head wakes the sender up.
+            stalled = transactionDataBuffer.containsData();
+            return stalled ? idle() : 0;
+        }
+        stalled = false;
+        return sendBatch() ? pause() : 0;
     }
 
-    private void sleep() throws InterruptedException {
+    private synchronized long linger() {
+        // New data may fill the batch before the linger time is up.
+        wakeable = true;
+        return batchDelay();
+    }
+
+    private synchronized long permissionDelay() {
+        // Sleep until the circuit breaker reopens or the throttle allows the next request.
+        // Only a stop request cuts the wait short, new data would not be sent any sooner.
+        waitingForPermission = true;
+        return Math.max(1, Math.max(circuitBreaker.permissionDelay(), throttle.permissionDelay()));
+    }
+
+    private long pause() {
+        if(status.throttled) {
+            // The shared throttle decides when to send next.
+            return 0;
+        }
+
+        if(!status.retryLastSend) {
+            backoff.reset();
+            // Check right away whether a backlog or split rejected batch is waiting.
+            return 0;
+        }
+
+        // Do not let new data cut the backoff short.
+        return backoff.nextDelay();
+    }
+
+    private synchronized long idle() {
         // If sleep interval is very short, this will generate a ridiculous amount of log messages. Enable only in dire need of debugging.
         // log.trace(new StringBuilder("Sleeping for a maximum of ").append(agentConfig.getSendInterval()).append(" ms."));
 
+        // New data wakes the sender up to start its linger time.
+        wakeable = true;
+        return agentConfig.getSendInterval();
+    }
+
+    private synchronized void await(long delay) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + delay;
+        while(delay > 0 && !(wakeable && wakeupRequested)) {
+            wait(delay);
+            delay = deadline - System.currentTimeMillis();
+        }
+    }
+
+    private synchronized void wakeUpToStop() {
+        if(waitingForPermission) {
+            wakeable = true;
+        }
+        wakeUp();
+    }
+
+    private synchronized void wakeUp() {
+        wakeupRequested = true;
+        if(!wakeable) {
+            return;
+        }
+        notify();
+        if(0 != scheduledToken) {
+            scheduledStep.cancel(false);
+            schedule(0);
+            wakeable = false;
+        }
+    }
+
+    private void schedule(long delay) {
+        final long token = ++tokenSequence;
+        try {
+            scheduledStep = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    dispatch(token);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+            scheduledToken = token;
+        } catch (RejectedExecutionException e) {
+            log.error("Sender executor does not accept more tasks. Stopping the sender.", e);
+            scheduledToken = 0;
+            finish();
+        }
+    }
+
+    private void dispatch(final long token) {
+        if(null == worker) {
+            runScheduledStep(token);
+            return;
+        }
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                runScheduledStep(token);
+            }
+        });
+    }
+
+    private void runScheduledStep(long token) {
+        synchronized (this) {
+            if(token != scheduledToken) {
+                // Replaced by an earlier run after a wake-up.
+                return;
+            }
+            scheduledToken = 0;
+        }
+
+        long delay;
+        try {
+            delay = step();
+        } catch (RuntimeException e) {
+            log.error("Unexpected error while sending to aino.io.", e);
+            delay = agentConfig.getSendInterval();
+        }
+
         synchronized (this) {
-            wait(agentConfig.getSendInterval());
+            if(delay >= 0) {
+                schedule(wakeable && wakeupRequested ? 0 : delay);
+            }
+        }
+    }
+
+    private void finish() {
+        transactionDataBuffer.removeLogDataSizeObserver(this);
+        finished.countDown();
+    }
+
+    /**
+     * Takes the next batch to send, the prefetched one if there is one.
+     *
+     * @return false if there was nothing to take
+     */
+    private boolean takeBatch() {
+        if(null != prefetchedBatch) {
+            pendingBatches.addFirst(prefetchedBatch);
+            requestContent = takePrefetchedContent();
+            return true;
+        }
+        List<TransactionSerializable> batch = transactionDataBuffer.drainEntries(batchMaxCount(), agentConfig.getBatchMaxBytes());
+        if(batch.isEmpty()) {
+            return false;
+        }
+        pendingBatches.addFirst(batch);
+        return true;
+    }
+
+    private boolean sendBatch() {
+        prefetch();
+        copyToSinks();
+        return performRequest();
+    }
+
+    /**
+     * Starts encoding the next batch on the encoder pool, if it is ready to be sent.
+     */
+    private void prefetch() {
+        if(null == encoder || null != prefetchedBatch || retired || aborted || batchDelay() > 0) {
+            return;
+        }
+        final List<TransactionSerializable> batch = transactionDataBuffer.drainEntries(batchMaxCount(), agentConfig.getBatchMaxBytes());
+        if(batch.isEmpty()) {
+            return;
+        }
+        prefetchedBatch = batch;
+        final AtomicBoolean settled = new AtomicBoolean();
+        prefetchSettled = settled;
+        metrics.recordEncodeQueued(1);
+        try {
+            prefetchedContent = encoder.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException {
+                    try {
+                        return encode(transactionDataBuffer.serialize(batch));
+                    } finally {
+                        metrics.recordEncodeQueued(-1);
+                        if(settled.compareAndSet(false, true)) {
+                            metrics.recordSendQueued(1);
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Pool is shut down. The batch is encoded on this thread when it is sent.
+            metrics.recordEncodeQueued(-1);
+            metrics.recordSendQueued(1);
+            prefetchedContent = null;
         }
     }
 
-    private void sendLogData() {
+    /**
+     * Takes the content of the prefetched batch, waiting for the encoding if needed.
+     *
+     * @return encoded content, or null if encoding failed and should be done again on this thread
+     */
+    private byte[] takePrefetchedContent() {
+        boolean queued = true;
         try {
-            stringToSend = transactionDataBuffer.getDataToSend();
-            performRequest();
+            return null == prefetchedContent ? null : prefetchedContent.get();
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // If the encoding has not finished, it will not count the batch as waiting to be sent.
+            queued = !prefetchSettled.compareAndSet(false, true);
+            return null;
+        } finally {
+            if(queued) {
+                metrics.recordSendQueued(-1);
+            }
+            prefetchedBatch = null;
+            prefetchedContent = null;
+            prefetchSettled = null;
+        }
+    }
+
+    /**
+     * Hands a new batch to the additional sinks.
+     * Done once per batch, so retries and split batches are not copied again.
+     */
+    private void copyToSinks() {
+        if(null == sinks) {
+            return;
+        }
+        try {
+            sinks.send(getRequestContent());
         } catch (IOException e) {
-            log.error("Failed to send LogEntries because the JSON serialization failed.", e);
+            // performRequest() logs and discards the batch.
+        } catch (RuntimeException e) {
+            log.warn("Failed to copy batch to sinks.", e);
         }
     }
 
-    private void performRequest() {
+    /**
+     * Sends the current data.
+     *
+     * @return false if the request was not made because sending is paused
+     */
+    private boolean performRequest() {
+        byte[] content;
+        try {
+            content = getRequestContent();
+        } catch (IOException e) {
+            log.error("Failed to send LogEntries because the JSON serialization failed.", e);
+            context.dropped(discardBatch());
+            return true;
+        }
+
+        // Throttle first: losing a throttle slot is cheap, losing the circuit breaker probe is not.
+        if(!throttle.tryAcquire() || !circuitBreaker.tryAcquire()) {
+            // Sending is paused or another sender is probing the API. Keep the data and try again later.
+            return false;
+        }
+
+        long start = System.nanoTime();
         try {
             status.retryCount++;
             log.debug("Attempting to resend log entries (retry " + status.retryCount + ").");
 
-            ApiResponse response = client.send(getRequestContent());
+            ApiResponse response = client.send(content);
 
             status.responseStatus(response);
         } catch (ClientHandlerException e) {
             status.exceptionStatus();
         } finally {
+            long latency = System.nanoTime() - start;
+            metrics.recordSend(latency, pendingBatches.getFirst().size());
+            if(null != batchSizeTuner) {
+                batchSizeTuner.record(latency, status.throttled || status.isEndpointFailure());
+            }
+            recordCircuitStatus(status);
             status.continuationStatus();
+            batchAttempted();
         }
+        return true;
     }
 
+    private void batchAttempted() {
+        if(status.isLastSendSuccessful()) {
+            redriveAllowed = true;
+            context.delivered(pendingBatches.getFirst());
+        }
 
+        if(status.retriesExhausted) {
+            storeDeadLetter();
+        }
 
-    private byte[] getRequestContent() {
-        if(!agentConfig.isGzipEnabled()) {
-            return stringToSend.getBytes();
+        if(status.retryLastSend) {
+            context.retried(pendingBatches.getFirst(), status.retryCount);
+            return;
+        }
+
+        List<TransactionSerializable> batch = discardBatch();
+        if(!status.bisectLastSend) {
+            if(!status.isLastSendSuccessful() && !status.retriesExhausted) {
+                // Rejected by the API, already logged by the status.
+                context.dropped(batch);
+            }
+            return;
         }
 
+        if(batch.size() > 1) {
+            int half = batch.size() / 2;
+            log.info(new StringBuilder("Splitting rejected batch of ").append(batch.size()).append(" entries and resending the halves."));
+            pendingBatches.addFirst(batch.subList(half, batch.size()));
+            pendingBatches.addFirst(batch.subList(0, half));
+        } else {
+            logRejectedEntry(batch.get(0));
+            context.dropped(batch);
+        }
+    }
+
+    private void storeDeadLetter() {
+        byte[] gzipped = null;
+        if(null != deadLetterStore) {
+            try {
+                byte[] content = getRequestContent();
+                gzipped = agentConfig.isGzipEnabled() ? content : Gzip.compress(content);
+            } catch (IOException e) {
+                log.error("Failed to store LogEntries because the JSON serialization failed.", e);
+            }
+        }
+        context.spill(pendingBatches.getFirst(), gzipped);
+    }
+
+    private void spillPendingBatches() {
+        if(null != prefetchedBatch) {
+            List<TransactionSerializable> batch = prefetchedBatch;
+            takePrefetchedContent();
+            pendingBatches.addLast(batch);
+        }
+        while(!pendingBatches.isEmpty()) {
+            storeDeadLetter();
+            discardBatch();
+        }
+    }
+
+    private void redrive() {
+        String name = deadLetterStore.claim();
+        if(null == name) {
+            return;
+        }
+
+        byte[] content;
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            GZIPOutputStream gzipStream = new GZIPOutputStream(baos);
-            gzipStream.write(stringToSend.getBytes());
+            byte[] gzipped = deadLetterStore.read(name);
+            content = agentConfig.isGzipEnabled() ? gzipped : Gzip.decompress(gzipped);
+        } catch (IOException e) {
+            log.error("Could not read batch " + name + " from dead-letter store. Removing it.", e);
+            deadLetterStore.remove(name);
+            return;
+        }
 
-            gzipStream.finish();
-            baos.flush();
-            byte[] returnBytes = baos.toByteArray();
-            baos.close();
-            gzipStream.close();
+        if(!throttle.tryAcquire() || !circuitBreaker.tryAcquire()) {
+            deadLetterStore.release(name);
+            return;
+        }
 
-            return returnBytes;
+        try {
+            redriveStatus.responseStatus(client.send(content));
+        } catch (ClientHandlerException e) {
+            redriveStatus.exceptionStatus();
+        }
+        recordCircuitStatus(redriveStatus);
+
+        if(redriveStatus.isLastSendSuccessful()) {
+            log.info("Re-drove batch " + name + " from dead-letter store.");
+            deadLetterStore.remove(name);
+        } else if(redriveStatus.retryLastSend) {
+            // Still failing. Wait for the next successful send.
+            redriveAllowed = false;
+            deadLetterStore.release(name);
+        } else {
+            log.error("Aino.io API rejected batch " + name + " from dead-letter store. Dropping it.");
+            deadLetterStore.remove(name);
+        }
+        redriveStatus.retryLastSend = false;
+        redriveStatus.retryCount = 0;
+    }
+
+    private List<TransactionSerializable> discardBatch() {
+        requestContent = null;
+        return pendingBatches.removeFirst();
+    }
+
+    private void logRejectedEntry(TransactionSerializable entry) {
+        if(!log.isErrorEnabled()) {
+            return;
+        }
+        String json;
+        try {
+            json = transactionDataBuffer.serialize(Collections.singletonList(entry));
         } catch (IOException e) {
-            throw new AgentCoreException("Failed to compress Aino log message using gzip.");
+            json = "<unserializable>";
+        }
+        log.error("Aino.io API rejected a transaction. Dropping it: " + json);
+    }
+
+    private void recordCircuitStatus(SenderStatus status) {
+        if(status.throttled) {
+            throttle.throttled(status.retryAfter >= 0 ? status.retryAfter : backoff.nextDelay());
+        } else {
+            throttle.accepted();
+        }
+
+        if(status.isEndpointFailure()) {
+            circuitBreaker.recordFailure();
+        } else {
+            circuitBreaker.recordSuccess();
+        }
+    }
+
+
+
+    private byte[] getRequestContent() throws IOException {
+        if(null == requestContent) {
+            // Encoded once per batch, retries reuse the same content.
+            requestContent = encode(transactionDataBuffer.serialize(pendingBatches.getFirst()));
+        }
+        return requestContent;
+    }
+
+    private byte[] encode(String stringToSend) {
+        if(!agentConfig.isGzipEnabled()) {
+            return stringToSend.getBytes();
         }
+        return Gzip.compress(stringToSend.getBytes());
     }
 }
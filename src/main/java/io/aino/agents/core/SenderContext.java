@@ -0,0 +1,221 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import io.aino.agents.core.config.AgentConfig;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * State shared by all {@link Sender}s of one {@link Agent}.
+ */
+class SenderContext {
+    private static final Log log = LogFactory.getLog(SenderContext.class);
+
+    final CircuitBreaker circuitBreaker;
+    final SendThrottle throttle = new SendThrottle();
+    final DeadLetterStore deadLetterStore;
+    final ApiClient sinks;
+    final AgentMetrics metrics = new AgentMetrics();
+    final BatchSizeTuner batchSizeTuner;
+    final ForkJoinPool encoder;
+    final TransactionPool pool;
+    // True if entries may have to be handed back to a pool or a ring once settled.
+    private final boolean recycling;
+    private volatile long flushTarget = 0;
+    private final List<BatchListener> listeners = new CopyOnWriteArrayList<BatchListener>();
+    private final AtomicInteger trackedTransactions = new AtomicInteger();
+
+    /**
+     * Constructor.
+     *
+     * @param config agent configuration
+     */
+    SenderContext(AgentConfig config) {
+        this(config, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param config agent configuration
+     * @param sinks additional sinks receiving a copy of every new batch, or null
+     */
+    SenderContext(AgentConfig config, ApiClient sinks) {
+        this.sinks = sinks;
+        this.circuitBreaker = new CircuitBreaker(config.getCircuitBreakerThreshold(), config.getCircuitBreakerOpenTime());
+        this.deadLetterStore = config.isDeadLetterEnabled()
+                ? new DeadLetterStore(new File(config.getDeadLetterDirectory()), config.getDeadLetterMaxBytes())
+                : null;
+        this.batchSizeTuner = config.isBatchAutoTuneEnabled()
+                ? new BatchSizeTuner(config.getBatchMinCount(), config.getBatchMaxCount(), metrics)
+                : null;
+        // Work-stealing pool, its threads are daemon threads.
+        this.encoder = config.getEncoderThreads() > 0 ? new ForkJoinPool(config.getEncoderThreads()) : null;
+        this.pool = config.isRecyclingEnabled() ? new TransactionPool(config) : null;
+        this.recycling = null != pool || config.getRingSize() > 0;
+    }
+
+    /**
+     * Makes senders send without lingering until the given number of transactions have been settled.
+     *
+     * @param settledCount transaction count, as in {@link AgentMetrics#getSettledTransactions()}
+     */
+    synchronized void requestFlush(long settledCount) {
+        flushTarget = Math.max(flushTarget, settledCount);
+    }
+
+    /**
+     * Checks if a flush is in progress.
+     *
+     * @return true if senders should not wait for batches to fill up
+     */
+    boolean isFlushing() {
+        return flushTarget > metrics.getSettledTransactions();
+    }
+
+    /**
+     * Adds a listener notified about the outcome of every batch.
+     *
+     * @param listener listener to add
+     */
+    void addBatchListener(BatchListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Attaches a future to a transaction, to be completed when the transaction is settled.
+     *
+     * @param entry transaction, not yet added to the buffer
+     * @return future of the delivery
+     */
+    DeliveryFuture track(TransactionSerializable entry) {
+        DeliveryFuture future = new DeliveryFuture();
+        entry.delivery = future;
+        trackedTransactions.incrementAndGet();
+        return future;
+    }
+
+    // Listeners are called before the futures are completed, so a completed future implies the listener has run.
+
+    /**
+     * Records a batch accepted by Aino.io API.
+     *
+     * @param batch transactions in the batch
+     */
+    void delivered(List<TransactionSerializable> batch) {
+        metrics.recordDelivered(batch.size());
+        for(BatchListener listener : listeners) {
+            try {
+                listener.onSent(batch.size());
+            } catch (RuntimeException e) {
+                log.warn("Batch listener failed.", e);
+            }
+        }
+        complete(batch, DeliveryOutcome.DELIVERED);
+    }
+
+    /**
+     * Records a failed attempt to send a batch that will be retried.
+     *
+     * @param batch transactions in the batch
+     * @param attempt number of attempts made so far
+     */
+    void retried(List<TransactionSerializable> batch, int attempt) {
+        for(BatchListener listener : listeners) {
+            try {
+                listener.onRetried(batch.size(), attempt);
+            } catch (RuntimeException e) {
+                log.warn("Batch listener failed.", e);
+            }
+        }
+    }
+
+    /**
+     * Records a batch that was rejected or could not be sent nor stored.
+     *
+     * @param batch transactions in the batch
+     */
+    void dropped(List<TransactionSerializable> batch) {
+        metrics.recordDropped(batch.size());
+        for(BatchListener listener : listeners) {
+            try {
+                listener.onDropped(batch.size());
+            } catch (RuntimeException e) {
+                log.warn("Batch listener failed.", e);
+            }
+        }
+        complete(batch, DeliveryOutcome.DROPPED);
+    }
+
+    /**
+     * Stores transactions to the dead-letter store, or drops them if that is not possible.
+     *
+     * @param batch transactions in the batch
+     * @param gzipped gzipped JSON of the batch, or null if it could not be encoded
+     */
+    void spill(List<TransactionSerializable> batch, byte[] gzipped) {
+        if(null == deadLetterStore || null == gzipped) {
+            log.error(new StringBuilder("Discarding ").append(batch.size()).append(" entries."));
+            dropped(batch);
+            return;
+        }
+        if(!deadLetterStore.store(gzipped)) {
+            log.error(new StringBuilder("Discarding ").append(batch.size()).append(" entries. Could not store them to dead-letter store."));
+            dropped(batch);
+            return;
+        }
+
+        log.warn(new StringBuilder("Stored ").append(batch.size()).append(" entries to dead-letter store."));
+        metrics.recordSpilled(batch.size());
+        for(BatchListener listener : listeners) {
+            try {
+                listener.onSpilled(batch.size());
+            } catch (RuntimeException e) {
+                log.warn("Batch listener failed.", e);
+            }
+        }
+        complete(batch, DeliveryOutcome.SPILLED);
+    }
+
+    private void complete(List<TransactionSerializable> batch, DeliveryOutcome outcome) {
+        // Nobody is waiting, skip going through the batch.
+        if(0 != trackedTransactions.get()) {
+            for(TransactionSerializable entry : batch) {
+                DeliveryFuture future = entry.delivery;
+                if(null != future) {
+                    entry.delivery = null;
+                    trackedTransactions.decrementAndGet();
+                    future.complete(outcome);
+                }
+            }
+        }
+        if(recycling) {
+            for(TransactionSerializable entry : batch) {
+                if(null != entry.owner) {
+                    entry.owner.release(entry);
+                }
+            }
+        }
+    }
+}
@@ -27,18 +27,43 @@ import org.apache.commons.logging.LogFactory;
 class SenderStatus {
     private static final Log log = LogFactory.getLog(SenderStatus.class);
 
-    private static final int MAX_RETRIES = 4;
+    private final int maxRetries;
+    private final boolean bisectRejected;
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+    private static final int HTTP_PAYLOAD_TOO_LARGE = 413;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVICE_UNAVAILABLE = 503;
+
     boolean retryLastSend = false;
     int retryCount = 0;
+    boolean throttled = false;
+    boolean bisectLastSend = false;
+    boolean retriesExhausted = false;
+    long retryAfter = -1;
 
     private boolean lastSendSuccessful;
     private int lastResponseStatus;
     private String lastResponse;
 
+    /**
+     * Constructor.
+     *
+     * @param maxRetries maximum number of send attempts for a batch
+     * @param bisectRejected whether batches rejected with 4xx should be split and resent
+     */
+    SenderStatus(int maxRetries, boolean bisectRejected) {
+        this.maxRetries = maxRetries;
+        this.bisectRejected = bisectRejected;
+    }
+
     private void createLogMessagesForStatus() {
         if (this.lastSendSuccessful && log.isDebugEnabled()) {
             log.debug(buildStatusLogMessage());
         }
+        if(this.throttled && log.isWarnEnabled()) {
+            log.warn(buildStatusLogMessage());
+            return;
+        }
         if(!this.lastSendSuccessful && log.isErrorEnabled()){
             log.error(buildStatusLogMessage());
         }
@@ -49,30 +74,48 @@ class SenderStatus {
             return new StringBuilder("Succeeded in sending LogEntries. HTTP status code: ").append(this.lastResponseStatus).toString();
         }
 
-        if(this.retryCount == SenderStatus.MAX_RETRIES) {
-            return new StringBuilder("Failed to send LogEntries after ").append(this.retryCount + 1).append(" tries. Discarding the entries.").toString();
+        if(this.retryCount >= this.maxRetries) {
+            return new StringBuilder("Failed to send LogEntries after ").append(this.retryCount).append(" tries. Giving up on the entries.").toString();
         }
 
         if(-1 == this.lastResponseStatus) {
             return "Failed to send LogEntries. Connection timed out.";
         }
 
+        if(this.throttled) {
+            return new StringBuilder("Sending LogEntries was throttled. HTTP status code: ").append(this.lastResponseStatus)
+                    .append(" Keeping the entries for retry.").toString();
+        }
+
         StringBuilder sb = new StringBuilder("Failed to send LogEntries.");
         sb.append(" HTTP status code: ").append(this.lastResponseStatus);
         sb.append(" Response body: ").append(this.lastResponse);
         return sb.toString();
     }
 
-    private void handleResponseStatus() {
+    private void handleResponseStatus(ApiResponse response) {
+        this.throttled = false;
+        this.bisectLastSend = false;
+        this.retryAfter = -1;
+
         if (isHttpStatus2xx()) {
             this.lastSendSuccessful = true;
             return;
         }
 
+        if(isThrottlingStatus(response)) {
+            // Rate limited. The data is fine, keep it until the API accepts it.
+            this.lastSendSuccessful = false;
+            this.retryLastSend = true;
+            this.throttled = true;
+            return;
+        }
+
         if(isHttpStatus4xx()){
-            // A malformed request. It will not get correct by retrying.
+            // A malformed request. It will not get correct by retrying, but its parts might go through.
             this.lastSendSuccessful = false;
             this.retryLastSend = false;
+            this.bisectLastSend = this.bisectRejected || HTTP_PAYLOAD_TOO_LARGE == this.lastResponseStatus;
             return;
         }
 
@@ -80,10 +123,34 @@ class SenderStatus {
         this.retryLastSend = true;
     }
 
+    private boolean isThrottlingStatus(ApiResponse response) {
+        if(HTTP_TOO_MANY_REQUESTS == this.lastResponseStatus) {
+            this.retryAfter = SendThrottle.parseRetryAfter(retryAfterHeader(response));
+            return true;
+        }
+        if(HTTP_SERVICE_UNAVAILABLE == this.lastResponseStatus) {
+            // Without Retry-After a 503 is handled like any other server error.
+            this.retryAfter = SendThrottle.parseRetryAfter(retryAfterHeader(response));
+            return this.retryAfter >= 0;
+        }
+        return false;
+    }
+
+    private static String retryAfterHeader(ApiResponse response) {
+        if(response instanceof HeaderAwareApiResponse) {
+            return ((HeaderAwareApiResponse) response).getHeader(RETRY_AFTER_HEADER);
+        }
+        return null;
+    }
+
     private boolean isHttpStatus2xx() {
         return this.isInInclusiveRange(200, 299, this.lastResponseStatus);
     }
 
+    private boolean isHttpStatus5xx() {
+        return this.isInInclusiveRange(500, 599, this.lastResponseStatus);
+    }
+
     private boolean isHttpStatus4xx() {
         return this.isInInclusiveRange(400, 499, this.lastResponseStatus);
     }
@@ -98,6 +165,25 @@ class SenderStatus {
         return true;
     }
 
+    /**
+     * Checks if the last send was accepted by the API.
+     *
+     * @return true if HTTP status was 2xx
+     */
+    boolean isLastSendSuccessful() {
+        return this.lastSendSuccessful;
+    }
+
+    /**
+     * Checks if the last send failed because the API was unreachable or failing.
+     * Such failures count towards opening the circuit breaker.
+     *
+     * @return true if connection failed or HTTP status was 5xx
+     */
+    boolean isEndpointFailure() {
+        return !this.lastSendSuccessful && !this.throttled && (-1 == this.lastResponseStatus || isHttpStatus5xx());
+    }
+
     /**
      * Sets the initial state.
      */
@@ -115,7 +201,7 @@ class SenderStatus {
     void responseStatus(ApiResponse response) {
         this.lastResponseStatus = response.getStatus();
         this.lastResponse = response.getPayload();
-        this.handleResponseStatus();
+        this.handleResponseStatus(response);
     }
 
     /**
@@ -123,6 +209,9 @@ class SenderStatus {
      * Enables retries.
      */
     void exceptionStatus() {
+        this.throttled = false;
+        this.bisectLastSend = false;
+        this.retryAfter = -1;
         this.lastSendSuccessful = false;
         this.lastResponseStatus = -1;
         this.retryLastSend = true;
@@ -133,8 +222,13 @@ class SenderStatus {
      * If last send was successful or max retries tried, reset some internal variables.
      */
     void continuationStatus() {
+        if (this.throttled) {
+            // Throttled attempts do not count as retries.
+            this.retryCount--;
+        }
         this.createLogMessagesForStatus();
-        if (this.lastSendSuccessful || this.retryCount == this.MAX_RETRIES) {
+        this.retriesExhausted = !this.lastSendSuccessful && this.retryLastSend && this.retryCount >= this.maxRetries;
+        if (this.lastSendSuccessful || !this.retryLastSend || this.retryCount >= this.maxRetries) {
             this.retryLastSend = false;
             this.retryCount = 0;
         }
@@ -0,0 +1,71 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+/**
+ * What happened to the transactions of an {@link Agent} by the time it stopped.
+ */
+public final class ShutdownReport {
+    private final long delivered;
+    private final long spilled;
+    private final long dropped;
+    private final long inFlight;
+
+    ShutdownReport(AgentMetrics metrics, long addedCount) {
+        synchronized (metrics) {
+            this.delivered = metrics.getDeliveredTransactions();
+            this.spilled = metrics.getSpilledTransactions();
+            this.dropped = metrics.getDroppedTransactions();
+        }
+        this.inFlight = Math.max(0, addedCount - delivered - spilled - dropped);
+    }
+
+    /**
+     * Gets the number of transactions accepted by Aino.io API.
+     *
+     * @return transaction count
+     */
+    public long getDelivered() { return delivered; }
+
+    /**
+     * Gets the number of transactions stored to the dead-letter store.
+     *
+     * @return transaction count
+     */
+    public long getSpilled() { return spilled; }
+
+    /**
+     * Gets the number of transactions rejected by Aino.io API or lost because they could not be stored.
+     *
+     * @return transaction count
+     */
+    public long getDropped() { return dropped; }
+
+    /**
+     * Gets the number of transactions still in a request to Aino.io API when the agent stopped.
+     * They are delivered, spilled or dropped when the request completes.
+     *
+     * @return transaction count
+     */
+    public long getInFlight() { return inFlight; }
+
+    @Override
+    public String toString() {
+        return new StringBuilder("delivered ").append(delivered).append(", spilled ").append(spilled)
+                .append(", dropped ").append(dropped).append(", in flight ").append(inFlight).toString();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * {@link Executor} running every task on a new thread.
+ * Meant for virtual threads, which are cheap to create and to block.
+ * It does not bound concurrency: each sender runs one step at a time, so the number of senders is the bound.
+ */
+class ThreadPerTaskExecutor implements Executor {
+    private final ThreadFactory threadFactory;
+
+    /**
+     * Constructor.
+     *
+     * @param threadFactory factory for the task threads
+     */
+    ThreadPerTaskExecutor(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        threadFactory.newThread(task).start();
+    }
+}
@@ -20,6 +20,7 @@ import io.aino.agents.core.config.AgentConfig;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * Class for creating log entries.
@@ -27,19 +28,41 @@ import java.util.*;
  * Once log entry is created with desired data, it should be passed to {@link Agent} for sending.
  */
 public class Transaction {
+    private static final int INITIAL_METADATA_CAPACITY = 2;
+    private static final int METADATA_SCAN_LIMIT = 8;
 
     private String toKey;
     private String fromKey;
     private String operationKey;
     private String payloadTypeKey;
     private String message;
+    // Set instead of message when the message is computed at encoding time.
+    private LazyValue lazyMessage;
     private String status;
     private String flowId;
-    private Map<String, List<String>> ids;
-    private Long timestamp;
-    private List<NameValuePair> metadata;
+    private long timestamp;
     private AgentConfig config;
 
+    // Set when the transaction came from a pool and may be reclaimed once added.
+    boolean recyclable;
+
+    // Allocated on first use, most transactions carry only a few ids and metadata entries.
+    private Map<String, List<String>> ids;
+    private Map<String, LongIdList> numericIds;
+    // Numeric id lists of a recycled transaction, reused by numericIdList.
+    private List<LongIdList> spareNumericIds;
+    private NameValuePair[] metadata;
+    private int metadataCount;
+    private Map<String, Integer> metadataIndex;
+    private List<NameValuePair> metadataView;
+
+    // Names resolved through key handles, null when the key was set as a string.
+    private String toName;
+    private String fromName;
+    private String operationName;
+    private String payloadTypeName;
+    private Map<String, String> idTypeNames;
+
     public enum Field {
         TO ("to"),
         FROM ("from"),
@@ -71,19 +94,19 @@ public class Transaction {
     public Object getFieldValue(Field field) {
         switch (field) {
             case TO:
-                return this.config.getApplications().getEntry(this.getToKey());
+                return null != this.toName ? this.toName : this.config.getApplications().getEntry(this.getToKey());
             case FROM:
-                return this.config.getApplications().getEntry(this.getFromKey());
+                return null != this.fromName ? this.fromName : this.config.getApplications().getEntry(this.getFromKey());
             case OPERATION:
-                return this.config.getOperations().getEntry(this.getOperationKey());
+                return null != this.operationName ? this.operationName : this.config.getOperations().getEntry(this.getOperationKey());
             case MESSAGE:
                 return this.getMessage();
             case STATUS:
                 return this.getStatus();
             case TIMESTAMP:
-                return this.timestamp;
+                return this.getTimestamp();
             case PAYLOADTYPE:
-                return this.config.getPayloadTypes().getEntry(this.getPayloadTypeKey());
+                return null != this.payloadTypeName ? this.payloadTypeName : this.config.getPayloadTypes().getEntry(this.getPayloadTypeKey());
             case FLOWID:
                 return this.getFlowId();
             default:
@@ -98,11 +121,8 @@ public class Transaction {
      * @param config agent configuration
      */
     public Transaction(AgentConfig config) {
-        this.ids = new HashMap<String, List<String>>();
-        this.timestamp = new Long(System.currentTimeMillis());
-        this.metadata =  new ArrayList<NameValuePair>(2);
+        this.timestamp = System.currentTimeMillis();
         this.config = config;
-
     }
 
     /**
@@ -120,6 +140,17 @@ public class Transaction {
      */
     public void setToKey(String toKey) {
         this.toKey = toKey;
+        this.toName = null;
+    }
+
+    /**
+     * Sets 'to application' from a pre-validated handle.
+     *
+     * @param to application handle
+     */
+    public void setTo(KeyHandle to) {
+        this.toKey = to.require(KeyHandle.Type.APPLICATION).getKey();
+        this.toName = to.getName();
     }
 
     /**
@@ -138,6 +169,17 @@ public class Transaction {
      */
     public void setFromKey(String fromKey) {
         this.fromKey = fromKey;
+        this.fromName = null;
+    }
+
+    /**
+     * Sets 'from application' from a pre-validated handle.
+     *
+     * @param from application handle
+     */
+    public void setFrom(KeyHandle from) {
+        this.fromKey = from.require(KeyHandle.Type.APPLICATION).getKey();
+        this.fromName = from.getName();
     }
 
     /**
@@ -156,6 +198,17 @@ public class Transaction {
      */
     public void setOperationKey(String operationKey) {
         this.operationKey = operationKey;
+        this.operationName = null;
+    }
+
+    /**
+     * Sets 'operation' from a pre-validated handle.
+     *
+     * @param operation operation handle
+     */
+    public void setOperation(KeyHandle operation) {
+        this.operationKey = operation.require(KeyHandle.Type.OPERATION).getKey();
+        this.operationName = operation.getName();
     }
 
     /**
@@ -174,15 +227,27 @@ public class Transaction {
      */
     public void setPayloadTypeKey(String payloadTypeKey) {
         this.payloadTypeKey = payloadTypeKey;
+        this.payloadTypeName = null;
+    }
+
+    /**
+     * Sets 'payload type' from a pre-validated handle.
+     *
+     * @param payloadType payload type handle
+     */
+    public void setPayloadType(KeyHandle payloadType) {
+        this.payloadTypeKey = payloadType.require(KeyHandle.Type.PAYLOAD_TYPE).getKey();
+        this.payloadTypeName = payloadType.getName();
     }
 
     /**
      * Gets message.
+     * A message set with {@link #setLazyMessage(Callable)} is computed by this call.
      *
      * @return message
      */
     public String getMessage() {
-        return message;
+        return null != lazyMessage ? lazyMessage.get() : message;
     }
 
     /**
@@ -192,6 +257,28 @@ public class Transaction {
      */
     public void setMessage(String message) {
         this.message = message;
+        this.lazyMessage = null;
+    }
+
+    /**
+     * Gets message for encoding, without computing a lazy message.
+     *
+     * @return message, or the {@link LazyValue} computing it
+     */
+    Object getMessageValue() {
+        return null != lazyMessage ? lazyMessage : message;
+    }
+
+    /**
+     * Sets message to be computed only when the transaction is encoded for sending.
+     * Transactions that are never sent never compute their message. The result is cut to
+     * {@link AgentConfig#getLazyValueMaxLength()}. The supplier may run on a sender thread.
+     *
+     * @param message computes the message
+     */
+    public void setLazyMessage(Callable<String> message) {
+        this.lazyMessage = new LazyValue(message, config.getLazyValueMaxLength());
+        this.message = null;
     }
 
     /**
@@ -236,20 +323,42 @@ public class Transaction {
 
     /**
      * Gets the timestamp this entry was created.
+     * Boxes the value on every call, {@link #getTimestampMillis()} does not.
      *
      * @return timestamp
      */
     public Long getTimestamp() {
+        return Long.valueOf(this.timestamp);
+    }
+
+    /**
+     * Gets the timestamp this entry was created.
+     *
+     * @return timestamp in milliseconds
+     */
+    public long getTimestampMillis() {
         return this.timestamp;
     }
 
     /**
-     * Gets all ids passed to this entry.
+     * Gets all ids passed to this entry as strings.
+     * The map is live: changes to it are sent with the entry. It is allocated on the first call if
+     * no ids have been added, so {@link #getIdTypeKeys()} is cheaper for just reading the id types.
+     * Numeric ids are available from {@link #getNumericIdsByType(String)}.
      *
      * @return ids
      */
     public Map<String, List<String>> getIds() {
-        return ids;
+        return idMap();
+    }
+
+    /**
+     * Gets the id type keys that have ids as strings.
+     *
+     * @return id type keys, an empty set if no ids have been added
+     */
+    public Set<String> getIdTypeKeys() {
+        return null == this.ids ? Collections.<String>emptySet() : this.ids.keySet();
     }
 
     /**
@@ -259,7 +368,8 @@ public class Transaction {
      * @return name corresponding to key
      */
     public String getIdTypeName(String key) {
-        return this.config.getIdTypes().getEntry(key);
+        String name = null == this.idTypeNames ? null : this.idTypeNames.get(key);
+        return null != name ? name : this.config.getIdTypes().getEntry(key);
     }
 
     /**
@@ -269,7 +379,7 @@ public class Transaction {
      * @return all ids
      */
     public List<String> getIdsByType(String typeKey) {
-        return this.ids.get(typeKey);
+        return null == this.ids ? null : this.ids.get(typeKey);
     }
 
     /**
@@ -280,7 +390,7 @@ public class Transaction {
      */
     public List<String> addIdTypeKey(String typeKey) {
         List<String> newIDs = new ArrayList<String>();
-        this.ids.put(typeKey, newIDs);
+        idMap().put(typeKey, newIDs);
         return newIDs;
     }
 
@@ -294,38 +404,358 @@ public class Transaction {
     public List<String> addIdsByTypeKey(String typeKey, List<String> ids) {
         List<String> list = this.getIdsByType(typeKey);
         if(list == null) {
-            list = new ArrayList<String>();
-            this.ids.put(typeKey, list);
+            list = new ArrayList<String>(ids.size());
+            idMap().put(typeKey, list);
         }
         list.addAll(ids);
 
         return list;
     }
 
+    /**
+     * Adds ids for a pre-validated id type handle.
+     *
+     * @param idType id type handle
+     * @param ids ids to add
+     * @return list of ids
+     */
+    public List<String> addIds(KeyHandle idType, List<String> ids) {
+        return addIdsByTypeKey(resolveIdType(idType), ids);
+    }
+
+    /**
+     * Adds numeric ids for type key.
+     * The ids are kept in a primitive array and sent as decimal strings.
+     *
+     * @param typeKey key of id type
+     * @param ids ids to add for typeKey
+     */
+    public void addIdsByTypeKey(String typeKey, long[] ids) {
+        numericIdList(typeKey, ids.length).add(ids);
+    }
+
+    /**
+     * Adds numeric ids for type key.
+     * The ids are kept in a primitive array and sent as decimal strings.
+     *
+     * @param typeKey key of id type
+     * @param ids ids to add for typeKey
+     */
+    public void addIdsByTypeKey(String typeKey, int[] ids) {
+        numericIdList(typeKey, ids.length).add(ids);
+    }
+
+    /**
+     * Adds numeric ids for a pre-validated id type handle.
+     *
+     * @param idType id type handle
+     * @param ids ids to add
+     */
+    public void addIds(KeyHandle idType, long[] ids) {
+        addIdsByTypeKey(resolveIdType(idType), ids);
+    }
+
+    /**
+     * Adds numeric ids for a pre-validated id type handle.
+     *
+     * @param idType id type handle
+     * @param ids ids to add
+     */
+    public void addIds(KeyHandle idType, int[] ids) {
+        addIdsByTypeKey(resolveIdType(idType), ids);
+    }
+
+    /**
+     * Gets numeric ids in this entry based on type key.
+     *
+     * @param typeKey key
+     * @return copy of the ids, null if none have been added
+     */
+    public long[] getNumericIdsByType(String typeKey) {
+        LongIdList list = null == this.numericIds ? null : this.numericIds.get(typeKey);
+        return null == list ? null : list.toArray();
+    }
+
+    /**
+     * Gets the id type keys that have numeric ids.
+     *
+     * @return id type keys, an empty set if no numeric ids have been added
+     */
+    public Set<String> getNumericIdTypeKeys() {
+        return null == this.numericIds ? Collections.<String>emptySet() : this.numericIds.keySet();
+    }
+
+    /**
+     * Gets numeric ids by type key.
+     *
+     * @return ids, null if none have been added
+     */
+    Map<String, LongIdList> getNumericIdLists() {
+        return this.numericIds;
+    }
+
+    /**
+     * Gets ids by type key without allocating the map.
+     *
+     * @return ids, null if none have been added
+     */
+    Map<String, List<String>> getIdLists() {
+        return this.ids;
+    }
+
+    private String resolveIdType(KeyHandle idType) {
+        String typeKey = idType.require(KeyHandle.Type.ID_TYPE).getKey();
+        if(null == this.idTypeNames) {
+            this.idTypeNames = new HashMap<String, String>(2);
+        }
+        this.idTypeNames.put(typeKey, idType.getName());
+        return typeKey;
+    }
+
+    private LongIdList numericIdList(String typeKey, int capacity) {
+        if(null == this.numericIds) {
+            this.numericIds = new HashMap<String, LongIdList>(4);
+        }
+        LongIdList list = this.numericIds.get(typeKey);
+        if(null == list) {
+            list = null == this.spareNumericIds || this.spareNumericIds.isEmpty()
+                    ? new LongIdList(capacity) : this.spareNumericIds.remove(this.spareNumericIds.size() - 1);
+            this.numericIds.put(typeKey, list);
+        }
+        return list;
+    }
+
+    private Map<String, List<String>> idMap() {
+        if(null == this.ids) {
+            this.ids = new HashMap<String, List<String>>(4);
+        }
+        return this.ids;
+    }
+
+    /**
+     * Checks if all keys of this entry were set through handles, so the entry needs no validation.
+     *
+     * @return true if from and to, and operation, payload type and id types when present, came from handles
+     */
+    boolean isResolved() {
+        if(null == this.fromName || null == this.toName) {
+            return false;
+        }
+        if((null != this.operationKey && null == this.operationName)
+                || (null != this.payloadTypeKey && null == this.payloadTypeName)) {
+            return false;
+        }
+        return allResolved(getIdTypeKeys()) && allResolved(getNumericIdTypeKeys());
+    }
+
+    private boolean allResolved(Set<String> idTypeKeys) {
+        for(String typeKey : idTypeKeys) {
+            if(null == this.idTypeNames || !this.idTypeNames.containsKey(typeKey)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Clears this entry for reuse, keeping its collections.
+     * Called by {@link TransactionPool}, the entry must not be in use anywhere.
+     */
+    void recycle() {
+        this.toKey = null;
+        this.fromKey = null;
+        this.operationKey = null;
+        this.payloadTypeKey = null;
+        this.message = null;
+        this.lazyMessage = null;
+        this.status = null;
+        this.flowId = null;
+        this.toName = null;
+        this.fromName = null;
+        this.operationName = null;
+        this.payloadTypeName = null;
+        if(null != this.idTypeNames) {
+            this.idTypeNames.clear();
+        }
+        // String id lists may have been handed out by addIdTypeKey, so only their map is kept.
+        if(null != this.ids) {
+            this.ids.clear();
+        }
+        if(null != this.numericIds && !this.numericIds.isEmpty()) {
+            if(null == this.spareNumericIds) {
+                this.spareNumericIds = new ArrayList<LongIdList>(this.numericIds.size());
+            }
+            for(LongIdList list : this.numericIds.values()) {
+                list.clear();
+                this.spareNumericIds.add(list);
+            }
+            this.numericIds.clear();
+        }
+        if(null != this.metadata) {
+            Arrays.fill(this.metadata, 0, this.metadataCount, null);
+            this.metadataCount = 0;
+        }
+        if(null != this.metadataIndex) {
+            this.metadataIndex.clear();
+        }
+    }
+
+    /**
+     * Restarts a recycled entry. Sets the timestamp to the current time.
+     */
+    void reuse() {
+        this.timestamp = System.currentTimeMillis();
+    }
+
     /**
      * Adds metadata to this entry.
+     * A previous value with the same key is replaced.
      *
      * @param key key of metadata
      * @param value value of metadata
      */
     public void addMetadata(String key, String value) {
-        NameValuePair toRemove = null;
-        for(NameValuePair nvp : this.metadata) {
-            if(StringUtils.equals(nvp.getName(), key)) {
-                toRemove = nvp;
-            }
+        addMetadata(new NameValuePair(key, value));
+    }
+
+    /**
+     * Adds metadata whose value is computed only when the transaction is encoded for sending.
+     * The value is cut to {@link AgentConfig#getLazyValueMaxLength()}. The supplier may run on a sender thread.
+     * A previous value with the same key is replaced.
+     *
+     * @param key key of metadata
+     * @param value computes the value of metadata
+     */
+    public void addLazyMetadata(String key, Callable<String> value) {
+        addMetadata(new LazyNameValuePair(key, new LazyValue(value, config.getLazyValueMaxLength())));
+    }
+
+    private void addMetadata(NameValuePair pair) {
+        String key = pair.getName();
+        int index = indexOfMetadata(key);
+        if(index >= 0) {
+            this.metadata[index] = pair;
+            return;
+        }
+
+        if(null == this.metadata) {
+            this.metadata = new NameValuePair[INITIAL_METADATA_CAPACITY];
+        } else if(this.metadataCount == this.metadata.length) {
+            this.metadata = Arrays.copyOf(this.metadata, this.metadataCount * 2);
+        }
+        if(null != this.metadataIndex) {
+            this.metadataIndex.put(key, this.metadataCount);
+        } else if(this.metadataCount == METADATA_SCAN_LIMIT) {
+            indexMetadata();
+            this.metadataIndex.put(key, this.metadataCount);
         }
-        if(toRemove != null) this.metadata.remove(toRemove);
-        
-        this.metadata.add(new NameValuePair(key, value));
+        this.metadata[this.metadataCount++] = pair;
     }
 
     /**
      * Gets all metadata from this entry.
+     * The list is live: changes to it are sent with the entry.
      *
-     * @return all metadata
+     * @return all metadata in the order they were added
      */
     public List<NameValuePair> getMetadata() {
-        return this.metadata;
+        if(null == this.metadataView) {
+            this.metadataView = new MetadataView();
+        }
+        return this.metadataView;
+    }
+
+    /**
+     * Adds all metadata of this entry to a list, in the order they were added.
+     *
+     * @param target list to add to
+     */
+    void copyMetadataTo(List<NameValuePair> target) {
+        for(int i = 0; i < this.metadataCount; i++) {
+            target.add(this.metadata[i]);
+        }
+    }
+
+    // Small sets of metadata are scanned, larger ones get an index to keep replacing by key constant time.
+    private int indexOfMetadata(String key) {
+        if(null == this.metadataIndex && this.metadataCount > METADATA_SCAN_LIMIT) {
+            // Dropped after a change through the metadata list.
+            indexMetadata();
+        }
+        if(null != this.metadataIndex) {
+            Integer index = this.metadataIndex.get(key);
+            return null == index ? -1 : index;
+        }
+        for(int i = 0; i < this.metadataCount; i++) {
+            if(StringUtils.equals(this.metadata[i].getName(), key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void indexMetadata() {
+        this.metadataIndex = new HashMap<String, Integer>(this.metadataCount * 4);
+        for(int i = 0; i < this.metadataCount; i++) {
+            this.metadataIndex.put(this.metadata[i].getName(), i);
+        }
+    }
+
+    /**
+     * Live view of the metadata array. Changes through it drop the key index, which is rebuilt when needed.
+     */
+    private final class MetadataView extends AbstractList<NameValuePair> {
+
+        @Override
+        public NameValuePair get(int index) {
+            checkIndex(index, metadataCount);
+            return metadata[index];
+        }
+
+        @Override
+        public int size() {
+            return metadataCount;
+        }
+
+        @Override
+        public NameValuePair set(int index, NameValuePair pair) {
+            checkIndex(index, metadataCount);
+            NameValuePair previous = metadata[index];
+            metadata[index] = pair;
+            metadataIndex = null;
+            return previous;
+        }
+
+        @Override
+        public void add(int index, NameValuePair pair) {
+            checkIndex(index, metadataCount + 1);
+            if(null == metadata) {
+                metadata = new NameValuePair[INITIAL_METADATA_CAPACITY];
+            } else if(metadataCount == metadata.length) {
+                metadata = Arrays.copyOf(metadata, metadataCount * 2);
+            }
+            System.arraycopy(metadata, index, metadata, index + 1, metadataCount - index);
+            metadata[index] = pair;
+            metadataCount++;
+            metadataIndex = null;
+            modCount++;
+        }
+
+        @Override
+        public NameValuePair remove(int index) {
+            checkIndex(index, metadataCount);
+            NameValuePair removed = metadata[index];
+            System.arraycopy(metadata, index + 1, metadata, index, metadataCount - index - 1);
+            metadata[--metadataCount] = null;
+            metadataIndex = null;
+            modCount++;
+            return removed;
+        }
+
+        private void checkIndex(int index, int size) {
+            if(index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + metadataCount);
+            }
+        }
     }
 }
@@ -22,17 +22,21 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Buffer for holding {@link TransactionSerializable} objects to be sent.
+ * Entries are sent in the order they were added.
  */
-public class TransactionDataBuffer {
-    private final ObjectMapper mapper = new ObjectMapper();
-    private final List<TransactionDataObserver> observers = new ArrayList<TransactionDataObserver>();
+public class TransactionDataBuffer implements TransactionSource {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private final TransactionDataObservers observers = new TransactionDataObservers();
     private final LinkedBlockingDeque<TransactionSerializable> transactions = new LinkedBlockingDeque<TransactionSerializable>();
-    private final Lock lock = new ReentrantLock();
+    private final Lock drainLock = new ReentrantLock();
+    private final AtomicLong addedCount = new AtomicLong();
+    private final AtomicLong sizeInBytes = new AtomicLong();
 
     private final int sizeThreshold;
 
@@ -40,38 +44,50 @@ public class TransactionDataBuffer {
         this.sizeThreshold = sizeThreshold;
     }
 
-    /**
-     * Adds observer for listening to size changes in buffer.
-     * @param observer observer
-     */
+    @Override
     public void addLogDataSizeObserver(TransactionDataObserver observer) {
         observers.add(observer);
     }
 
+    @Override
+    public void removeLogDataSizeObserver(TransactionDataObserver observer) {
+        observers.remove(observer);
+    }
+
     /**
      * Adds serializable version log entry to the buffer.
      * @param entry serializable log entry
      */
     public void addTransaction(TransactionSerializable entry) {
 
-        this.transactions.addFirst(entry);
-
-        if(lock.tryLock()) {
-            int currentSize = this.getSize();
-            try {
-                int observerCount = observers.size();
-
-                for(int i = 0; i < observerCount; i++) {
-                    TransactionDataObserver observer = observers.get(i);
-                    if(observer != null) {
-                        observer.logDataAdded(currentSize);
-                    }
-                }
+        entry.queuedAt = System.currentTimeMillis();
+        sizeInBytes.addAndGet(entry.getSize());
+        this.transactions.addLast(entry);
+        addedCount.incrementAndGet();
+        observers.notify(this, 1);
+    }
 
-            } finally {
-                lock.unlock();
-            }
+    /**
+     * Adds serializable log entries to the buffer in one go, keeping their order.
+     * The observers are notified once.
+     *
+     * @param entries serializable log entries
+     */
+    public void addTransactions(List<TransactionSerializable> entries) {
+        if(entries.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long bytes = 0;
+        for(TransactionSerializable entry : entries) {
+            entry.queuedAt = now;
+            bytes += entry.getSize();
         }
+        sizeInBytes.addAndGet(bytes);
+        // Links all entries under a single acquisition of the deque lock.
+        this.transactions.addAll(entries);
+        addedCount.addAndGet(entries.size());
+        observers.notify(this, entries.size());
     }
 
     /**
@@ -81,9 +97,54 @@ public class TransactionDataBuffer {
      * @throws IOException when json serialization fails
      */
     public String getDataToSend() throws IOException {
-        final List<TransactionSerializable> entries = new ArrayList<TransactionSerializable>();
-        this.transactions.drainTo(entries, elementsToDrain());
+        return serialize(drainEntries());
+    }
 
+    /**
+     * Removes the next batch of entries from this buffer.
+     *
+     * @return entries to send, empty if there is nothing to send
+     */
+    public List<TransactionSerializable> drainEntries() {
+        return drainEntries(elementsToDrain(), Long.MAX_VALUE);
+    }
+
+    @Override
+    public List<TransactionSerializable> drainEntries(int maxCount, long maxBytes) {
+        List<TransactionSerializable> entries = new ArrayList<TransactionSerializable>();
+        long bytes = 0;
+        drainLock.lock();
+        try {
+            TransactionSerializable next;
+            while(entries.size() < maxCount && null != (next = this.transactions.peekFirst())) {
+                if(!entries.isEmpty() && bytes + next.getSize() > maxBytes) {
+                    break;
+                }
+                // Entries are only added to the tail, so the head cannot change under the drain lock.
+                this.transactions.pollFirst();
+                bytes += next.getSize();
+                entries.add(next);
+            }
+        } finally {
+            drainLock.unlock();
+        }
+        sizeInBytes.addAndGet(-bytes);
+        return entries;
+    }
+
+    @Override
+    public String serialize(List<TransactionSerializable> entries) throws IOException {
+        return toJson(entries);
+    }
+
+    /**
+     * Serializes entries to the JSON format accepted by aino.io API.
+     *
+     * @param entries entries to serialize
+     * @return entries as JSON string
+     * @throws IOException when json serialization fails
+     */
+    static String toJson(final List<TransactionSerializable> entries) throws IOException {
         return mapper.writeValueAsString(new Object() {
             private final List<TransactionSerializable> transactions = entries;
             public List<TransactionSerializable> getTransactions() { return transactions; } // Needed for mapper?
@@ -99,24 +160,35 @@ public class TransactionDataBuffer {
         return this.transactions.isEmpty();
     }
 
-    /**
-     * Checks if this buffer contains entries.
-     *
-     * @return true if contains data
-     */
+    @Override
     public boolean containsData() {
         return !isEmpty();
     }
 
-    /**
-     * Gets the number of entries in this buffer.
-     *
-     * @return entry count
-     */
+    @Override
     public int getSize() {
         return this.transactions.size();
     }
 
+    @Override
+    public long getSizeInBytes() {
+        return sizeInBytes.get();
+    }
+
+    @Override
+    public long getOldestEntryAge() {
+        TransactionSerializable oldest = this.transactions.peekFirst();
+        if(null == oldest) {
+            return -1;
+        }
+        return Math.max(0, System.currentTimeMillis() - oldest.queuedAt);
+    }
+
+    @Override
+    public long getAddedCount() {
+        return addedCount.get();
+    }
+
     private int elementsToDrain() {
         // ensure transactions get sent one at a time when size threshold is zero or one
         return sizeThreshold <= 1 ? 1 : Integer.MAX_VALUE;
@@ -0,0 +1,62 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Observers of a {@link TransactionSource}.
+ */
+final class TransactionDataObservers {
+    private final List<TransactionDataObserver> observers = new CopyOnWriteArrayList<TransactionDataObserver>();
+    private final Lock lock = new ReentrantLock();
+
+    void add(TransactionDataObserver observer) {
+        observers.add(observer);
+    }
+
+    void remove(TransactionDataObserver observer) {
+        observers.remove(observer);
+    }
+
+    /**
+     * Tells the observers that entries have been added.
+     * Skipped if another thread is already notifying, as that thread wakes the same observers.
+     *
+     * @param source source the entries were added to
+     * @param added number of entries added
+     */
+    void notify(TransactionSource source, int added) {
+        if(lock.tryLock()) {
+            try {
+                int currentSize = source.getSize();
+                for(TransactionDataObserver observer : observers) {
+                    if(observer instanceof BulkDataObserver) {
+                        ((BulkDataObserver) observer).logDataAdded(currentSize, added);
+                    } else if(observer != null) {
+                        observer.logDataAdded(currentSize);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import io.aino.agents.core.config.AgentConfig;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Bounded per-thread pools of {@link Transaction}s and {@link TransactionSerializable}s.
+ *
+ * A transaction is reclaimed on the thread that adds it, which is normally the thread that created it.
+ * A serialized entry is settled on a sender thread, so it is handed back to the pool of the thread that
+ * created it through a bounded queue. Objects that do not fit in a pool are left to the garbage collector.
+ */
+class TransactionPool {
+    private final AgentConfig config;
+    private final int size;
+    private final ThreadLocal<Local> locals = new ThreadLocal<Local>() {
+        @Override
+        protected Local initialValue() {
+            return new Local(size);
+        }
+    };
+
+    /**
+     * Pools of one thread.
+     */
+    private static final class Local implements EntryRecycler {
+        private final ArrayDeque<Transaction> transactions = new ArrayDeque<Transaction>();
+        private final ArrayBlockingQueue<TransactionSerializable> entries;
+
+        private Local(int size) {
+            this.entries = new ArrayBlockingQueue<TransactionSerializable>(size);
+        }
+
+        @Override
+        public void release(TransactionSerializable entry) {
+            if(entries.remainingCapacity() > 0) {
+                entry.recycle();
+                entries.offer(entry);
+            }
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param config agent configuration
+     */
+    TransactionPool(AgentConfig config) {
+        this.config = config;
+        this.size = config.getRecyclingPoolSize();
+    }
+
+    /**
+     * Gets an empty transaction.
+     *
+     * @return recycled or new transaction
+     */
+    Transaction transaction() {
+        Transaction transaction = locals.get().transactions.pollLast();
+        if(null == transaction) {
+            transaction = new Transaction(config);
+            transaction.recyclable = true;
+        } else {
+            transaction.reuse();
+        }
+        return transaction;
+    }
+
+    /**
+     * Reclaims a transaction that has been added. Transactions not created by this pool are ignored.
+     *
+     * @param transaction transaction no longer used
+     */
+    void release(Transaction transaction) {
+        if(!transaction.recyclable) {
+            return;
+        }
+        ArrayDeque<Transaction> transactions = locals.get().transactions;
+        if(transactions.size() < size) {
+            transaction.recycle();
+            transactions.addLast(transaction);
+        }
+    }
+
+    /**
+     * Gets an empty entry. It returns to this pool through {@link TransactionSerializable#owner} once settled.
+     *
+     * @return recycled or new entry
+     */
+    TransactionSerializable entry() {
+        Local local = locals.get();
+        TransactionSerializable entry = local.entries.poll();
+        if(null == entry) {
+            entry = new TransactionSerializable();
+            entry.owner = local;
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import io.aino.agents.core.config.AgentConfig;
+import io.aino.agents.core.validators.TransactionValidator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ring of preallocated transaction slots, for logging without allocating anything per transaction.
+ * Get it from {@link Agent#getRing()}.
+ *
+ * Claim a sequence, fill the transaction of that slot in place and publish it:
+ * <pre>
+ * long sequence = ring.claim();
+ * try {
+ *     Transaction transaction = ring.get(sequence);
+ *     transaction.setStatus("success");
+ * } finally {
+ *     ring.publish(sequence);
+ * }
+ * </pre>
+ * Every claimed sequence must be published, even if filling the slot fails, as the ring is sent in order.
+ * The transaction must not be used after it has been published.
+ * A slot is claimed again once its transaction has been delivered, spilled or dropped.
+ *
+ * The ring has a sender of its own that takes batches straight from the slots.
+ * The ring of a disabled or stopped agent is closed, and claiming a slot from it fails.
+ */
+public final class TransactionRing implements TransactionSource {
+    private static final long CLAIM_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Slot[] slots;
+    private final int mask;
+    private final TransactionValidator validator;
+    private final TransactionDataObservers observers = new TransactionDataObservers();
+    private final AtomicLong claimSequence = new AtomicLong();
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong drainedCount = new AtomicLong();
+    private final AtomicLong sizeInBytes = new AtomicLong();
+    private final Lock drainLock = new ReentrantLock();
+    // Next sequence to drain.
+    private volatile long head = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * One slot of the ring.
+     * Its state is s while it is free for sequence s, and s + 1 once sequence s has been published.
+     * When the entry is settled, the state moves on to s + ring size, freeing the slot for the next round.
+     */
+    private final class Slot implements EntryRecycler {
+        private volatile long state;
+        private long sequence;
+        private boolean skipped;
+        private final Transaction transaction;
+        private final TransactionSerializable entry = new TransactionSerializable();
+
+        private Slot(AgentConfig config, int index) {
+            this.state = index;
+            this.transaction = new Transaction(config);
+            this.entry.owner = this;
+        }
+
+        @Override
+        public void release(TransactionSerializable released) {
+            entry.recycle();
+            state = sequence + slots.length;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param config agent configuration, the number of slots comes from {@link AgentConfig#getRingSize()}
+     * @param validator validator for transactions not built from key handles
+     */
+    TransactionRing(AgentConfig config, TransactionValidator validator) {
+        this.validator = validator;
+        this.slots = new Slot[config.getRingSize()];
+        this.mask = slots.length - 1;
+        for(int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(config, i);
+        }
+    }
+
+    /**
+     * Claims the next slot, waiting for one to become free if the ring is full.
+     *
+     * @return sequence of the claimed slot
+     * @throws AgentCoreException if the ring is closed, or if interrupted while waiting
+     */
+    public long claim() {
+        long sequence;
+        while(-1 == (sequence = tryClaim())) {
+            LockSupport.parkNanos(CLAIM_WAIT_NANOS);
+            if(Thread.currentThread().isInterrupted()) {
+                throw new AgentCoreException("Interrupted while waiting for a free slot in the transaction ring.");
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Claims the next slot if one is free.
+     *
+     * @return sequence of the claimed slot, or -1 if the ring is full
+     * @throws AgentCoreException if the ring is closed
+     */
+    public long tryClaim() {
+        while(true) {
+            if(closed) {
+                throw new AgentCoreException("The transaction ring is closed.");
+            }
+            long sequence = claimSequence.get();
+            Slot slot = slot(sequence);
+            long state = slot.state;
+            if(state == sequence) {
+                if(claimSequence.compareAndSet(sequence, sequence + 1)) {
+                    slot.sequence = sequence;
+                    slot.transaction.reuse();
+                    return sequence;
+                }
+            } else if(state < sequence) {
+                // Still in use by the previous round.
+                return -1;
+            }
+            // Another thread claimed the slot first.
+        }
+    }
+
+    /**
+     * Gets the transaction of a claimed slot, to be filled in place.
+     *
+     * @param sequence sequence from {@link #claim()} or {@link #tryClaim()}
+     * @return transaction of the slot
+     */
+    public Transaction get(long sequence) {
+        return slot(sequence).transaction;
+    }
+
+    /**
+     * Publishes a claimed slot for sending.
+     * If the transaction is not valid, the slot is skipped and the exception is thrown.
+     *
+     * @param sequence sequence from {@link #claim()} or {@link #tryClaim()}
+     * @throws AgentCoreException if the transaction is not valid
+     */
+    public void publish(long sequence) {
+        Slot slot = slot(sequence);
+        Transaction transaction = slot.transaction;
+        if(closed) {
+            // Skipped like a failed slot, so later slots published before close are not stuck behind it.
+            slot.skipped = true;
+            transaction.recycle();
+            slot.state = sequence + 1;
+            // The sender may have stopped already, so the slot is not left for it to free.
+            releaseSkipped();
+            observers.notify(this, 0);
+            return;
+        }
+
+        try {
+            if(!transaction.isResolved()) {
+                validator.validate(transaction);
+            }
+            TransactionSerializable.from(transaction, slot.entry);
+        } catch (RuntimeException e) {
+            // The sender frees the slot when it gets to it.
+            slot.skipped = true;
+            transaction.recycle();
+            slot.state = sequence + 1;
+            if(closed) {
+                releaseSkipped();
+            }
+            throw e;
+        }
+        transaction.recycle();
+        slot.skipped = false;
+        slot.entry.queuedAt = System.currentTimeMillis();
+        sizeInBytes.addAndGet(slot.entry.getSize());
+        publishedCount.incrementAndGet();
+        slot.state = sequence + 1;
+        observers.notify(this, 1);
+    }
+
+    /**
+     * Gets the number of slots.
+     *
+     * @return slot count
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    @Override
+    public void addLogDataSizeObserver(TransactionDataObserver observer) {
+        observers.add(observer);
+    }
+
+    @Override
+    public void removeLogDataSizeObserver(TransactionDataObserver observer) {
+        observers.remove(observer);
+    }
+
+    @Override
+    public List<TransactionSerializable> drainEntries(int maxCount, long maxBytes) {
+        List<TransactionSerializable> entries = new ArrayList<TransactionSerializable>();
+        long bytes = 0;
+        drainLock.lock();
+        try {
+            long next = head;
+            Slot slot;
+            while(entries.size() < maxCount && (slot = slot(next)).state == next + 1) {
+                if(slot.skipped) {
+                    slot.release(slot.entry);
+                    next++;
+                    continue;
+                }
+                if(!entries.isEmpty() && bytes + slot.entry.getSize() > maxBytes) {
+                    break;
+                }
+                bytes += slot.entry.getSize();
+                entries.add(slot.entry);
+                next++;
+            }
+            head = next;
+        } finally {
+            drainLock.unlock();
+        }
+        drainedCount.addAndGet(entries.size());
+        sizeInBytes.addAndGet(-bytes);
+        return entries;
+    }
+
+    @Override
+    public String serialize(List<TransactionSerializable> entries) throws IOException {
+        return TransactionDataBuffer.toJson(entries);
+    }
+
+    @Override
+    public boolean containsData() {
+        return getSize() > 0;
+    }
+
+    @Override
+    public int getSize() {
+        return (int) (publishedCount.get() - drainedCount.get());
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return sizeInBytes.get();
+    }
+
+    @Override
+    public long getOldestEntryAge() {
+        long next = head;
+        Slot slot = slot(next);
+        if(slot.state != next + 1) {
+            return -1;
+        }
+        return slot.skipped ? 0 : Math.max(0, System.currentTimeMillis() - slot.entry.queuedAt);
+    }
+
+    @Override
+    public long getAddedCount() {
+        return publishedCount.get();
+    }
+
+    /**
+     * Stops taking transactions. Claiming fails from now on, and slots claimed before but published after this
+     * are freed without sending.
+     */
+    void close() {
+        closed = true;
+        releaseSkipped();
+    }
+
+    /**
+     * Frees the skipped slots at the head of the ring, as the sender would when draining.
+     */
+    private void releaseSkipped() {
+        drainLock.lock();
+        try {
+            long next = head;
+            Slot slot;
+            while((slot = slot(next)).state == next + 1 && slot.skipped) {
+                slot.release(slot.entry);
+                next++;
+            }
+            head = next;
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private Slot slot(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+}
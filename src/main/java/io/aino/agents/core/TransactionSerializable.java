@@ -16,13 +16,18 @@
 
 package io.aino.agents.core;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.map.JsonSerializer;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
 
 /**
  * This class exists for convenient JSON serialization (by Jackson) of log
@@ -31,6 +36,12 @@ import org.codehaus.jackson.annotate.JsonIgnore;
  */
 public class TransactionSerializable {
 
+    // values() copies the array on every call.
+    private static final Transaction.Field[] FIELDS = Transaction.Field.values();
+    private static final String TIMESTAMP_FIELD = Transaction.Field.TIMESTAMP.getFieldName();
+    // "timestamp": and a 13 digit value.
+    private static final int TIMESTAMP_SIZE = TIMESTAMP_FIELD.length() + 4 + 13;
+
     /**
      * Creates TransactionSerializable from Transaction.
      *
@@ -38,28 +49,63 @@ public class TransactionSerializable {
      * @return created TransactionSerializable
      */
     public static TransactionSerializable from(Transaction entry) {
-        TransactionSerializable obj = new TransactionSerializable();
+        return from(entry, new TransactionSerializable());
+    }
+
+    /**
+     * Fills a new or recycled TransactionSerializable from Transaction.
+     *
+     * @param entry log entry to create from
+     * @param obj empty instance to fill
+     * @return obj
+     */
+    static TransactionSerializable from(Transaction entry, TransactionSerializable obj) {
+        for(Transaction.Field field : FIELDS) {
+            if(Transaction.Field.TIMESTAMP == field) {
+                obj.timestamp = entry.getTimestampMillis();
+                continue;
+            }
+            // A lazy message is kept as is and computed when the entry is serialized.
+            obj.addField(field.getFieldName(),
+                    Transaction.Field.MESSAGE == field ? entry.getMessageValue() : entry.getFieldValue(field));
+        }
 
-        for(Transaction.Field field : Transaction.Field.values()) {
-            obj.addField(field.getFieldName(), entry.getFieldValue(field));
+        Map<String, List<String>> ids = entry.getIdLists();
+        if(null != ids) {
+            for(Map.Entry<String, List<String>> idList : ids.entrySet()) {
+                IdList list = obj.addIdType(entry.getIdTypeName(idList.getKey()));
+                list.addIds(idList.getValue());
+            }
         }
 
-        for(Map.Entry<String, List<String>> idList : entry.getIds().entrySet()) {
-            IdList list = obj.addIdType(entry.getIdTypeName(idList.getKey()));
-            list.addIds(idList.getValue());
+        Map<String, LongIdList> numericIds = entry.getNumericIdLists();
+        if(null != numericIds) {
+            for(Map.Entry<String, LongIdList> idList : numericIds.entrySet()) {
+                String idType = entry.getIdTypeName(idList.getKey());
+                IdList list = obj.idLists.get(idType);
+                if(null == list) {
+                    list = obj.addIdType(idType);
+                }
+                list.addIds(idList.getValue());
+            }
         }
 
-        obj.setMetadata(entry.getMetadata());
+        entry.copyMetadataTo(obj.metadataList);
+        obj.setMetadata(obj.metadataList);
+        obj.setSize(obj.estimateSize());
 
         return obj;
     }
 
     /**
-     *
+     * Ids of one id type.
+     * Numeric ids are kept in a primitive array and written as decimal strings without creating a string per id.
      */
+    @JsonSerialize(using = IdListSerializer.class)
     public class IdList {
         private String idType;
-        private final List<String> values = new LinkedList<String>();
+        private List<String> values;
+        private LongIdList numericValues;
 
         private IdList() {
         }
@@ -73,31 +119,148 @@ public class TransactionSerializable {
         }
 
         public void addId(String id) {
-            values.add(id);
+            stringValues(1).add(id);
         }
 
         public void addIds(List<String> ids) {
-            values.addAll(ids);
+            stringValues(ids.size()).addAll(ids);
+        }
+
+        void addIds(LongIdList ids) {
+            if(null == numericValues) {
+                numericValues = new LongIdList(ids.size());
+            }
+            numericValues.add(ids);
         }
 
+        // Empties the id lists for reuse, keeping their capacity.
+        private void clear() {
+            idType = null;
+            if(null != values) {
+                values.clear();
+            }
+            if(null != numericValues) {
+                numericValues.clear();
+            }
+        }
+
+        /**
+         * Gets all ids as strings, numeric ids after the others.
+         *
+         * @return ids
+         */
         public List<String> getValues() {
+            if(null == numericValues) {
+                return null == values ? Collections.<String>emptyList() : values;
+            }
+            List<String> all = new ArrayList<String>(idCount());
+            if(null != values) {
+                all.addAll(values);
+            }
+            for(int i = 0; i < numericValues.size(); i++) {
+                all.add(String.valueOf(numericValues.get(i)));
+            }
+            return all;
+        }
+
+        private int idCount() {
+            return (null == values ? 0 : values.size()) + (null == numericValues ? 0 : numericValues.size());
+        }
+
+        private List<String> stringValues(int capacity) {
+            if(null == values) {
+                values = new ArrayList<String>(capacity);
+            }
             return values;
         }
     }
 
+    /**
+     * Writes an {@link IdList} as {@code {"idType":..., "values":[...]}}.
+     */
+    static class IdListSerializer extends JsonSerializer<IdList> {
+        @Override
+        public void serialize(IdList idList, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("idType", idList.idType);
+            generator.writeArrayFieldStart("values");
+            if(null != idList.values) {
+                for(String id : idList.values) {
+                    generator.writeString(id);
+                }
+            }
+            if(null != idList.numericValues) {
+                char[] digits = new char[LongIdList.MAX_DIGITS];
+                for(int i = 0; i < idList.numericValues.size(); i++) {
+                    int start = LongIdList.format(idList.numericValues.get(i), digits);
+                    generator.writeString(digits, start, digits.length - start);
+                }
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
     private int size;
 
+    // Kept out of the field map so that it is not boxed.
+    private long timestamp;
+
+    // Set by TransactionDataBuffer when the entry is added. Not serialized.
+    long queuedAt;
+
+    // Set by Agent#addTransactionAsync. Not serialized.
+    DeliveryFuture delivery;
+
+    // Takes this entry back once settled, null if it is not recycled.
+    EntryRecycler owner;
+
     private final Map<String, Object> fields = new LinkedHashMap<String, Object>();
 
     private final Map<String, IdList> idLists = new LinkedHashMap<String, IdList>();
 
+    private final List<IdList> ids = new ArrayList<IdList>(2);
+
+    private final List<NameValuePair> metadataList = new ArrayList<NameValuePair>(2);
+
+    // Id lists of a recycled entry, reused by addIdType.
+    private List<IdList> spareIdLists;
+
     /**
      * Constructor.
      * Sets timestamp.
      */
     public TransactionSerializable() {
-        fields.put("timestamp", new Long(System.currentTimeMillis()));
-        fields.put("ids", new ArrayList<IdList>(2));
+        timestamp = System.currentTimeMillis();
+        fields.put("ids", ids);
+    }
+
+    /**
+     * Clears this entry for reuse, keeping its collections.
+     * Called by its {@link EntryRecycler} once the entry has been settled.
+     */
+    void recycle() {
+        // Keeping the keys lets the next transaction replace the values without new map entries.
+        for(Map.Entry<String, Object> field : fields.entrySet()) {
+            if(field.getValue() != ids) {
+                field.setValue(null);
+            }
+        }
+        if(!ids.isEmpty()) {
+            if(null == spareIdLists) {
+                spareIdLists = new ArrayList<IdList>(ids.size());
+            }
+            for(IdList idList : ids) {
+                idList.clear();
+                spareIdLists.add(idList);
+            }
+            ids.clear();
+        }
+        idLists.clear();
+        metadataList.clear();
+        size = 0;
+        queuedAt = 0;
+        delivery = null;
     }
 
     /**
@@ -107,18 +270,15 @@ public class TransactionSerializable {
      * @return list for id type
      */
     public IdList addIdType(String idType) {
-        IdList idList = new IdList();
-        idList.setIdType(idType);
-
         if (idLists.containsKey(idType)) {
             throw new RuntimeException("Duplicate IdList in a TransactionSerializable.");
         }
 
+        IdList idList = null == spareIdLists || spareIdLists.isEmpty()
+                ? new IdList() : spareIdLists.remove(spareIdLists.size() - 1);
+        idList.setIdType(idType);
         idLists.put(idType, idList);
-
-        @SuppressWarnings("unchecked")
-        List<IdList> idsField = (List<IdList>) fields.get("ids");
-        idsField.add(idList);
+        ids.add(idList);
 
         return idList;
     }
@@ -141,7 +301,8 @@ public class TransactionSerializable {
     }
 
     private String getFieldAsString(String key) {
-        String value = (String) fields.get(key);
+        Object field = fields.get(key);
+        String value = field instanceof LazyValue ? ((LazyValue) field).get() : (String) field;
         if (value == null) {
             value = "";
         }
@@ -155,6 +316,10 @@ public class TransactionSerializable {
      * @param value value of the field
      */
     public void addField(String name, Object value) {
+        if(TIMESTAMP_FIELD.equals(name) && value instanceof Number) {
+            timestamp = ((Number) value).longValue();
+            return;
+        }
         fields.put(name, value);
     }
 
@@ -215,7 +380,7 @@ public class TransactionSerializable {
      * @return field value
      */
     public Long getTimestamp() {
-        return (Long) getField("timestamp");
+        return Long.valueOf(timestamp);
     }
 
     /**
@@ -261,11 +426,72 @@ public class TransactionSerializable {
         return (List<NameValuePair>) getField("metadata");
     }
 
+    /**
+     * Estimates the size of this entry as JSON without serializing it.
+     *
+     * @return approximate size in bytes
+     */
+    int estimateSize() {
+        int estimate = 2 + TIMESTAMP_SIZE;
+        for(Map.Entry<String, Object> field : fields.entrySet()) {
+            estimate += field.getKey().length() + 4 + estimateValueSize(field.getValue());
+        }
+        return estimate;
+    }
+
+    private static int estimateValueSize(Object value) {
+        if(value instanceof String) {
+            return ((String) value).length() + 2;
+        }
+        if(value instanceof IdList) {
+            IdList idList = (IdList) value;
+            int estimate = 24 + estimateValueSize(idList.getIdType());
+            if(null != idList.values) {
+                for(String id : idList.values) {
+                    estimate += id.length() + 3;
+                }
+            }
+            if(null != idList.numericValues) {
+                estimate += idList.numericValues.textLength() + 3 * idList.numericValues.size();
+            }
+            return estimate;
+        }
+        if(value instanceof LazyValue) {
+            return ((LazyValue) value).estimateLength() + 2;
+        }
+        if(value instanceof LazyNameValuePair) {
+            LazyNameValuePair pair = (LazyNameValuePair) value;
+            return 20 + estimateValueSize(pair.getName()) + estimateValueSize(pair.lazyValue);
+        }
+        if(value instanceof NameValuePair) {
+            NameValuePair pair = (NameValuePair) value;
+            return 20 + estimateValueSize(pair.getName()) + estimateValueSize(pair.getValue());
+        }
+        if(value instanceof List) {
+            int estimate = 2;
+            for(Object item : (List<?>) value) {
+                estimate += estimateValueSize(item) + 1;
+            }
+            return estimate;
+        }
+        return null == value ? 4 : 20;
+    }
+
+    /**
+     * Gets the approximate size of this entry as JSON.
+     *
+     * @return size in bytes
+     */
     @JsonIgnore
     public int getSize() {
         return size;
     }
 
+    /**
+     * Sets the approximate size of this entry as JSON.
+     *
+     * @param size size in bytes
+     */
     public void setSize(int size) {
         this.size = size;
     }
@@ -0,0 +1,93 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Entries waiting to be sent, as seen by a {@link Sender}.
+ * Implemented by {@link TransactionDataBuffer} and {@link TransactionRing}.
+ */
+public interface TransactionSource {
+
+    /**
+     * Adds observer for listening to size changes.
+     * @param observer observer
+     */
+    void addLogDataSizeObserver(TransactionDataObserver observer);
+
+    /**
+     * Removes an observer added with {@link #addLogDataSizeObserver(TransactionDataObserver)}.
+     * @param observer observer
+     */
+    void removeLogDataSizeObserver(TransactionDataObserver observer);
+
+    /**
+     * Removes the oldest entries, up to the given limits.
+     * At least one entry is returned if there are any, even if it alone exceeds the size limit.
+     *
+     * @param maxCount maximum number of entries
+     * @param maxBytes maximum total size of the entries, as estimated by {@link TransactionSerializable#getSize()}
+     * @return entries to send, empty if there is nothing to send
+     */
+    List<TransactionSerializable> drainEntries(int maxCount, long maxBytes);
+
+    /**
+     * Serializes entries to the JSON format accepted by aino.io API.
+     *
+     * @param entries entries to serialize
+     * @return entries as JSON string
+     * @throws IOException when json serialization fails
+     */
+    String serialize(List<TransactionSerializable> entries) throws IOException;
+
+    /**
+     * Checks if there are entries waiting.
+     *
+     * @return true if contains data
+     */
+    boolean containsData();
+
+    /**
+     * Gets the number of entries waiting.
+     *
+     * @return entry count
+     */
+    int getSize();
+
+    /**
+     * Gets the approximate size of the entries waiting.
+     *
+     * @return size in bytes, as estimated by {@link TransactionSerializable#getSize()}
+     */
+    long getSizeInBytes();
+
+    /**
+     * Gets how long the oldest entry has been waiting.
+     *
+     * @return age in milliseconds, or -1 if there are no entries
+     */
+    long getOldestEntryAge();
+
+    /**
+     * Gets the total number of entries added.
+     *
+     * @return entry count
+     */
+    long getAddedCount();
+}
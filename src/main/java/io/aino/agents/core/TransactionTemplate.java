@@ -0,0 +1,56 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+/**
+ * Reusable starting point for transactions with fixed applications, operation and payload type.
+ * Get one from {@link Agent#newTemplate(KeyHandle, KeyHandle, KeyHandle)}.
+ * Transactions created from a template need no key lookups nor validation of those keys.
+ */
+public final class TransactionTemplate {
+    private final Agent agent;
+    private final KeyHandle from;
+    private final KeyHandle to;
+    private final KeyHandle operation;
+    private final KeyHandle payloadType;
+
+    TransactionTemplate(Agent agent, KeyHandle from, KeyHandle to, KeyHandle operation, KeyHandle payloadType) {
+        this.agent = agent;
+        this.from = from.require(KeyHandle.Type.APPLICATION);
+        this.to = to.require(KeyHandle.Type.APPLICATION);
+        this.operation = null == operation ? null : operation.require(KeyHandle.Type.OPERATION);
+        this.payloadType = null == payloadType ? null : payloadType.require(KeyHandle.Type.PAYLOAD_TYPE);
+    }
+
+    /**
+     * Creates a transaction with the keys of this template set.
+     *
+     * @return new transaction
+     */
+    public Transaction newTransaction() {
+        Transaction transaction = agent.newTransaction();
+        transaction.setFrom(from);
+        transaction.setTo(to);
+        if(null != operation) {
+            transaction.setOperation(operation);
+        }
+        if(null != payloadType) {
+            transaction.setPayloadType(payloadType);
+        }
+        return transaction;
+    }
+}
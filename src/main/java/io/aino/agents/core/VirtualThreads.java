@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to the virtual threads of Java 21 and later.
+ * Looked up reflectively, so the agent still runs on older Java versions.
+ */
+final class VirtualThreads {
+    private static final ThreadFactory FACTORY = loadFactory();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Checks if virtual threads are supported by the running JVM.
+     *
+     * @return true if supported
+     */
+    static boolean isAvailable() {
+        return null != FACTORY;
+    }
+
+    /**
+     * Gets a factory creating virtual threads.
+     *
+     * @return thread factory, or null if virtual threads are not supported
+     */
+    static ThreadFactory factory() {
+        return FACTORY;
+    }
+
+    private static ThreadFactory loadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "aino-sender-virtual-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -16,16 +16,29 @@
 
 package io.aino.agents.core.config;
 
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Class for holding agent configuration.
+ *
+ * All values are read from one immutable snapshot published through a volatile reference, so request threads
+ * and senders need no locking. Each setter publishes a new snapshot; several values are changed together
+ * through {@link #reload(AgentConfig)}.
  */
 public class AgentConfig {
 
-    private final ServiceConfig loggerService = new ServiceConfig();
-    private final KeyNameListConfig operations = new KeyNameListConfig();
-    private final KeyNameListConfig applications = new KeyNameListConfig();
-    private final KeyNameListConfig idTypes = new KeyNameListConfig();
-    private final KeyNameListConfig payloadTypes = new KeyNameListConfig();
+    // Republishes the snapshot when keys are added to its lists, so that its key sets stay current.
+    private final Runnable keysChanged = new Runnable() {
+        @Override
+        public void run() {
+            rebuildKeys();
+        }
+    };
+    private volatile ConfigSnapshot snapshot = watchKeys(new ConfigSnapshot());
 
     public enum KeyNameElementType {
         OPERATIONS,
@@ -34,20 +47,94 @@ public class AgentConfig {
         PAYLOADTYPES
     }
 
+    private ServiceConfig service() {
+        return this.snapshot.service;
+    }
+
+    // Setters change a copy and publish it with the other values of the current snapshot,
+    // so a published snapshot never changes. They are synchronized so that concurrent setters do not lose updates.
+    private ServiceConfig copyService() {
+        return service().copy();
+    }
+
+    private void publish(ServiceConfig service) {
+        this.snapshot = this.snapshot.withService(service);
+    }
+
+    /**
+     * Replaces all values of this configuration with those of another one, atomically.
+     * Transactions and senders in flight carry on without pausing. Keys and tuning values such as
+     * the send interval, size threshold and sender thread bounds take effect right away; settings
+     * documented to take effect when the agent is created keep their old effect until then.
+     *
+     * @param source configuration to copy the values from, not modified
+     */
+    public synchronized void reload(AgentConfig source) {
+        ConfigSnapshot previous = this.snapshot;
+        this.snapshot = watchKeys(source.snapshot.copy());
+        previous.operations.setChangeListener(null);
+        previous.applications.setChangeListener(null);
+        previous.idTypes.setChangeListener(null);
+    }
+
+    private ConfigSnapshot watchKeys(ConfigSnapshot watched) {
+        watched.operations.setChangeListener(keysChanged);
+        watched.applications.setChangeListener(keysChanged);
+        watched.idTypes.setChangeListener(keysChanged);
+        return watched;
+    }
+
+    private synchronized void rebuildKeys() {
+        this.snapshot = this.snapshot.withKeysRebuilt();
+    }
+
+    /**
+     * Gets the operation, application and id type keys of the current configuration as one consistent set.
+     * Checking many keys against the result reads the configuration only once.
+     *
+     * @return key sets, not updated by later changes
+     */
+    public KeySets getKeySets() {
+        return this.snapshot.keys;
+    }
+
     /**
      * Get the configured URL to aino.io API.
+     * If several URLs are configured, returns the first one.
      *
      * @return aino.io API URL
      */
-    public String getLogServiceUri() { return this.loggerService.getAddressUri(); }
+    public String getLogServiceUri() { return service().getAddressUri(); }
+
+    /**
+     * Get all configured URLs to aino.io API.
+     *
+     * @return aino.io API URLs
+     */
+    public List<String> getLogServiceUris() { return service().getAddressUris(); }
 
     /**
      * Sets the URL to aino.io API.
+     * Several whitespace separated URLs can be given to balance the load between them.
      *
      * @param logServiceUri URL of aino.io API
      */
-    public void setLogServiceUri(String logServiceUri) {
-        this.loggerService.setAddressUri(logServiceUri);
+    public synchronized void setLogServiceUri(String logServiceUri) {
+        String[] uris = StringUtils.split(logServiceUri);
+        ServiceConfig service = copyService();
+        service.setAddressUris(null == uris ? Collections.<String>emptyList() : Arrays.asList(uris));
+        publish(service);
+    }
+
+    /**
+     * Sets the URLs to aino.io API.
+     *
+     * @param logServiceUris URLs of aino.io API
+     */
+    public synchronized void setLogServiceUris(List<String> logServiceUris) {
+        ServiceConfig service = copyService();
+        service.setAddressUris(logServiceUris);
+        publish(service);
     }
 
     /**
@@ -55,15 +142,17 @@ public class AgentConfig {
      *
      * @return apikey
      */
-    public String getApiKey() { return this.loggerService.getAddressApiKey(); }
+    public String getApiKey() { return service().getAddressApiKey(); }
 
     /**
      * Sets the API key used for authentication to aino.io API.
      *
      * @param apiKey apikey
      */
-    public void setApiKey(String apiKey) {
-        this.loggerService.setAddressApiKey(apiKey);
+    public synchronized void setApiKey(String apiKey) {
+        ServiceConfig service = copyService();
+        service.setAddressApiKey(apiKey);
+        publish(service);
     }
 
     /**
@@ -71,14 +160,18 @@ public class AgentConfig {
      *
      * @return interval in milliseconds
      */
-    public int getSendInterval() { return this.loggerService.getSendInterval(); }
+    public int getSendInterval() { return service().getSendInterval(); }
 
     /**
      * Sets the interval for data sending.
      *
      * @param sendInterval interval in milliseconds
      */
-    public void setSendInterval(int sendInterval) { this.loggerService.setSendInterval(sendInterval); }
+    public synchronized void setSendInterval(int sendInterval) {
+        ServiceConfig service = copyService();
+        service.setSendInterval(sendInterval);
+        publish(service);
+    }
 
     /**
      * Gets the size threshold for sending.
@@ -87,7 +180,7 @@ public class AgentConfig {
      *
      * @return number of log entries
      */
-    public int getSizeThreshold() { return this.loggerService.getSendSizeThreshold(); }
+    public int getSizeThreshold() { return service().getSendSizeThreshold(); }
 
     /**
      * Sets the size threshold of send buffer.
@@ -95,7 +188,546 @@ public class AgentConfig {
      * @param maxSize threshold
      * @see #getSizeThreshold() for more information on size threshold.
      */
-    public void setSizeThreshold(int maxSize) { this.loggerService.setSendSizeThreshold(maxSize); }
+    public synchronized void setSizeThreshold(int maxSize) {
+        ServiceConfig service = copyService();
+        service.setSendSizeThreshold(maxSize);
+        publish(service);
+    }
+
+    /**
+     * Checks if batches rejected by the API (HTTP 4xx) should be split in halves and resent
+     * until the invalid transactions are isolated. Only the invalid transactions are then dropped.
+     * Batches rejected with 413 (Payload Too Large) are always split.
+     *
+     * @return true if enabled
+     */
+    public boolean isBisectRejectedEnabled() { return service().isBisectRejected(); }
+
+    /**
+     * Sets whether rejected batches should be split and resent.
+     *
+     * @param val true to enable
+     */
+    public synchronized void setBisectRejectedEnabled(boolean val) {
+        ServiceConfig service = copyService();
+        service.setBisectRejected(val);
+        publish(service);
+    }
+
+    /**
+     * Gets the maximum number of send attempts for a batch before it is given up.
+     *
+     * @return max retries
+     */
+    public int getMaxRetries() { return service().getMaxRetries(); }
+
+    /**
+     * Sets the maximum number of send attempts for a batch.
+     *
+     * @param maxRetries max retries
+     */
+    public synchronized void setMaxRetries(int maxRetries) {
+        ServiceConfig service = copyService();
+        service.setMaxRetries(maxRetries);
+        publish(service);
+    }
+
+    /**
+     * Gets the base delay of the exponential retry backoff.
+     *
+     * @return delay in milliseconds
+     */
+    public int getRetryBaseDelay() { return service().getRetryBaseDelay(); }
+
+    /**
+     * Sets the base delay of the exponential retry backoff.
+     *
+     * @param retryBaseDelay delay in milliseconds
+     */
+    public synchronized void setRetryBaseDelay(int retryBaseDelay) {
+        ServiceConfig service = copyService();
+        service.setRetryBaseDelay(retryBaseDelay);
+        publish(service);
+    }
+
+    /**
+     * Gets the upper bound of the exponential retry backoff.
+     *
+     * @return delay in milliseconds
+     */
+    public int getRetryMaxDelay() { return service().getRetryMaxDelay(); }
+
+    /**
+     * Sets the upper bound of the exponential retry backoff.
+     *
+     * @param retryMaxDelay delay in milliseconds
+     */
+    public synchronized void setRetryMaxDelay(int retryMaxDelay) {
+        ServiceConfig service = copyService();
+        service.setRetryMaxDelay(retryMaxDelay);
+        publish(service);
+    }
+
+    /**
+     * Gets the number of consecutive failed sends after which the circuit breaker opens.
+     *
+     * @return failure threshold
+     */
+    public int getCircuitBreakerThreshold() { return service().getCircuitBreakerThreshold(); }
+
+    /**
+     * Sets the number of consecutive failed sends after which the circuit breaker opens.
+     *
+     * @param threshold failure threshold
+     */
+    public synchronized void setCircuitBreakerThreshold(int threshold) {
+        ServiceConfig service = copyService();
+        service.setCircuitBreakerThreshold(threshold);
+        publish(service);
+    }
+
+    /**
+     * Gets the time the circuit breaker stays open before a probe request is let through.
+     *
+     * @return time in milliseconds
+     */
+    public int getCircuitBreakerOpenTime() { return service().getCircuitBreakerOpenTime(); }
+
+    /**
+     * Sets the time the circuit breaker stays open before a probe request is let through.
+     *
+     * @param openTime time in milliseconds
+     */
+    public synchronized void setCircuitBreakerOpenTime(int openTime) {
+        ServiceConfig service = copyService();
+        service.setCircuitBreakerOpenTime(openTime);
+        publish(service);
+    }
+
+    /**
+     * Gets the directory where batches that exhaust their retries are stored for later re-drive.
+     *
+     * @return directory path, null if dead-letter store is not in use
+     */
+    public String getDeadLetterDirectory() { return service().getDeadLetterDirectory(); }
+
+    /**
+     * Sets the directory where batches that exhaust their retries are stored.
+     *
+     * @param directory directory path, null to disable
+     */
+    public synchronized void setDeadLetterDirectory(String directory) {
+        ServiceConfig service = copyService();
+        service.setDeadLetterDirectory(directory);
+        publish(service);
+    }
+
+    /**
+     * Gets the maximum disk usage of the dead-letter store.
+     * Oldest batches are evicted when the limit would be exceeded.
+     *
+     * @return size in bytes
+     */
+    public long getDeadLetterMaxBytes() { return service().getDeadLetterMaxBytes(); }
+
+    /**
+     * Sets the maximum disk usage of the dead-letter store.
+     *
+     * @param maxBytes size in bytes
+     */
+    public synchronized void setDeadLetterMaxBytes(long maxBytes) {
+        ServiceConfig service = copyService();
+        service.setDeadLetterMaxBytes(maxBytes);
+        publish(service);
+    }
+
+    /**
+     * Checks if the dead-letter store is in use.
+     *
+     * @return true if a dead-letter directory is configured
+     */
+    public boolean isDeadLetterEnabled() { return null != service().getDeadLetterDirectory(); }
+
+    /**
+     * Gets the smallest number of sender threads the agent keeps running.
+     *
+     * @return thread count
+     */
+    public int getMinSenderThreads() { return service().getMinSenderThreads(); }
+
+    /**
+     * Sets the smallest number of sender threads the agent keeps running.
+     *
+     * @param threads thread count, at least 1
+     */
+    public synchronized void setMinSenderThreads(int threads) {
+        if(threads < 1) {
+            throw new InvalidAgentConfigException("At least one sender thread is needed.");
+        }
+        ServiceConfig service = copyService();
+        service.setMinSenderThreads(threads);
+        publish(service);
+    }
+
+    /**
+     * Gets the largest number of sender threads the agent starts under load.
+     *
+     * @return thread count
+     */
+    public int getMaxSenderThreads() { return service().getMaxSenderThreads(); }
+
+    /**
+     * Sets the largest number of sender threads the agent starts under load.
+     *
+     * @param threads thread count, at least 1
+     */
+    public synchronized void setMaxSenderThreads(int threads) {
+        if(threads < 1) {
+            throw new InvalidAgentConfigException("At least one sender thread is needed.");
+        }
+        ServiceConfig service = copyService();
+        service.setMaxSenderThreads(threads);
+        publish(service);
+    }
+
+    /**
+     * Checks if senders should run on virtual threads.
+     * Virtual threads need Java 21 or later. On older versions the agent falls back to platform threads.
+     *
+     * @return true if virtual threads are requested
+     */
+    public boolean isVirtualThreadsEnabled() { return service().isVirtualThreads(); }
+
+    /**
+     * Sets senders to run on virtual threads.
+     *
+     * @param enabled true to use virtual threads
+     */
+    public synchronized void setVirtualThreadsEnabled(boolean enabled) {
+        ServiceConfig service = copyService();
+        service.setVirtualThreads(enabled);
+        publish(service);
+    }
+
+    /**
+     * Gets the number of senders run on virtual threads, which is the maximum number of batches sent at a time.
+     *
+     * @return batch count
+     */
+    public int getMaxInFlight() { return service().getMaxInFlight(); }
+
+    /**
+     * Sets the number of senders run on virtual threads, which is the maximum number of batches sent at a time.
+     *
+     * @param maxInFlight batch count, at least 1
+     */
+    public synchronized void setMaxInFlight(int maxInFlight) {
+        if(maxInFlight < 1) {
+            throw new InvalidAgentConfigException("At least one batch must be allowed in flight.");
+        }
+        ServiceConfig service = copyService();
+        service.setMaxInFlight(maxInFlight);
+        publish(service);
+    }
+
+    /**
+     * Gets the number of flow id partitions.
+     * When partitioned, transactions are hashed by flow id to a fixed sender, so each flow is sent in order.
+     * The number of senders is then fixed to the number of partitions.
+     *
+     * @return partition count, 0 if partitioning is disabled
+     */
+    public int getSenderPartitions() { return service().getSenderPartitions(); }
+
+    /**
+     * Sets the number of flow id partitions. Takes effect when the agent is created.
+     *
+     * @param partitions partition count, 0 to disable partitioning
+     */
+    public synchronized void setSenderPartitions(int partitions) {
+        if(partitions < 0) {
+            throw new InvalidAgentConfigException("Partition count cannot be negative.");
+        }
+        ServiceConfig service = copyService();
+        service.setSenderPartitions(partitions);
+        publish(service);
+    }
+
+    /**
+     * Gets the number of threads in the work-stealing pool that serializes and compresses batches.
+     * With a pool, each sender encodes its next batch there while its current batch is being sent.
+     *
+     * @return thread count, 0 to encode on the sender threads
+     */
+    public int getEncoderThreads() { return service().getEncoderThreads(); }
+
+    /**
+     * Sets the number of threads in the encoder pool. Takes effect when the agent is created.
+     *
+     * @param threads thread count, 0 to encode on the sender threads
+     */
+    public synchronized void setEncoderThreads(int threads) {
+        if(threads < 0) {
+            throw new InvalidAgentConfigException("Encoder thread count cannot be negative.");
+        }
+        ServiceConfig service = copyService();
+        service.setEncoderThreads(threads);
+        publish(service);
+    }
+
+    /**
+     * Gets the number of preallocated slots in the ring used by {@link io.aino.agents.core.Agent#getRing()}.
+     *
+     * @return slot count, 0 if there is no ring
+     */
+    public int getRingSize() { return service().getRingSize(); }
+
+    /**
+     * Sets the number of slots in the transaction ring. Takes effect when the agent is created.
+     *
+     * @param size slot count, a power of two, or 0 for no ring
+     */
+    public synchronized void setRingSize(int size) {
+        if(0 != size && (size < 2 || Integer.bitCount(size) != 1)) {
+            throw new InvalidAgentConfigException("Ring size must be a power of two.");
+        }
+        ServiceConfig service = copyService();
+        service.setRingSize(size);
+        publish(service);
+    }
+
+    /**
+     * Gets the maximum length of messages and metadata values computed lazily at encoding time.
+     * Longer values are cut.
+     *
+     * @return length in characters, 0 for no limit
+     */
+    public int getLazyValueMaxLength() { return service().getLazyValueMaxLength(); }
+
+    /**
+     * Sets the maximum length of lazily computed values. Applies to values set after the call.
+     *
+     * @param length length in characters, 0 for no limit
+     */
+    public synchronized void setLazyValueMaxLength(int length) {
+        if(length < 0) {
+            throw new InvalidAgentConfigException("Lazy value max length cannot be negative.");
+        }
+        ServiceConfig service = copyService();
+        service.setLazyValueMaxLength(length);
+        publish(service);
+    }
+
+    /**
+     * Gets how transactions not built from key handles are validated when added.
+     *
+     * @return validation mode, {@link ValidationMode#STRICT} by default
+     */
+    public ValidationMode getValidationMode() { return service().getValidationMode(); }
+
+    /**
+     * Sets how transactions are validated. Takes effect when the agent is created.
+     *
+     * @param mode validation mode
+     */
+    public synchronized void setValidationMode(ValidationMode mode) {
+        if(null == mode) {
+            throw new InvalidAgentConfigException("Validation mode cannot be null.");
+        }
+        ServiceConfig service = copyService();
+        service.setValidationMode(mode);
+        publish(service);
+    }
+
+    /**
+     * Gets how many transactions there are per validated one in {@link ValidationMode#SAMPLED} mode.
+     *
+     * @return interval
+     */
+    public int getValidationSampleInterval() { return service().getValidationSampleInterval(); }
+
+    /**
+     * Sets how many transactions there are per validated one in sampled mode. Takes effect when the agent is created.
+     *
+     * @param interval interval, 1 validates every transaction
+     */
+    public synchronized void setValidationSampleInterval(int interval) {
+        if(interval < 1) {
+            throw new InvalidAgentConfigException("Validation sample interval must be positive.");
+        }
+        ServiceConfig service = copyService();
+        service.setValidationSampleInterval(interval);
+        publish(service);
+    }
+
+    /**
+     * Checks if the agent recycles transactions.
+     * When enabled, transactions from {@link io.aino.agents.core.Agent#newTransaction()} are reclaimed once they
+     * have been added, and their serialized form once its batch has been delivered, spilled or dropped.
+     * A transaction must not be used after it has been added.
+     *
+     * @return true if recycling is enabled
+     */
+    public boolean isRecyclingEnabled() { return service().isRecycling(); }
+
+    /**
+     * Sets the agent to recycle transactions. Takes effect when the agent is created.
+     *
+     * @param enabled true to enable recycling
+     */
+    public synchronized void setRecyclingEnabled(boolean enabled) {
+        ServiceConfig service = copyService();
+        service.setRecycling(enabled);
+        publish(service);
+    }
+
+    /**
+     * Gets the number of recycled transactions kept per thread.
+     *
+     * @return pool size
+     */
+    public int getRecyclingPoolSize() { return service().getRecyclingPoolSize(); }
+
+    /**
+     * Sets the number of recycled transactions kept per thread.
+     *
+     * @param size pool size
+     */
+    public synchronized void setRecyclingPoolSize(int size) {
+        if(size < 1) {
+            throw new InvalidAgentConfigException("Recycling pool size must be positive.");
+        }
+        ServiceConfig service = copyService();
+        service.setRecyclingPoolSize(size);
+        publish(service);
+    }
+
+    /**
+     * Gets the longest time a transaction waits in the buffer for a batch to fill up.
+     * Defaults to the send interval.
+     *
+     * @return time in milliseconds
+     */
+    public int getBatchLinger() {
+        int linger = service().getBatchLinger();
+        return linger < 0 ? getSendInterval() : linger;
+    }
+
+    /**
+     * Sets the longest time a transaction waits in the buffer for a batch to fill up.
+     *
+     * @param linger time in milliseconds, 0 to send as soon as there is data
+     */
+    public synchronized void setBatchLinger(int linger) {
+        if(linger < 0) {
+            throw new InvalidAgentConfigException("Batch linger time cannot be negative.");
+        }
+        ServiceConfig service = copyService();
+        service.setBatchLinger(linger);
+        publish(service);
+    }
+
+    /**
+     * Gets the maximum number of transactions sent in one request.
+     *
+     * @return transaction count
+     */
+    public int getBatchMaxCount() { return service().getBatchMaxCount(); }
+
+    /**
+     * Sets the maximum number of transactions sent in one request.
+     *
+     * @param maxCount transaction count, at least 1
+     */
+    public synchronized void setBatchMaxCount(int maxCount) {
+        if(maxCount < 1) {
+            throw new InvalidAgentConfigException("Batch must hold at least one transaction.");
+        }
+        ServiceConfig service = copyService();
+        service.setBatchMaxCount(maxCount);
+        publish(service);
+    }
+
+    /**
+     * Gets the maximum size of one request before compression.
+     * A single transaction larger than this is still sent on its own.
+     *
+     * @return size in bytes
+     */
+    public long getBatchMaxBytes() { return service().getBatchMaxBytes(); }
+
+    /**
+     * Sets the maximum size of one request before compression.
+     *
+     * @param maxBytes size in bytes, at least 1
+     */
+    public synchronized void setBatchMaxBytes(long maxBytes) {
+        if(maxBytes < 1) {
+            throw new InvalidAgentConfigException("Batch size limit must be positive.");
+        }
+        ServiceConfig service = copyService();
+        service.setBatchMaxBytes(maxBytes);
+        publish(service);
+    }
+
+    /**
+     * Checks if the batch size is tuned automatically from the observed latency and errors.
+     * When enabled, the batch size varies between {@link #getBatchMinCount()} and {@link #getBatchMaxCount()}
+     * and replaces the size threshold.
+     *
+     * @return true if auto-tuning is enabled
+     */
+    public boolean isBatchAutoTuneEnabled() { return service().isBatchAutoTune(); }
+
+    /**
+     * Sets the batch size to be tuned automatically.
+     *
+     * @param enabled true to enable auto-tuning
+     */
+    public synchronized void setBatchAutoTuneEnabled(boolean enabled) {
+        ServiceConfig service = copyService();
+        service.setBatchAutoTune(enabled);
+        publish(service);
+    }
+
+    /**
+     * Gets the smallest batch size used by auto-tuning. The batch size also grows by this amount at a time.
+     *
+     * @return transaction count
+     */
+    public int getBatchMinCount() { return service().getBatchMinCount(); }
+
+    /**
+     * Sets the smallest batch size used by auto-tuning.
+     *
+     * @param minCount transaction count, at least 1
+     */
+    public synchronized void setBatchMinCount(int minCount) {
+        if(minCount < 1) {
+            throw new InvalidAgentConfigException("Batch must hold at least one transaction.");
+        }
+        ServiceConfig service = copyService();
+        service.setBatchMinCount(minCount);
+        publish(service);
+    }
+
+    /**
+     * Gets the additional sinks that receive a copy of every sent batch.
+     *
+     * @return sink configurations
+     */
+    public List<SinkConfig> getSinks() { return service().getSinks(); }
+
+    /**
+     * Adds a sink that receives a copy of every sent batch.
+     *
+     * @param sink sink configuration
+     */
+    public synchronized void addSink(SinkConfig sink) {
+        ServiceConfig service = copyService();
+        service.addSink(sink);
+        publish(service);
+    }
 
     /**
      * Checks if logging to aino.io is enabled.
@@ -103,7 +735,7 @@ public class AgentConfig {
      * @return true if logging is enabled
      */
     public boolean isEnabled() {
-        return this.loggerService.isEnabled();
+        return service().isEnabled();
     }
 
     /**
@@ -111,7 +743,11 @@ public class AgentConfig {
      *
      * @param val true to enable, false to disable
      */
-    public void setEnabled(boolean val) { this.loggerService.setEnabled(val); }
+    public synchronized void setEnabled(boolean val) {
+        ServiceConfig service = copyService();
+        service.setEnabled(val);
+        publish(service);
+    }
 
     /**
      * Checks if gzipping the request is enabled.
@@ -119,7 +755,7 @@ public class AgentConfig {
      * @return is gzip enabled
      */
     public boolean isGzipEnabled() {
-        return this.loggerService.isGzipEnabled();
+        return service().isGzipEnabled();
     }
 
     /**
@@ -127,7 +763,11 @@ public class AgentConfig {
      *
      * @param val should the data be gzipped
      */
-    public void setGzipEnabled(boolean val) { this.loggerService.setGzipEnabled(val); }
+    public synchronized void setGzipEnabled(boolean val) {
+        ServiceConfig service = copyService();
+        service.setGzipEnabled(val);
+        publish(service);
+    }
 
     /**
      * Get the operations defined.
@@ -135,7 +775,7 @@ public class AgentConfig {
      * @return KeyNameListConfig containing operations
      */
     public KeyNameListConfig getOperations() {
-        return this.operations;
+        return this.snapshot.operations;
     }
 
     /**
@@ -144,7 +784,7 @@ public class AgentConfig {
      * @return KeyNameListConfig containing operations
      */
     public KeyNameListConfig getIdTypes() {
-        return this.idTypes;
+        return this.snapshot.idTypes;
     }
 
     /**
@@ -153,7 +793,7 @@ public class AgentConfig {
      * @return KeyNameListConfig containing id types
      */
     public KeyNameListConfig getApplications() {
-        return this.applications;
+        return this.snapshot.applications;
     }
 
     /**
@@ -162,7 +802,7 @@ public class AgentConfig {
      * @return KeyNameListConfig containing operations
      */
     public KeyNameListConfig getPayloadTypes() {
-        return this.payloadTypes;
+        return this.snapshot.payloadTypes;
     }
 
     /**
@@ -172,15 +812,16 @@ public class AgentConfig {
      * @return KeyNameListConfig containing configured elements
      */
     public KeyNameListConfig get(KeyNameElementType type) {
+        ConfigSnapshot current = this.snapshot;
         switch (type) {
             case OPERATIONS:
-                return this.operations;
+                return current.operations;
             case APPLICATIONS:
-                return this.applications;
+                return current.applications;
             case IDTYPES:
-                return this.idTypes;
+                return current.idTypes;
             case PAYLOADTYPES:
-                return this.payloadTypes;
+                return current.payloadTypes;
             default:
                 throw new RuntimeException("Invalid KeyNameElement");
         }
@@ -191,15 +832,17 @@ public class AgentConfig {
      *
      * @return HTTP(S) proxy host address
      */
-    public String getProxyHost() { return this.loggerService.getProxyHost(); }
+    public String getProxyHost() { return service().getProxyHost(); }
 
     /**
      * Sets the address to an HTTP(S) proxy.
      *
      * @param proxyHost address of an HTTP(S) proxy
      */
-    public void setProxyHost(String proxyHost) {
-        this.loggerService.setProxyHost(proxyHost);
+    public synchronized void setProxyHost(String proxyHost) {
+        ServiceConfig service = copyService();
+        service.setProxyHost(proxyHost);
+        publish(service);
     }
 
     /**
@@ -207,15 +850,17 @@ public class AgentConfig {
      *
      * @return HTTP(S) proxy port
      */
-    public int getProxyPort() { return this.loggerService.getProxyPort(); }
+    public int getProxyPort() { return service().getProxyPort(); }
 
     /**
      * Sets the port to an HTTP(S) proxy.
      *
      * @param proxyport port of an HTTP(S) proxy
      */
-    public void setProxyPort(int proxyport) {
-        this.loggerService.setProxyPort(proxyport);
+    public synchronized void setProxyPort(int proxyport) {
+        ServiceConfig service = copyService();
+        service.setProxyPort(proxyport);
+        publish(service);
     }
 
     /**
@@ -223,6 +868,6 @@ public class AgentConfig {
      * @return true if defined
      */
     public boolean isProxyDefined() {
-        return this.loggerService.isProxyDefined();
+        return service().isProxyDefined();
     }
 }
@@ -0,0 +1,75 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core.config;
+
+/**
+ * One consistent version of an {@link AgentConfig}, swapped as a whole on reload.
+ */
+final class ConfigSnapshot {
+    final ServiceConfig service;
+    final KeyNameListConfig operations;
+    final KeyNameListConfig applications;
+    final KeyNameListConfig idTypes;
+    final KeyNameListConfig payloadTypes;
+    final KeySets keys;
+
+    /**
+     * Constructor for an empty configuration.
+     */
+    ConfigSnapshot() {
+        this(new ServiceConfig(), new KeyNameListConfig(), new KeyNameListConfig(), new KeyNameListConfig(), new KeyNameListConfig());
+    }
+
+    private ConfigSnapshot(ServiceConfig service, KeyNameListConfig operations, KeyNameListConfig applications,
+                           KeyNameListConfig idTypes, KeyNameListConfig payloadTypes) {
+        this.service = service;
+        this.operations = operations;
+        this.applications = applications;
+        this.idTypes = idTypes;
+        this.payloadTypes = payloadTypes;
+        this.keys = new KeySets(operations, applications, idTypes);
+    }
+
+    /**
+     * Creates a snapshot with other service values and the key lists of this one.
+     * The key lists are safe to share as they copy on write.
+     *
+     * @param service service values, not to be changed afterwards
+     * @return new snapshot
+     */
+    ConfigSnapshot withService(ServiceConfig service) {
+        return new ConfigSnapshot(service, operations, applications, idTypes, payloadTypes);
+    }
+
+    /**
+     * Creates a snapshot with the same values as this one and key sets rebuilt from the current keys.
+     *
+     * @return new snapshot
+     */
+    ConfigSnapshot withKeysRebuilt() {
+        return new ConfigSnapshot(service, operations, applications, idTypes, payloadTypes);
+    }
+
+    /**
+     * Copies this snapshot.
+     *
+     * @return copy that does not share mutable state with this one
+     */
+    ConfigSnapshot copy() {
+        return new ConfigSnapshot(service.copy(), operations.copy(), applications.copy(), idTypes.copy(), payloadTypes.copy());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core.config;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads an {@link AgentConfig} from its XML file whenever the file changes.
+ * A file that cannot be read or is not valid is logged and the current configuration is kept.
+ * The file is checked periodically on a given executor, so watching needs no thread of its own.
+ */
+public class ConfigWatcher implements Closeable {
+    private static final Log log = LogFactory.getLog(ConfigWatcher.class);
+
+    // Editors write a file in several steps, the reload waits until a check finds no new events.
+    // Checks are this far apart, so the file has been left alone for at least this long.
+    static final long SETTLE_TIME = 200;
+
+    private final File file;
+    private final AgentConfig target;
+    private final WatchService watchService;
+    private volatile ScheduledFuture<?> checks;
+    // Only touched by the checks, which never run concurrently.
+    private boolean changed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param file configuration file to watch
+     * @param target configuration to reload
+     * @throws IOException if the directory of the file cannot be watched
+     */
+    public ConfigWatcher(File file, AgentConfig target) throws IOException {
+        this.file = file.getAbsoluteFile();
+        this.target = target;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParentFile().toPath().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Starts watching the file.
+     *
+     * @param executor executor to check the file on
+     */
+    public synchronized void start(ScheduledExecutorService executor) {
+        if(null != checks) {
+            throw new IllegalStateException("Already watching " + file);
+        }
+        checks = executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                check();
+            }
+        }, SETTLE_TIME, SETTLE_TIME, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops watching the file.
+     *
+     * @throws IOException if the watch service cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(null != checks) {
+            checks.cancel(false);
+        }
+        watchService.close();
+    }
+
+    /**
+     * Reads the file and swaps the configuration.
+     *
+     * @return true if the configuration was reloaded
+     */
+    boolean reload() {
+        try {
+            target.reload(new FileConfigBuilder(file).build());
+            log.info("Reloaded configuration from " + file);
+            return true;
+        } catch (FileNotFoundException e) {
+            log.error("Configuration file " + file + " not found, keeping the current configuration.");
+        } catch (RuntimeException e) {
+            log.error("Could not reload configuration from " + file + ", keeping the current configuration.", e);
+        }
+        return false;
+    }
+
+    private void check() {
+        try {
+            WatchKey key = watchService.poll();
+            if(null == key) {
+                if(changed) {
+                    changed = false;
+                    reload();
+                }
+                return;
+            }
+            while(null != key) {
+                changed |= concernsFile(key);
+                if(!key.reset()) {
+                    log.warn("Directory of " + file + " cannot be watched any more.");
+                    checks.cancel(false);
+                    return;
+                }
+                key = watchService.poll();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Closed by close().
+        }
+    }
+
+    private boolean concernsFile(WatchKey key) {
+        boolean concerns = false;
+        for(WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if(StandardWatchEventKinds.OVERFLOW == event.kind()
+                    || (context instanceof Path && file.getName().equals(context.toString()))) {
+                concerns = true;
+            }
+        }
+        return concerns;
+    }
+}
@@ -16,22 +16,27 @@
 
 package io.aino.agents.core.config;
 
-import org.apache.axiom.attachments.utils.IOUtils;
-import org.apache.axiom.om.OMElement;
-import org.apache.axiom.om.impl.builder.StAXOMBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
-import javax.xml.stream.XMLStreamException;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
 import java.io.*;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Class for reading configuration file from InputStream.
@@ -49,9 +54,48 @@ public class InputStreamConfigBuilder implements AgentConfigBuilder {
     private static QName CONFIG_INTERVAL_ATT_Q = new QName("interval");
     private static QName CONFIG_SIZE_THRESHOLD_ATT_Q = new QName("sizeThreshold");
     private static QName CONFIG_GZIP_ENABLED_ATT_Q = new QName("gzipEnabled");
+    private static QName CONFIG_BISECT_REJECTED_ATT_Q = new QName("bisectRejected");
     private static QName CONFIG_PROXY_Q = new QName("proxy");
     private static QName CONFIG_HOST_ATT_Q = new QName("host");
     private static QName CONFIG_PORT_ATT_Q = new QName("port");
+    private static QName CONFIG_RETRY_Q = new QName("retry");
+    private static QName CONFIG_MAX_RETRIES_ATT_Q = new QName("maxRetries");
+    private static QName CONFIG_BASE_DELAY_ATT_Q = new QName("baseDelay");
+    private static QName CONFIG_MAX_DELAY_ATT_Q = new QName("maxDelay");
+    private static QName CONFIG_CIRCUIT_BREAKER_Q = new QName("circuitBreaker");
+    private static QName CONFIG_FAILURE_THRESHOLD_ATT_Q = new QName("failureThreshold");
+    private static QName CONFIG_OPEN_TIME_ATT_Q = new QName("openTime");
+    private static QName CONFIG_DEAD_LETTER_Q = new QName("deadLetter");
+    private static QName CONFIG_DIRECTORY_ATT_Q = new QName("directory");
+    private static QName CONFIG_MAX_BYTES_ATT_Q = new QName("maxBytes");
+    private static QName CONFIG_SENDERS_Q = new QName("senders");
+    private static QName CONFIG_MIN_ATT_Q = new QName("min");
+    private static QName CONFIG_MAX_ATT_Q = new QName("max");
+    private static QName CONFIG_VIRTUAL_THREADS_ATT_Q = new QName("virtualThreads");
+    private static QName CONFIG_MAX_IN_FLIGHT_ATT_Q = new QName("maxInFlight");
+    private static QName CONFIG_PARTITIONS_ATT_Q = new QName("partitions");
+    private static QName CONFIG_ENCODER_THREADS_ATT_Q = new QName("encoderThreads");
+    private static QName CONFIG_BATCH_Q = new QName("batch");
+    private static QName CONFIG_LINGER_ATT_Q = new QName("linger");
+    private static QName CONFIG_MAX_COUNT_ATT_Q = new QName("maxCount");
+    private static QName CONFIG_MIN_COUNT_ATT_Q = new QName("minCount");
+    private static QName CONFIG_AUTO_TUNE_ATT_Q = new QName("autoTune");
+    private static QName CONFIG_SINKS_Q = new QName("sinks");
+    private static QName CONFIG_FILE_Q = new QName("file");
+    private static QName CONFIG_SINK_Q = new QName("sink");
+    private static QName CONFIG_CLASS_ATT_Q = new QName("class");
+    private static QName CONFIG_MAX_FILE_BYTES_ATT_Q = new QName("maxFileBytes");
+    private static QName CONFIG_MAX_FILES_ATT_Q = new QName("maxFiles");
+    private static QName CONFIG_QUEUE_SIZE_ATT_Q = new QName("queueSize");
+    private static QName CONFIG_RECYCLING_Q = new QName("recycling");
+    private static QName CONFIG_POOL_SIZE_ATT_Q = new QName("poolSize");
+    private static QName CONFIG_RING_Q = new QName("ring");
+    private static QName CONFIG_SIZE_ATT_Q = new QName("size");
+    private static QName CONFIG_LAZY_VALUES_Q = new QName("lazyValues");
+    private static QName CONFIG_MAX_LENGTH_ATT_Q = new QName("maxLength");
+    private static QName CONFIG_VALIDATION_Q = new QName("validation");
+    private static QName CONFIG_MODE_ATT_Q = new QName("mode");
+    private static QName CONFIG_SAMPLE_INTERVAL_ATT_Q = new QName("sampleInterval");
 
     private static QName CONFIG_OPERATIONS_Q = new QName("operations");
     private static QName CONFIG_IDTYPES_Q = new QName("idTypes");
@@ -60,7 +104,12 @@ public class InputStreamConfigBuilder implements AgentConfigBuilder {
     private static QName CONFIG_KEY_ATT_Q = new QName("key");
     private static QName CONFIG_NAME_ATT_Q = new QName("name");
 
+    // Compiling the schema is the slowest part of reading a configuration, so it is done once. Schema is thread-safe.
+    private static volatile Schema schema;
+
     private final InputStream stream;
+    // The stream can be read only once, later builds return copies.
+    private AgentConfig built;
 
     /**
      * Constructor.
@@ -71,23 +120,30 @@ public class InputStreamConfigBuilder implements AgentConfigBuilder {
         if(null == stream){
             throw new NullPointerException("Stream cannot be null");
         }
-        this.stream = convertToByteStream(stream);
+        this.stream = stream;
     }
 
     @Override
-    public AgentConfig build() {
-        return configFromInputStream();
+    public synchronized AgentConfig build() {
+        if(null == built) {
+            try {
+                built = configFromInputStream();
+            } finally {
+                this.closeStream();
+            }
+        }
+        AgentConfig config = new AgentConfig();
+        config.reload(built);
+        return config;
     }
 
     private AgentConfig configFromInputStream() {
-        validateSchema(getStream());
-
-        OMElement configElement = parseConfigElement(getStream());
-        OMElement serviceElement = configElement.getFirstChildWithName(CONFIG_LOGGER_SERVICE_Q);
-        OMElement operationsElement = configElement.getFirstChildWithName(CONFIG_OPERATIONS_Q);
-        OMElement applicationsElement = configElement.getFirstChildWithName(CONFIG_APPLICATIONS_Q);
-        OMElement idTypesElement = configElement.getFirstChildWithName(CONFIG_IDTYPES_Q);
-        OMElement payloadTypesElement = configElement.getFirstChildWithName(CONFIG_PAYLOADTYPES_Q);
+        ConfigElement configElement = parseConfigElement(stream);
+        ConfigElement serviceElement = configElement.getFirstChildWithName(CONFIG_LOGGER_SERVICE_Q);
+        ConfigElement operationsElement = configElement.getFirstChildWithName(CONFIG_OPERATIONS_Q);
+        ConfigElement applicationsElement = configElement.getFirstChildWithName(CONFIG_APPLICATIONS_Q);
+        ConfigElement idTypesElement = configElement.getFirstChildWithName(CONFIG_IDTYPES_Q);
+        ConfigElement payloadTypesElement = configElement.getFirstChildWithName(CONFIG_PAYLOADTYPES_Q);
 
         AgentConfig config = new AgentConfig();
 
@@ -100,41 +156,56 @@ public class InputStreamConfigBuilder implements AgentConfigBuilder {
         }
 
         config.setEnabled(isServiceEnabled(serviceElement));
-        this.closeStream();
         return config;
     }
 
     /**
-     * Validates the config file against XSD schema.
+     * Gets the compiled XSD schema of the config file.
      *
-     * @param stream InputStream to config file.
+     * @return schema shared by all builders
      */
-    private void validateSchema(InputStream stream) {
-        try {
-            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            InputStream xsdStream = this.getClass().getClassLoader().getResourceAsStream(LOGGER_SCHEMA);
-            Schema schema = factory.newSchema(new StreamSource(xsdStream));
-            Validator validator = schema.newValidator();
-            validator.validate(new StreamSource(stream));
-        } catch (SAXException e) {
-            throw new InvalidAgentConfigException("Failed to validate logger config.", e);
-        } catch (IOException e) {
-            throw new InvalidAgentConfigException("Failed to validate logger config.", e);
+    private static Schema schema() {
+        Schema compiled = schema;
+        if(null == compiled) {
+            synchronized (InputStreamConfigBuilder.class) {
+                compiled = schema;
+                if(null == compiled) {
+                    try {
+                        SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+                        InputStream xsdStream = InputStreamConfigBuilder.class.getClassLoader().getResourceAsStream(LOGGER_SCHEMA);
+                        compiled = factory.newSchema(new StreamSource(xsdStream));
+                    } catch (SAXException e) {
+                        throw new InvalidAgentConfigException("Failed to load logger config schema.", e);
+                    }
+                    schema = compiled;
+                }
+            }
         }
+        return compiled;
     }
 
-    private boolean isServiceEnabled(OMElement serviceElement){
+    private boolean isServiceEnabled(ConfigElement serviceElement){
         if(null == serviceElement){
             return false;
         }
         return Boolean.valueOf(serviceElement.getAttributeValue(CONFIG_ENABLED_ATT_Q));
     }
 
-    private void applyServiceSettings(AgentConfig config, OMElement serviceElement) {
+    private void applyServiceSettings(AgentConfig config, ConfigElement serviceElement) {
 
-        OMElement addressElement = serviceElement.getFirstChildWithName(CONFIG_ADDRESS_Q);
-        OMElement proxyElement = serviceElement.getFirstChildWithName(CONFIG_PROXY_Q);
-        OMElement sendElement = serviceElement.getFirstChildWithName(CONFIG_SEND_Q);
+        ConfigElement addressElement = serviceElement.getFirstChildWithName(CONFIG_ADDRESS_Q);
+        ConfigElement proxyElement = serviceElement.getFirstChildWithName(CONFIG_PROXY_Q);
+        ConfigElement sendElement = serviceElement.getFirstChildWithName(CONFIG_SEND_Q);
+        ConfigElement batchElement = serviceElement.getFirstChildWithName(CONFIG_BATCH_Q);
+        ConfigElement retryElement = serviceElement.getFirstChildWithName(CONFIG_RETRY_Q);
+        ConfigElement circuitBreakerElement = serviceElement.getFirstChildWithName(CONFIG_CIRCUIT_BREAKER_Q);
+        ConfigElement deadLetterElement = serviceElement.getFirstChildWithName(CONFIG_DEAD_LETTER_Q);
+        ConfigElement sendersElement = serviceElement.getFirstChildWithName(CONFIG_SENDERS_Q);
+        ConfigElement sinksElement = serviceElement.getFirstChildWithName(CONFIG_SINKS_Q);
+        ConfigElement recyclingElement = serviceElement.getFirstChildWithName(CONFIG_RECYCLING_Q);
+        ConfigElement ringElement = serviceElement.getFirstChildWithName(CONFIG_RING_Q);
+        ConfigElement lazyValuesElement = serviceElement.getFirstChildWithName(CONFIG_LAZY_VALUES_Q);
+        ConfigElement validationElement = serviceElement.getFirstChildWithName(CONFIG_VALIDATION_Q);
 
         if (null == addressElement || null == sendElement) {
             throw new InvalidAgentConfigException("The logger config does not contain all of the required elements for the logger service configuration.");
@@ -145,77 +216,235 @@ public class InputStreamConfigBuilder implements AgentConfigBuilder {
         config.setSendInterval(Integer.parseInt(sendElement.getAttributeValue(CONFIG_INTERVAL_ATT_Q)));
         config.setSizeThreshold(Integer.parseInt(sendElement.getAttributeValue(CONFIG_SIZE_THRESHOLD_ATT_Q)));
         config.setGzipEnabled(Boolean.parseBoolean(sendElement.getAttributeValue(CONFIG_GZIP_ENABLED_ATT_Q)));
+        config.setBisectRejectedEnabled(Boolean.parseBoolean(sendElement.getAttributeValue(CONFIG_BISECT_REJECTED_ATT_Q)));
 
         if(null != proxyElement){
             config.setProxyHost(proxyElement.getAttributeValue(CONFIG_HOST_ATT_Q));
             config.setProxyPort(Integer.parseInt(proxyElement.getAttributeValue(CONFIG_PORT_ATT_Q)));
         }
+
+        if(null != batchElement) {
+            String linger = batchElement.getAttributeValue(CONFIG_LINGER_ATT_Q);
+            if(null != linger) {
+                config.setBatchLinger(Integer.parseInt(linger));
+            }
+            config.setBatchMaxCount(intAttribute(batchElement, CONFIG_MAX_COUNT_ATT_Q, config.getBatchMaxCount()));
+            config.setBatchMinCount(intAttribute(batchElement, CONFIG_MIN_COUNT_ATT_Q, config.getBatchMinCount()));
+            config.setBatchAutoTuneEnabled(Boolean.parseBoolean(batchElement.getAttributeValue(CONFIG_AUTO_TUNE_ATT_Q)));
+            if(config.isBatchAutoTuneEnabled() && config.getBatchMinCount() > config.getBatchMaxCount()) {
+                throw new InvalidAgentConfigException("Minimum batch size is larger than the maximum.");
+            }
+            String maxBytes = batchElement.getAttributeValue(CONFIG_MAX_BYTES_ATT_Q);
+            if(null != maxBytes) {
+                config.setBatchMaxBytes(Long.parseLong(maxBytes));
+            }
+        }
+
+        if(null != retryElement) {
+            config.setMaxRetries(intAttribute(retryElement, CONFIG_MAX_RETRIES_ATT_Q, config.getMaxRetries()));
+            config.setRetryBaseDelay(intAttribute(retryElement, CONFIG_BASE_DELAY_ATT_Q, config.getRetryBaseDelay()));
+            config.setRetryMaxDelay(intAttribute(retryElement, CONFIG_MAX_DELAY_ATT_Q, config.getRetryMaxDelay()));
+        }
+
+        if(null != circuitBreakerElement) {
+            config.setCircuitBreakerThreshold(intAttribute(circuitBreakerElement, CONFIG_FAILURE_THRESHOLD_ATT_Q, config.getCircuitBreakerThreshold()));
+            config.setCircuitBreakerOpenTime(intAttribute(circuitBreakerElement, CONFIG_OPEN_TIME_ATT_Q, config.getCircuitBreakerOpenTime()));
+        }
+
+        if(null != deadLetterElement) {
+            config.setDeadLetterDirectory(deadLetterElement.getAttributeValue(CONFIG_DIRECTORY_ATT_Q));
+            String maxBytes = deadLetterElement.getAttributeValue(CONFIG_MAX_BYTES_ATT_Q);
+            if(null != maxBytes) {
+                config.setDeadLetterMaxBytes(Long.parseLong(maxBytes));
+            }
+        }
+
+        if(null != sendersElement) {
+            config.setMinSenderThreads(intAttribute(sendersElement, CONFIG_MIN_ATT_Q, config.getMinSenderThreads()));
+            config.setMaxSenderThreads(intAttribute(sendersElement, CONFIG_MAX_ATT_Q, config.getMaxSenderThreads()));
+            if(config.getMinSenderThreads() > config.getMaxSenderThreads()) {
+                throw new InvalidAgentConfigException("Minimum sender thread count is larger than the maximum.");
+            }
+            config.setVirtualThreadsEnabled(Boolean.parseBoolean(sendersElement.getAttributeValue(CONFIG_VIRTUAL_THREADS_ATT_Q)));
+            config.setMaxInFlight(intAttribute(sendersElement, CONFIG_MAX_IN_FLIGHT_ATT_Q, config.getMaxInFlight()));
+            config.setSenderPartitions(intAttribute(sendersElement, CONFIG_PARTITIONS_ATT_Q, config.getSenderPartitions()));
+            config.setEncoderThreads(intAttribute(sendersElement, CONFIG_ENCODER_THREADS_ATT_Q, config.getEncoderThreads()));
+        }
+
+        if(null != sinksElement) {
+            applySinkSettings(config, sinksElement);
+        }
+
+        if(null != recyclingElement) {
+            config.setRecyclingEnabled(true);
+            config.setRecyclingPoolSize(intAttribute(recyclingElement, CONFIG_POOL_SIZE_ATT_Q, config.getRecyclingPoolSize()));
+        }
+
+        if(null != ringElement) {
+            config.setRingSize(Integer.parseInt(ringElement.getAttributeValue(CONFIG_SIZE_ATT_Q)));
+        }
+
+        if(null != lazyValuesElement) {
+            config.setLazyValueMaxLength(Integer.parseInt(lazyValuesElement.getAttributeValue(CONFIG_MAX_LENGTH_ATT_Q)));
+        }
+
+        if(null != validationElement) {
+            config.setValidationMode(ValidationMode.valueOf(validationElement.getAttributeValue(CONFIG_MODE_ATT_Q).toUpperCase(Locale.ROOT)));
+            config.setValidationSampleInterval(intAttribute(validationElement, CONFIG_SAMPLE_INTERVAL_ATT_Q, config.getValidationSampleInterval()));
+        }
     }
 
-    private void applyKeyNameElementSettings(AgentConfig config, OMElement elementList, AgentConfig.KeyNameElementType type) {
-        Iterator i = elementList.getChildElements();
-        while(i.hasNext()){
-            OMElement element = (OMElement) i.next();
+    private void applySinkSettings(AgentConfig config, ConfigElement sinksElement) {
+        for(ConfigElement element : sinksElement.getChildren()) {
+            int queueSize = intAttribute(element, CONFIG_QUEUE_SIZE_ATT_Q, SinkConfig.DEFAULT_QUEUE_SIZE);
+            if(element.is(CONFIG_FILE_Q)) {
+                String maxFileBytes = element.getAttributeValue(CONFIG_MAX_FILE_BYTES_ATT_Q);
+                config.addSink(SinkConfig.file(element.getAttributeValue(CONFIG_DIRECTORY_ATT_Q),
+                        null == maxFileBytes ? SinkConfig.DEFAULT_MAX_FILE_BYTES : Long.parseLong(maxFileBytes),
+                        intAttribute(element, CONFIG_MAX_FILES_ATT_Q, SinkConfig.DEFAULT_MAX_FILES),
+                        queueSize));
+            } else if(element.is(CONFIG_SINK_Q)) {
+                config.addSink(SinkConfig.custom(element.getAttributeValue(CONFIG_CLASS_ATT_Q), queueSize));
+            }
+        }
+    }
+
+    private int intAttribute(ConfigElement element, QName attribute, int defaultValue) {
+        String value = element.getAttributeValue(attribute);
+        if(null == value) {
+            return defaultValue;
+        }
+        return Integer.parseInt(value);
+    }
+
+    private void applyKeyNameElementSettings(AgentConfig config, ConfigElement elementList, AgentConfig.KeyNameElementType type) {
+        // Collected first, the list copies its entries on every addition.
+        Map<String, String> entries = new HashMap<String, String>();
+        for(ConfigElement element : elementList.getChildren()){
             String key = element.getAttributeValue(CONFIG_KEY_ATT_Q);
             String name = element.getAttributeValue(CONFIG_NAME_ATT_Q);
 
-            if(config.get(type).entryExists(key)){
+            if(entries.containsKey(key) || config.get(type).entryExists(key)){
                 throw new InvalidAgentConfigException("Duplicate key: " + key + " for type: " + type.name());
             }
-            config.get(type).addEntry(key, name);
+            entries.put(key, name);
         }
+        config.get(type).addEntries(entries);
     }
 
-    private void applyOperationSettings(AgentConfig config, OMElement operationsElement) {
+    private void applyOperationSettings(AgentConfig config, ConfigElement operationsElement) {
         applyKeyNameElementSettings(config, operationsElement, AgentConfig.KeyNameElementType.OPERATIONS);
     }
 
-    private void applyPayloadTypeSettings(AgentConfig config, OMElement payloadTypeElement) {
+    private void applyPayloadTypeSettings(AgentConfig config, ConfigElement payloadTypeElement) {
         applyKeyNameElementSettings(config, payloadTypeElement, AgentConfig.KeyNameElementType.PAYLOADTYPES);
     }
 
-    private void applyApplicationSettings(AgentConfig config, OMElement applicationsElement) {
+    private void applyApplicationSettings(AgentConfig config, ConfigElement applicationsElement) {
         applyKeyNameElementSettings(config, applicationsElement, AgentConfig.KeyNameElementType.APPLICATIONS);
     }
 
-    private void applyIdTypeSettings(AgentConfig config, OMElement idTypesElement) {
+    private void applyIdTypeSettings(AgentConfig config, ConfigElement idTypesElement) {
         applyKeyNameElementSettings(config, idTypesElement, AgentConfig.KeyNameElementType.IDTYPES);
     }
 
-    private OMElement parseConfigElement(InputStream stream) {
+    /**
+     * Reads the config file, validating it against the XSD schema in the same pass.
+     *
+     * @param stream InputStream to config file.
+     * @return root element
+     */
+    private ConfigElement parseConfigElement(InputStream stream) {
         try {
-             return new StAXOMBuilder(stream).getDocumentElement();
-        } catch (XMLStreamException e) {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setSchema(schema());
+            ElementCollector collector = new ElementCollector();
+            factory.newSAXParser().parse(stream, collector);
+            return collector.root;
+        } catch (SAXException e) {
+            throw new InvalidAgentConfigException("Failed to validate logger config.", e);
+        } catch (IOException e) {
+            throw new InvalidAgentConfigException("Unable to read logger config.", e);
+        } catch (ParserConfigurationException e) {
             throw new InvalidAgentConfigException("Unable to read logger config.", e);
         }
     }
 
-    private ByteArrayInputStream convertToByteStream(InputStream stream) {
+    private void closeStream() {
         try {
-            //This is done in order to ensure the stream has all required capabilities such as reset
-            ByteArrayInputStream bais =  new ByteArrayInputStream(IOUtils.getStreamAsByteArray(stream));
-            stream.close();
-            return bais;
-        } catch(IOException e) {
-            throw new InvalidAgentConfigException("Could not convert logger config input stream to ByteArrayInputStream.", e);
+            this.stream.close();
+        } catch (IOException e) {
+            log.warn("Could not close logger config stream.", e);
         }
     }
 
-    private InputStream getStream() {
-        try {
-            stream.reset();
-            return stream;
-        } catch (IOException e) {
-            throw new InvalidAgentConfigException("Failed to reset() stream.", e);
+    /**
+     * Element of the config file with its attributes and child elements. The file has no text content.
+     */
+    private static final class ConfigElement {
+        private final String name;
+        private final Map<String, String> attributes;
+        private final List<ConfigElement> children = new ArrayList<ConfigElement>();
+
+        ConfigElement(String name, Map<String, String> attributes) {
+            this.name = name;
+            this.attributes = attributes;
+        }
+
+        boolean is(QName qName) {
+            return qName.getLocalPart().equals(name);
+        }
+
+        String getAttributeValue(QName attribute) {
+            return attributes.get(attribute.getLocalPart());
+        }
+
+        ConfigElement getFirstChildWithName(QName qName) {
+            for(ConfigElement child : children) {
+                if(child.is(qName)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        List<ConfigElement> getChildren() {
+            return children;
         }
     }
 
-    private void closeStream() {
-        try {
-            this.getStream().close();
-        } catch (IOException e) {
-            //This should happen just about never
-            throw new InvalidAgentConfigException("Could not close internal ByteArrayInputStream.", e);
+    /**
+     * Builds the element tree from SAX events and fails on the first schema violation.
+     */
+    private static final class ElementCollector extends DefaultHandler {
+        private final List<ConfigElement> open = new ArrayList<ConfigElement>();
+        private ConfigElement root;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            Map<String, String> attributes = 0 == atts.getLength()
+                    ? Collections.<String, String>emptyMap() : new HashMap<String, String>(atts.getLength() * 2);
+            for(int i = 0; i < atts.getLength(); i++) {
+                attributes.put(atts.getLocalName(i), atts.getValue(i));
+            }
+            ConfigElement element = new ConfigElement(localName, attributes);
+            if(open.isEmpty()) {
+                root = element;
+            } else {
+                open.get(open.size() - 1).children.add(element);
+            }
+            open.add(element);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            open.remove(open.size() - 1);
+        }
+
+        @Override
+        public void error(SAXParseException e) throws SAXException {
+            throw e;
         }
     }
 }
@@ -16,14 +16,48 @@
 
 package io.aino.agents.core.config;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Class for holding key-value pairs.
+ * Readers see an immutable map published through a volatile reference, additions replace the map.
  */
 public class KeyNameListConfig {
-    private Map<String, String> entries = new HashMap<String, String>();
+    private volatile Map<String, String> entries;
+    // Run after each addition, so that the owning configuration can publish the new keys.
+    private volatile Runnable changeListener;
+
+    /**
+     * Constructor for an empty list.
+     */
+    public KeyNameListConfig() {
+        this.entries = Collections.emptyMap();
+    }
+
+    private KeyNameListConfig(Map<String, String> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Copies this list.
+     *
+     * @return copy sharing the current, immutable, entries
+     */
+    KeyNameListConfig copy() {
+        return new KeyNameListConfig(this.entries);
+    }
+
+    /**
+     * Sets the listener run after entries are added.
+     *
+     * @param changeListener listener, or null for none
+     */
+    void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
 
     /**
      * Returns value based on key.
@@ -41,10 +75,15 @@ public class KeyNameListConfig {
      * @param value value
      */
     public void addEntry(String key, String value){
-        if(this.entryExists(key)) {
-            throw new InvalidAgentConfigException("key " + key + "already exists.");
+        synchronized (this) {
+            if(this.entryExists(key)) {
+                throw new InvalidAgentConfigException("key " + key + "already exists.");
+            }
+            Map<String, String> updated = new HashMap<String, String>(this.entries);
+            updated.put(key, value);
+            this.entries = Collections.unmodifiableMap(updated);
         }
-        this.entries.put(key, value);
+        changed();
     }
 
     /**
@@ -53,7 +92,19 @@ public class KeyNameListConfig {
      * @param operationsMap Map containing key-value pairs to be added.
      */
     public void addEntries(Map<String, String> operationsMap){
-        this.entries.putAll(operationsMap);
+        synchronized (this) {
+            Map<String, String> updated = new HashMap<String, String>(this.entries);
+            updated.putAll(operationsMap);
+            this.entries = Collections.unmodifiableMap(updated);
+        }
+        changed();
+    }
+
+    private void changed() {
+        Runnable listener = this.changeListener;
+        if(null != listener) {
+            listener.run();
+        }
     }
 
     /**
@@ -66,6 +117,15 @@ public class KeyNameListConfig {
         return this.entries.containsKey(key);
     }
 
+    /**
+     * Gets the keys.
+     *
+     * @return read-only set of the keys at the time of the call
+     */
+    public Set<String> getKeys() {
+        return this.entries.keySet();
+    }
+
     /**
      * Checks if value exists.
      *
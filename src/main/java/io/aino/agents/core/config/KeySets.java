@@ -0,0 +1,65 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core.config;
+
+import java.util.Set;
+
+/**
+ * Keys known to one version of an {@link AgentConfig}, for checking transactions against.
+ * Built once per configuration snapshot, so checks read no configuration state of their own.
+ */
+public final class KeySets {
+    private final Set<String> operations;
+    private final Set<String> applications;
+    private final Set<String> idTypes;
+
+    KeySets(KeyNameListConfig operations, KeyNameListConfig applications, KeyNameListConfig idTypes) {
+        this.operations = operations.getKeys();
+        this.applications = applications.getKeys();
+        this.idTypes = idTypes.getKeys();
+    }
+
+    /**
+     * Checks if an operation key is known.
+     *
+     * @param key operation key
+     * @return true if the key is known
+     */
+    public boolean operationExists(String key) {
+        return operations.contains(key);
+    }
+
+    /**
+     * Checks if an application key is known.
+     *
+     * @param key application key
+     * @return true if the key is known
+     */
+    public boolean applicationExists(String key) {
+        return applications.contains(key);
+    }
+
+    /**
+     * Checks if an id type key is known.
+     *
+     * @param key id type key
+     * @return true if the key is known
+     */
+    public boolean idTypeExists(String key) {
+        return idTypes.contains(key);
+    }
+}
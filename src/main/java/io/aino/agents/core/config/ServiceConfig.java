@@ -19,19 +19,64 @@ package io.aino.agents.core.config;
 import io.aino.agents.core.AgentCoreException;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Class for holding message sending related configuration.
  */
-class ServiceConfig {
+class ServiceConfig implements Cloneable {
 
     private boolean enabled = false;
     private boolean gzipEnabled = false;
-    private String addressUri;
+    private boolean bisectRejected = false;
+    private List<String> addressUris = Collections.emptyList();
     private String addressApiKey;
     private int sendInterval;
     private int sendSizeThreshold;
     private String proxyHost = null;
     private int proxyPort = 0;
+    private int maxRetries = 4;
+    private int retryBaseDelay = 1000;
+    private int retryMaxDelay = 60000;
+    private int circuitBreakerThreshold = 5;
+    private int circuitBreakerOpenTime = 30000;
+    private String deadLetterDirectory = null;
+    private long deadLetterMaxBytes = 100L * 1024 * 1024;
+    private int minSenderThreads = 1;
+    private int maxSenderThreads = 5;
+    private boolean virtualThreads = false;
+    private int maxInFlight = 16;
+    private int senderPartitions = 0;
+    private int encoderThreads = 0;
+    private int batchLinger = -1;
+    private int batchMaxCount = 1000;
+    private long batchMaxBytes = 1024L * 1024;
+    private boolean batchAutoTune = false;
+    private int batchMinCount = 10;
+    private boolean recycling = false;
+    private int recyclingPoolSize = 256;
+    private int ringSize = 0;
+    private int lazyValueMaxLength = 0;
+    private ValidationMode validationMode = ValidationMode.STRICT;
+    private int validationSampleInterval = 100;
+    private List<SinkConfig> sinks = new ArrayList<SinkConfig>();
+
+    /**
+     * Copies this configuration.
+     *
+     * @return copy that does not share mutable state with this one
+     */
+    ServiceConfig copy() {
+        try {
+            ServiceConfig copy = (ServiceConfig) super.clone();
+            copy.sinks = new ArrayList<SinkConfig>(sinks);
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AgentCoreException("Could not copy configuration.", e);
+        }
+    }
 
     /**
      * Checks if the agent is enabled.
@@ -49,28 +94,37 @@ class ServiceConfig {
      * @throws AgentCoreException if addressUri or apiKey is not set
      */
     public void setEnabled(boolean enabled) {
-        if(enabled && StringUtils.isAnyBlank(this.addressApiKey, this.addressUri)) {
+        if(enabled && StringUtils.isAnyBlank(this.addressApiKey, this.getAddressUri())) {
             throw new AgentCoreException("Cannot set logger to enabled, because address uri or apikey is missing.");
         }
         this.enabled = enabled;
     }
 
     /**
-     * Gets the address of aino.io API.
+     * Gets the first address of aino.io API.
      *
      * @return aino.io API address
      */
     String getAddressUri() {
-        return addressUri;
+        return addressUris.isEmpty() ? null : addressUris.get(0);
+    }
+
+    /**
+     * Gets all addresses of aino.io API.
+     *
+     * @return aino.io API addresses
+     */
+    List<String> getAddressUris() {
+        return addressUris;
     }
 
     /**
-     * Sets the address of aino.io API.
+     * Sets the addresses of aino.io API.
      *
-     * @param addressUri aino.io API address
+     * @param addressUris aino.io API addresses
      */
-    void setAddressUri(String addressUri) {
-        this.addressUri = addressUri;
+    void setAddressUris(List<String> addressUris) {
+        this.addressUris = Collections.unmodifiableList(new ArrayList<String>(addressUris));
     }
 
     /**
@@ -145,6 +199,24 @@ class ServiceConfig {
         this.gzipEnabled = gzipEnabled;
     }
 
+    /**
+     * Checks if batches rejected by the API should be split to find the invalid entries.
+     *
+     * @return true if enabled
+     */
+    boolean isBisectRejected() {
+        return bisectRejected;
+    }
+
+    /**
+     * Sets splitting of rejected batches to enabled or disabled.
+     *
+     * @param bisectRejected true to enable
+     */
+    void setBisectRejected(boolean bisectRejected) {
+        this.bisectRejected = bisectRejected;
+    }
+
     /**
      * Gets the address of an HTTP(S) proxy.
      *
@@ -188,4 +260,454 @@ class ServiceConfig {
     public boolean isProxyDefined() {
         return StringUtils.isNotBlank(getProxyHost());
     }
+
+    /**
+     * Gets the maximum number of send attempts for a batch.
+     *
+     * @return max retries
+     */
+    int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Sets the maximum number of send attempts for a batch.
+     *
+     * @param maxRetries max retries
+     */
+    void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Gets the base delay of retry backoff.
+     *
+     * @return base delay in milliseconds
+     */
+    int getRetryBaseDelay() {
+        return retryBaseDelay;
+    }
+
+    /**
+     * Sets the base delay of retry backoff.
+     *
+     * @param retryBaseDelay base delay in milliseconds
+     */
+    void setRetryBaseDelay(int retryBaseDelay) {
+        this.retryBaseDelay = retryBaseDelay;
+    }
+
+    /**
+     * Gets the maximum delay of retry backoff.
+     *
+     * @return max delay in milliseconds
+     */
+    int getRetryMaxDelay() {
+        return retryMaxDelay;
+    }
+
+    /**
+     * Sets the maximum delay of retry backoff.
+     *
+     * @param retryMaxDelay max delay in milliseconds
+     */
+    void setRetryMaxDelay(int retryMaxDelay) {
+        this.retryMaxDelay = retryMaxDelay;
+    }
+
+    /**
+     * Gets the number of consecutive failures that opens the circuit breaker.
+     *
+     * @return failure threshold
+     */
+    int getCircuitBreakerThreshold() {
+        return circuitBreakerThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failures that opens the circuit breaker.
+     *
+     * @param circuitBreakerThreshold failure threshold
+     */
+    void setCircuitBreakerThreshold(int circuitBreakerThreshold) {
+        this.circuitBreakerThreshold = circuitBreakerThreshold;
+    }
+
+    /**
+     * Gets the time the circuit breaker stays open before probing.
+     *
+     * @return open time in milliseconds
+     */
+    int getCircuitBreakerOpenTime() {
+        return circuitBreakerOpenTime;
+    }
+
+    /**
+     * Sets the time the circuit breaker stays open before probing.
+     *
+     * @param circuitBreakerOpenTime open time in milliseconds
+     */
+    void setCircuitBreakerOpenTime(int circuitBreakerOpenTime) {
+        this.circuitBreakerOpenTime = circuitBreakerOpenTime;
+    }
+
+    /**
+     * Gets the directory for undeliverable batches.
+     *
+     * @return directory path or null if not set
+     */
+    String getDeadLetterDirectory() {
+        return deadLetterDirectory;
+    }
+
+    /**
+     * Sets the directory for undeliverable batches.
+     *
+     * @param deadLetterDirectory directory path
+     */
+    void setDeadLetterDirectory(String deadLetterDirectory) {
+        this.deadLetterDirectory = deadLetterDirectory;
+    }
+
+    /**
+     * Gets the maximum disk usage of undeliverable batches.
+     *
+     * @return size in bytes
+     */
+    long getDeadLetterMaxBytes() {
+        return deadLetterMaxBytes;
+    }
+
+    /**
+     * Sets the maximum disk usage of undeliverable batches.
+     *
+     * @param deadLetterMaxBytes size in bytes
+     */
+    void setDeadLetterMaxBytes(long deadLetterMaxBytes) {
+        this.deadLetterMaxBytes = deadLetterMaxBytes;
+    }
+
+    /**
+     * Gets the additional sinks.
+     *
+     * @return sink configurations
+     */
+    List<SinkConfig> getSinks() {
+        return Collections.unmodifiableList(sinks);
+    }
+
+    /**
+     * Adds an additional sink.
+     *
+     * @param sink sink configuration
+     */
+    void addSink(SinkConfig sink) {
+        sinks.add(sink);
+    }
+
+    /**
+     * Gets the smallest number of sender threads.
+     *
+     * @return thread count
+     */
+    int getMinSenderThreads() {
+        return minSenderThreads;
+    }
+
+    /**
+     * Sets the smallest number of sender threads.
+     *
+     * @param minSenderThreads thread count
+     */
+    void setMinSenderThreads(int minSenderThreads) {
+        this.minSenderThreads = minSenderThreads;
+    }
+
+    /**
+     * Gets the largest number of sender threads.
+     *
+     * @return thread count
+     */
+    int getMaxSenderThreads() {
+        return maxSenderThreads;
+    }
+
+    /**
+     * Sets the largest number of sender threads.
+     *
+     * @param maxSenderThreads thread count
+     */
+    void setMaxSenderThreads(int maxSenderThreads) {
+        this.maxSenderThreads = maxSenderThreads;
+    }
+
+    /**
+     * Checks if senders run on virtual threads.
+     *
+     * @return true if virtual threads are used
+     */
+    boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Sets senders to run on virtual threads.
+     *
+     * @param virtualThreads true to use virtual threads
+     */
+    void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Gets the number of senders run on virtual threads.
+     *
+     * @return batch count
+     */
+    int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Sets the number of senders run on virtual threads.
+     *
+     * @param maxInFlight batch count
+     */
+    void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Gets the number of flow id partitions.
+     *
+     * @return partition count, 0 if partitioning is disabled
+     */
+    int getSenderPartitions() {
+        return senderPartitions;
+    }
+
+    /**
+     * Sets the number of flow id partitions.
+     *
+     * @param senderPartitions partition count
+     */
+    void setSenderPartitions(int senderPartitions) {
+        this.senderPartitions = senderPartitions;
+    }
+
+    /**
+     * Gets the number of threads encoding batches ahead of sending.
+     *
+     * @return thread count, 0 to encode on the sender threads
+     */
+    int getEncoderThreads() {
+        return encoderThreads;
+    }
+
+    /**
+     * Sets the number of threads encoding batches ahead of sending.
+     *
+     * @param encoderThreads thread count
+     */
+    void setEncoderThreads(int encoderThreads) {
+        this.encoderThreads = encoderThreads;
+    }
+
+    /**
+     * Gets the number of slots in the transaction ring.
+     *
+     * @return slot count, 0 if there is no ring
+     */
+    int getRingSize() {
+        return ringSize;
+    }
+
+    /**
+     * Sets the number of slots in the transaction ring.
+     *
+     * @param ringSize slot count
+     */
+    void setRingSize(int ringSize) {
+        this.ringSize = ringSize;
+    }
+
+    /**
+     * Gets the maximum length of lazily computed values.
+     *
+     * @return length in characters, 0 for no limit
+     */
+    int getLazyValueMaxLength() {
+        return lazyValueMaxLength;
+    }
+
+    /**
+     * Sets the maximum length of lazily computed values.
+     *
+     * @param lazyValueMaxLength length in characters
+     */
+    void setLazyValueMaxLength(int lazyValueMaxLength) {
+        this.lazyValueMaxLength = lazyValueMaxLength;
+    }
+
+    /**
+     * Gets how transactions are validated.
+     *
+     * @return validation mode
+     */
+    ValidationMode getValidationMode() {
+        return validationMode;
+    }
+
+    /**
+     * Sets how transactions are validated.
+     *
+     * @param validationMode validation mode
+     */
+    void setValidationMode(ValidationMode validationMode) {
+        this.validationMode = validationMode;
+    }
+
+    /**
+     * Gets how many transactions there are per validated one in sampled mode.
+     *
+     * @return interval
+     */
+    int getValidationSampleInterval() {
+        return validationSampleInterval;
+    }
+
+    /**
+     * Sets how many transactions there are per validated one in sampled mode.
+     *
+     * @param validationSampleInterval interval
+     */
+    void setValidationSampleInterval(int validationSampleInterval) {
+        this.validationSampleInterval = validationSampleInterval;
+    }
+
+    /**
+     * Checks if transactions are recycled.
+     *
+     * @return true if recycling is enabled
+     */
+    boolean isRecycling() {
+        return recycling;
+    }
+
+    /**
+     * Sets transactions to be recycled.
+     *
+     * @param recycling true to enable recycling
+     */
+    void setRecycling(boolean recycling) {
+        this.recycling = recycling;
+    }
+
+    /**
+     * Gets the number of recycled objects of each kind kept per thread.
+     *
+     * @return pool size
+     */
+    int getRecyclingPoolSize() {
+        return recyclingPoolSize;
+    }
+
+    /**
+     * Sets the number of recycled objects of each kind kept per thread.
+     *
+     * @param recyclingPoolSize pool size
+     */
+    void setRecyclingPoolSize(int recyclingPoolSize) {
+        this.recyclingPoolSize = recyclingPoolSize;
+    }
+
+    /**
+     * Gets the longest time a transaction waits for a batch to fill up.
+     *
+     * @return time in milliseconds, or -1 to use the send interval
+     */
+    int getBatchLinger() {
+        return batchLinger;
+    }
+
+    /**
+     * Sets the longest time a transaction waits for a batch to fill up.
+     *
+     * @param batchLinger time in milliseconds
+     */
+    void setBatchLinger(int batchLinger) {
+        this.batchLinger = batchLinger;
+    }
+
+    /**
+     * Gets the maximum number of transactions in one request.
+     *
+     * @return transaction count
+     */
+    int getBatchMaxCount() {
+        return batchMaxCount;
+    }
+
+    /**
+     * Sets the maximum number of transactions in one request.
+     *
+     * @param batchMaxCount transaction count
+     */
+    void setBatchMaxCount(int batchMaxCount) {
+        this.batchMaxCount = batchMaxCount;
+    }
+
+    /**
+     * Gets the maximum size of one request before compression.
+     *
+     * @return size in bytes
+     */
+    long getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
+
+    /**
+     * Sets the maximum size of one request before compression.
+     *
+     * @param batchMaxBytes size in bytes
+     */
+    void setBatchMaxBytes(long batchMaxBytes) {
+        this.batchMaxBytes = batchMaxBytes;
+    }
+
+    /**
+     * Checks if the batch size is tuned automatically.
+     *
+     * @return true if auto-tuning is enabled
+     */
+    boolean isBatchAutoTune() {
+        return batchAutoTune;
+    }
+
+    /**
+     * Sets the batch size to be tuned automatically.
+     *
+     * @param batchAutoTune true to enable auto-tuning
+     */
+    void setBatchAutoTune(boolean batchAutoTune) {
+        this.batchAutoTune = batchAutoTune;
+    }
+
+    /**
+     * Gets the smallest batch size used by auto-tuning.
+     *
+     * @return transaction count
+     */
+    int getBatchMinCount() {
+        return batchMinCount;
+    }
+
+    /**
+     * Sets the smallest batch size used by auto-tuning.
+     *
+     * @param batchMinCount transaction count
+     */
+    void setBatchMinCount(int batchMinCount) {
+        this.batchMinCount = batchMinCount;
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core.config;
+
+/**
+ * Configuration of an additional sink receiving a copy of every sent batch.
+ */
+public final class SinkConfig {
+
+    public enum Type {
+        /** Rolling files in a local directory. */
+        FILE,
+        /** Custom {@link io.aino.agents.core.ApiClient} implementation. */
+        CLASS
+    }
+
+    public static final int DEFAULT_QUEUE_SIZE = 100;
+    public static final long DEFAULT_MAX_FILE_BYTES = 10L * 1024 * 1024;
+    public static final int DEFAULT_MAX_FILES = 10;
+
+    private final Type type;
+    private final String target;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final int queueSize;
+
+    private SinkConfig(Type type, String target, long maxFileBytes, int maxFiles, int queueSize) {
+        if(null == target || target.isEmpty()) {
+            throw new InvalidAgentConfigException("Sink " + type + " needs a target.");
+        }
+        if(queueSize < 1) {
+            throw new InvalidAgentConfigException("Sink queue size must be positive.");
+        }
+        this.type = type;
+        this.target = target;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Creates configuration for a rolling file sink.
+     *
+     * @param directory directory to write the files to
+     * @param maxFileBytes size after which a new file is started
+     * @param maxFiles number of files to keep
+     * @param queueSize number of batches queued for the sink before the oldest is dropped
+     * @return sink configuration
+     */
+    public static SinkConfig file(String directory, long maxFileBytes, int maxFiles, int queueSize) {
+        return new SinkConfig(Type.FILE, directory, maxFileBytes, maxFiles, queueSize);
+    }
+
+    /**
+     * Creates configuration for a custom sink.
+     * The class must implement {@link io.aino.agents.core.ApiClient} and have a public constructor
+     * taking {@link AgentConfig} or no arguments.
+     *
+     * @param className fully qualified class name
+     * @param queueSize number of batches queued for the sink before the oldest is dropped
+     * @return sink configuration
+     */
+    public static SinkConfig custom(String className, int queueSize) {
+        return new SinkConfig(Type.CLASS, className, 0, 0, queueSize);
+    }
+
+    /**
+     * Gets the sink type.
+     *
+     * @return sink type
+     */
+    public Type getType() { return type; }
+
+    /**
+     * Gets the directory of a file sink, or the class name of a custom sink.
+     *
+     * @return directory or class name
+     */
+    public String getTarget() { return target; }
+
+    /**
+     * Gets the size after which a file sink starts a new file.
+     *
+     * @return size in bytes
+     */
+    public long getMaxFileBytes() { return maxFileBytes; }
+
+    /**
+     * Gets the number of files a file sink keeps.
+     *
+     * @return number of files
+     */
+    public int getMaxFiles() { return maxFiles; }
+
+    /**
+     * Gets the number of batches queued for the sink before the oldest is dropped.
+     *
+     * @return queue size
+     */
+    public int getQueueSize() { return queueSize; }
+}
@@ -0,0 +1,29 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core.config;
+
+/**
+ * How thoroughly transactions not built from key handles are validated when they are added.
+ */
+public enum ValidationMode {
+    /** Every transaction is validated. */
+    STRICT,
+    /** About one in {@link AgentConfig#getValidationSampleInterval()} transactions is validated. */
+    SAMPLED,
+    /** No transaction is validated. For trusted producers only, unknown keys are sent with empty names. */
+    OFF
+}
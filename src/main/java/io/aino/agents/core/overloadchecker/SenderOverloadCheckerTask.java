@@ -16,22 +16,29 @@
 
 package io.aino.agents.core.overloadchecker;
 
+import io.aino.agents.core.AgentMetrics;
 import io.aino.agents.core.TransactionDataBuffer;
 import io.aino.agents.core.config.AgentConfig;
 
-import java.util.TimerTask;
-
 /**
- * Timer task to check if send queue is well above size threshold.
- * If buffer size is more than 30% bigger than the size threshold, increase sending threads.
- * This is necessary when system is generating lots of messages and connection to aino.io is slow:
- * send buffer size increases and transactions get bigger... which leads bigger and bigger HTTP post requests.
+ * Periodic task scaling the number of sender threads to the load.
+ *
+ * Each sender moves about one batch of size threshold entries per request. The number of senders needed is
+ * estimated from the average arrival rate and send latency. In addition, if the average queue depth is more
+ * than 30% bigger than the size threshold, a thread is added: otherwise batches get bigger and bigger, which
+ * leads to bigger and bigger HTTP post requests.
+ * Threads are added or retired one at a time, between the configured minimum and maximum.
  */
-public class SenderOverloadCheckerTask extends TimerTask {
+public class SenderOverloadCheckerTask implements Runnable {
+
+    static final double OVERLOAD_FACTOR = 1.3;
 
     private final TransactionDataBuffer buffer;
     private final AgentConfig config;
+    private final AgentMetrics metrics;
     private ThreadAmountObserver observer;
+    // Threads asked for so far, for observers that do not tell their thread count.
+    private int requestedThreads;
 
     /**
      * Constructor.
@@ -40,19 +47,59 @@ public class SenderOverloadCheckerTask extends TimerTask {
      * @param config agent configuration
      */
     public SenderOverloadCheckerTask(ThreadAmountObserver obs, TransactionDataBuffer buffer, AgentConfig config) {
+        this(obs, buffer, config, new AgentMetrics());
+    }
+
+    /**
+     * Constructor.
+     * @param obs observer to pass the info on queue state
+     * @param buffer buffer to check
+     * @param config agent configuration
+     * @param metrics metrics to sample and base the decisions on
+     */
+    public SenderOverloadCheckerTask(ThreadAmountObserver obs, TransactionDataBuffer buffer, AgentConfig config, AgentMetrics metrics) {
         this.buffer = buffer;
         this.config = config;
         this.observer = obs;
+        this.metrics = metrics;
+        this.requestedThreads = config.getMinSenderThreads();
     }
 
     @Override
     public void run() {
-        if(buffer.isEmpty() || config.getSizeThreshold() <= 1)
-            return;
+        int current = senderThreadCount();
+        metrics.sample(buffer.getSize(), buffer.getAddedCount(), current);
 
-        if(config.getSizeThreshold() < buffer.getSize() * 1.3) {
+        int wanted = Math.max(config.getMinSenderThreads(), Math.min(config.getMaxSenderThreads(), wantedThreads(current)));
+        if(wanted > current) {
             observer.increaseThreads();
+            requestedThreads = current + 1;
+        } else if(wanted < current) {
+            observer.decreaseThreads();
+            requestedThreads = current - 1;
+        }
+    }
+
+    private int senderThreadCount() {
+        if(observer instanceof ThreadCountAwareObserver) {
+            return ((ThreadCountAwareObserver) observer).getSenderThreadCount();
+        }
+        return requestedThreads;
+    }
+
+    private int wantedThreads(int current) {
+        int batchSize = Math.max(1, metrics.getBatchSize() > 0 ? metrics.getBatchSize() : config.getSizeThreshold());
+        if(metrics.getQueueDepth() > batchSize * OVERLOAD_FACTOR) {
+            return current + 1;
+        }
+
+        double latencySeconds = metrics.getSendLatency() / 1000;
+        int wanted = (int) Math.ceil(metrics.getArrivalRate() * latencySeconds / batchSize);
+        if(wanted < current && metrics.getQueueDepth() > batchSize) {
+            // Keep the threads while there is still a backlog.
+            return current;
         }
+        return wanted;
     }
 
 }
@@ -25,6 +25,10 @@ public interface ThreadAmountObserver {
      * Increase sender threads by one.
      */
     void increaseThreads();
+
+    /**
+     * Decrease sender threads by one.
+     */
     void decreaseThreads();
 
 }
@@ -0,0 +1,152 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core.validators;
+
+import io.aino.agents.core.AgentCoreException;
+import io.aino.agents.core.Transaction;
+import io.aino.agents.core.config.AgentConfig;
+import io.aino.agents.core.config.KeySets;
+import io.aino.agents.core.config.ValidationMode;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The checks of {@link OperationValidator}, {@link IdTypeValidator} and {@link ApplicationValidator}
+ * in one pass, reporting failures as {@link ValidationResult} codes instead of exceptions.
+ * How many transactions are checked depends on the {@link ValidationMode} at construction.
+ */
+public final class CompiledValidator implements TransactionValidator {
+
+    private final ValidationMode mode;
+    private final int sampleInterval;
+    // Keys are looked up in the key sets of the current configuration snapshot, so added and reloaded keys are known.
+    private final AgentConfig config;
+
+    /**
+     * Constructor.
+     *
+     * @param config agent configuration
+     */
+    public CompiledValidator(AgentConfig config) {
+        this.mode = config.getValidationMode();
+        this.sampleInterval = config.getValidationSampleInterval();
+        this.config = config;
+    }
+
+    /**
+     * Validates a transaction as far as the mode requires.
+     *
+     * @param entry log entry to validate
+     * @return {@link ValidationResult#VALID}, also for transactions the mode skips
+     */
+    public ValidationResult check(Transaction entry) {
+        switch (mode) {
+            case OFF:
+                return ValidationResult.VALID;
+            case SAMPLED:
+                if(sampleInterval > 1 && 0 != ThreadLocalRandom.current().nextInt(sampleInterval)) {
+                    return ValidationResult.VALID;
+                }
+                return checkAll(entry);
+            default:
+                return checkAll(entry);
+        }
+    }
+
+    /**
+     * Validates a transaction regardless of the mode.
+     *
+     * @param entry log entry to validate
+     * @return first failure in the order of the separate validators, or {@link ValidationResult#VALID}
+     */
+    public ValidationResult checkAll(Transaction entry) {
+        KeySets keys = config.getKeySets();
+        String operationKey = entry.getOperationKey();
+        if(null != operationKey && !keys.operationExists(operationKey)) {
+            return ValidationResult.UNKNOWN_OPERATION;
+        }
+        if(null != unknownIdType(keys, entry)) {
+            return ValidationResult.UNKNOWN_ID_TYPE;
+        }
+        String fromKey = entry.getFromKey();
+        if(StringUtils.isBlank(fromKey)) {
+            return ValidationResult.MISSING_FROM;
+        }
+        String toKey = entry.getToKey();
+        if(StringUtils.isBlank(toKey)) {
+            return ValidationResult.MISSING_TO;
+        }
+        if(!keys.applicationExists(fromKey)) {
+            return ValidationResult.UNKNOWN_FROM;
+        }
+        if(!keys.applicationExists(toKey)) {
+            return ValidationResult.UNKNOWN_TO;
+        }
+        return ValidationResult.VALID;
+    }
+
+    /**
+     * Validates a transaction as far as the mode requires.
+     *
+     * @param entry log entry to validate
+     * @throws AgentCoreException when validation fails
+     */
+    @Override
+    public void validate(Transaction entry) {
+        ValidationResult result = check(entry);
+        if(!result.isValid()) {
+            throw toException(entry, result);
+        }
+    }
+
+    /**
+     * Creates the exception the separate validators throw for a failure.
+     *
+     * @param entry transaction that failed validation
+     * @param result failure
+     * @return exception naming the offending key
+     */
+    public AgentCoreException toException(Transaction entry, ValidationResult result) {
+        switch (result) {
+            case UNKNOWN_FROM:
+                return new AgentCoreException(result.getMessage() + entry.getFromKey());
+            case UNKNOWN_TO:
+                return new AgentCoreException(result.getMessage() + entry.getToKey());
+            case UNKNOWN_OPERATION:
+                return new AgentCoreException(result.getMessage() + entry.getOperationKey());
+            case UNKNOWN_ID_TYPE:
+                return new AgentCoreException(result.getMessage() + unknownIdType(config.getKeySets(), entry));
+            default:
+                return new AgentCoreException(result.getMessage());
+        }
+    }
+
+    private String unknownIdType(KeySets keys, Transaction entry) {
+        for(String typeKey : entry.getIdTypeKeys()) {
+            if(!keys.idTypeExists(typeKey)) {
+                return typeKey;
+            }
+        }
+        for(String typeKey : entry.getNumericIdTypeKeys()) {
+            if(!keys.idTypeExists(typeKey)) {
+                return typeKey;
+            }
+        }
+        return null;
+    }
+}
@@ -20,9 +20,6 @@ import io.aino.agents.core.Transaction;
 import io.aino.agents.core.config.AgentConfig;
 import io.aino.agents.core.AgentCoreException;
 
-import java.util.List;
-import java.util.Map;
-
 /**
  * Validator for {@link Transaction} id types.
  * Checks that log entry's id types are configured to the agent.
@@ -43,10 +40,17 @@ public class IdTypeValidator implements TransactionValidator {
     @Override
     public void validate(Transaction entry) {
 
-        for(Map.Entry<String, List<String>> val : entry.getIds().entrySet()) {
-            if(!config.getIdTypes().entryExists(val.getKey())) {
-                throw new AgentCoreException("IdType not found: " + val.getKey());
-            }
+        for(String typeKey : entry.getIdTypeKeys()) {
+            validateIdType(typeKey);
+        }
+        for(String typeKey : entry.getNumericIdTypeKeys()) {
+            validateIdType(typeKey);
+        }
+    }
+
+    private void validateIdType(String typeKey) {
+        if(!config.getIdTypes().entryExists(typeKey)) {
+            throw new AgentCoreException("IdType not found: " + typeKey);
         }
     }
 }
@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core.validators;
+
+import io.aino.agents.core.Transaction;
+
+/**
+ * Outcome of validating a {@link Transaction}.
+ * The constants are shared, so a failed validation costs no allocation.
+ * {@link CompiledValidator#toException(Transaction, ValidationResult)} turns a failure into an exception when one is needed.
+ */
+public enum ValidationResult {
+    VALID("valid"),
+    MISSING_FROM("from does not exist!"),
+    MISSING_TO("to does not exist!"),
+    UNKNOWN_FROM("from application does not exist: "),
+    UNKNOWN_TO("to application does not exist: "),
+    UNKNOWN_OPERATION("Operation does not exist: "),
+    UNKNOWN_ID_TYPE("IdType not found: ");
+
+    private final String message;
+
+    ValidationResult(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Checks if the transaction passed validation.
+     *
+     * @return true for {@link #VALID}
+     */
+    public boolean isValid() {
+        return VALID == this;
+    }
+
+    /**
+     * Gets a description of the failure.
+     *
+     * @return message
+     */
+    public String getMessage() {
+        return message;
+    }
+}
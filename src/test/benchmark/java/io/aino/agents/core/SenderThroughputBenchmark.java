@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.aino.agents.core.config.AgentConfig;
+import io.aino.agents.core.config.AgentConfigBuilder;
+import io.aino.agents.core.config.FileConfigBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares sending throughput on the shared executor and on virtual threads against a local endpoint
+ * that answers every request after a fixed delay. Run with {@code mvn test -P benchmark}.
+ */
+public class SenderThroughputBenchmark {
+    private static final int LATENCY = 100;
+    private static final int TRANSACTIONS = 500;
+    private static final long TIMEOUT = 120000;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private final AtomicInteger received = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/api", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String body = new String(readAll(exchange.getRequestBody()));
+                try {
+                    Thread.sleep(LATENCY);
+                } catch (InterruptedException ignored) { }
+                received.addAndGet(StringUtils.countMatches(body, "\"status\""));
+                exchange.sendResponseHeaders(202, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    public void benchmarkSharedExecutorAgainstVirtualThreads() throws Exception {
+        report("shared executor, 5 senders", run(false));
+        String virtual = VirtualThreads.isAvailable() ? "virtual threads, 64 in flight"
+                : "virtual threads requested, not available on this JVM";
+        report(virtual, run(true));
+    }
+
+    private double run(boolean virtualThreads) throws Exception {
+        final AgentConfig config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+        config.setLogServiceUri("http://127.0.0.1:" + server.getAddress().getPort() + "/api");
+        config.setGzipEnabled(false);
+        config.setSizeThreshold(1);
+        config.setSendInterval(10);
+        config.setMinSenderThreads(5);
+        config.setMaxSenderThreads(5);
+        config.setVirtualThreadsEnabled(virtualThreads);
+        config.setMaxInFlight(64);
+
+        Agent agent = Agent.getFactory().setConfigurationBuilder(new AgentConfigBuilder() {
+            @Override
+            public AgentConfig build() {
+                return config;
+            }
+        }).build();
+
+        received.set(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            Transaction transaction = agent.newTransaction();
+            transaction.setFromKey("app01");
+            transaction.setToKey("app02");
+            transaction.setStatus("success");
+            agent.addTransaction(transaction);
+        }
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (received.get() < TRANSACTIONS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        agent.stop();
+
+        assertEquals("all transactions should be delivered", TRANSACTIONS, received.get());
+        return TRANSACTIONS / seconds;
+    }
+
+    private static void report(String mode, double throughput) {
+        System.out.println(String.format("%-55s %8.1f transactions/s (endpoint latency %d ms)", mode, throughput, LATENCY));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
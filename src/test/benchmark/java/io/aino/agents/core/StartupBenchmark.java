@@ -0,0 +1,85 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import io.aino.agents.core.config.AgentConfigBuilder;
+import io.aino.agents.core.config.ClasspathResourceConfigBuilder;
+import io.aino.agents.core.config.FileConfigBuilder;
+import org.junit.Test;
+
+import java.io.File;
+
+/**
+ * Measures the time to read the configuration and to create an agent, the first time and once warmed up.
+ * The first build includes class loading, which dominates in short-lived processes. Run with {@code mvn test -P benchmark}.
+ */
+public class StartupBenchmark {
+    private static final int ROUNDS = 200;
+    private static final File CONFIG_FILE = new File("src/test/resources/validConfig.xml");
+    private static final String CONFIG_RESOURCE = "validConfig.xml";
+
+    @Test
+    public void benchmarkStartup() throws Exception {
+        report("file config, first", 1, new Builders() {
+            @Override
+            AgentConfigBuilder next() throws Exception {
+                return new FileConfigBuilder(CONFIG_FILE);
+            }
+        }, false);
+        report("agent from classpath config, first", 1, new Builders() {
+            @Override
+            AgentConfigBuilder next() {
+                return new ClasspathResourceConfigBuilder(CONFIG_RESOURCE);
+            }
+        }, true);
+        report("file config", ROUNDS, new Builders() {
+            @Override
+            AgentConfigBuilder next() throws Exception {
+                return new FileConfigBuilder(CONFIG_FILE);
+            }
+        }, false);
+        report("classpath config", ROUNDS, new Builders() {
+            @Override
+            AgentConfigBuilder next() {
+                return new ClasspathResourceConfigBuilder(CONFIG_RESOURCE);
+            }
+        }, false);
+        report("agent from classpath config", ROUNDS, new Builders() {
+            @Override
+            AgentConfigBuilder next() {
+                return new ClasspathResourceConfigBuilder(CONFIG_RESOURCE);
+            }
+        }, true);
+    }
+
+    private void report(String mode, int rounds, Builders builders, boolean agent) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            if (agent) {
+                Agent.getFactory().setConfigurationBuilder(builders.next()).build().stop(0);
+            } else {
+                builders.next().build();
+            }
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / rounds;
+        System.out.println(String.format("%-52s %8.2f ms/build", mode, millis));
+    }
+
+    private abstract static class Builders {
+        abstract AgentConfigBuilder next() throws Exception;
+    }
+}
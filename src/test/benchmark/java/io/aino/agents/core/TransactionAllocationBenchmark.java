@@ -0,0 +1,194 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import io.aino.agents.core.config.AgentConfig;
+import io.aino.agents.core.config.FileConfigBuilder;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Measures heap allocated per transaction when building a {@link Transaction} and its
+ * {@link TransactionSerializable}, and when serializing transactions with large id lists. Run with {@code mvn test -P benchmark}.
+ */
+public class TransactionAllocationBenchmark {
+    private static final int WARMUP = 200000;
+    private static final int TRANSACTIONS = 1000000;
+    private static final int LARGE_ID_COUNT = 5000;
+    private static final int LARGE_ID_ROUNDS = 500;
+    private static final String[] METADATA_KEYS = new String[20];
+    static {
+        for (int i = 0; i < METADATA_KEYS.length; i++) {
+            METADATA_KEYS[i] = "key" + i;
+        }
+    }
+
+    private AgentConfig config;
+    private final List<String> orderIds = Arrays.asList("123456", "123457");
+    private long sink;
+
+    @Test
+    public void benchmarkAllocationPerTransaction() throws Exception {
+        config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+        com.sun.management.ThreadMXBean threads = threadMXBean();
+        assumeTrue(threads != null && threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        report("bare transaction", threads, 0, false, null);
+        report("ids and 2 metadata entries", threads, 2, false, null);
+        report("ids and 20 metadata entries", threads, 20, false, null);
+        report("ids and 2 metadata entries, serializable", threads, 2, true, null);
+        config.setRecyclingEnabled(true);
+        report("ids and 2 metadata entries, serializable, recycled", threads, 2, true, new TransactionPool(config));
+        reportRing("ids and 2 metadata entries, ring", threads, 2);
+    }
+
+    private void reportRing(String mode, com.sun.management.ThreadMXBean threads, int metadataEntries) {
+        config.setRingSize(1024);
+        TransactionRing ring = new TransactionRing(config, new io.aino.agents.core.validators.CompiledValidator(config));
+        long[] ids = { 123456, 123457 };
+        runRing(ring, WARMUP, metadataEntries, ids);
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        runRing(ring, TRANSACTIONS, metadataEntries, ids);
+        double nanos = (System.nanoTime() - start) / (double) TRANSACTIONS;
+        double bytes = (threads.getThreadAllocatedBytes(threadId) - before) / (double) TRANSACTIONS;
+        System.out.println(String.format("%-52s %8.1f bytes/transaction %8.1f ns/transaction", mode, bytes, nanos));
+    }
+
+    private void runRing(TransactionRing ring, int count, int metadataEntries, long[] ids) {
+        for (int i = 0; i < count; i++) {
+            long sequence = ring.claim();
+            Transaction transaction = ring.get(sequence);
+            transaction.setFromKey("app01");
+            transaction.setToKey("app02");
+            transaction.setStatus("success");
+            transaction.addIdsByTypeKey("dataType01", ids);
+            for (int j = 0; j < metadataEntries; j++) {
+                transaction.addMetadata(METADATA_KEYS[j], "value");
+            }
+            ring.publish(sequence);
+            if (ring.getSize() >= 512) {
+                // What the sender does, and the context once the batch has been acknowledged.
+                for (TransactionSerializable entry : ring.drainEntries(512, Long.MAX_VALUE)) {
+                    sink += entry.getSize();
+                    entry.owner.release(entry);
+                }
+            }
+        }
+    }
+
+    private void report(String mode, com.sun.management.ThreadMXBean threads, int metadataEntries, boolean serialize,
+                        TransactionPool pool) {
+        run(WARMUP, metadataEntries, serialize, pool);
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        run(TRANSACTIONS, metadataEntries, serialize, pool);
+        double nanos = (System.nanoTime() - start) / (double) TRANSACTIONS;
+        double bytes = (threads.getThreadAllocatedBytes(threadId) - before) / (double) TRANSACTIONS;
+        System.out.println(String.format("%-52s %8.1f bytes/transaction %8.1f ns/transaction", mode, bytes, nanos));
+    }
+
+    private void run(int count, int metadataEntries, boolean serialize, TransactionPool pool) {
+        for (int i = 0; i < count; i++) {
+            Transaction transaction = null == pool ? new Transaction(config) : pool.transaction();
+            transaction.setFromKey("app01");
+            transaction.setToKey("app02");
+            transaction.setStatus("success");
+            if (metadataEntries > 0) {
+                transaction.addIdsByTypeKey("dataType01", orderIds);
+                for (int j = 0; j < metadataEntries; j++) {
+                    transaction.addMetadata(METADATA_KEYS[j], "value");
+                }
+            }
+            if (null != pool) {
+                // What the agent does on add and once the batch has been acknowledged.
+                TransactionSerializable entry = TransactionSerializable.from(transaction, pool.entry());
+                pool.release(transaction);
+                sink += entry.getSize();
+                entry.owner.release(entry);
+            } else {
+                sink += serialize ? TransactionSerializable.from(transaction).getSize() : transaction.getMetadata().size();
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkAllocationForLargeIdLists() throws Exception {
+        config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+        com.sun.management.ThreadMXBean threads = threadMXBean();
+        assumeTrue(threads != null && threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        long[] numericIds = new long[LARGE_ID_COUNT];
+        List<String> stringIds = new ArrayList<String>(LARGE_ID_COUNT);
+        for (int i = 0; i < LARGE_ID_COUNT; i++) {
+            numericIds[i] = 100000000L + i;
+            stringIds.add(String.valueOf(numericIds[i]));
+        }
+        TransactionDataBuffer buffer = new TransactionDataBuffer(1);
+        reportLargeIds("5000 string ids, serialized", threads, buffer, stringIds, null);
+        reportLargeIds("5000 numeric ids, serialized", threads, buffer, null, numericIds);
+    }
+
+    private void reportLargeIds(String mode, com.sun.management.ThreadMXBean threads, TransactionDataBuffer buffer,
+                                List<String> stringIds, long[] numericIds) throws Exception {
+        runLargeIds(LARGE_ID_ROUNDS, buffer, stringIds, numericIds);
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        runLargeIds(LARGE_ID_ROUNDS, buffer, stringIds, numericIds);
+        double micros = (System.nanoTime() - start) / 1e3 / LARGE_ID_ROUNDS;
+        double kilobytes = (threads.getThreadAllocatedBytes(threadId) - before) / 1024.0 / LARGE_ID_ROUNDS;
+        System.out.println(String.format("%-52s %8.1f kB/transaction %8.1f us/transaction", mode, kilobytes, micros));
+    }
+
+    private void runLargeIds(int count, TransactionDataBuffer buffer, List<String> stringIds, long[] numericIds)
+            throws Exception {
+        for (int i = 0; i < count; i++) {
+            Transaction transaction = new Transaction(config);
+            transaction.setFromKey("app01");
+            transaction.setToKey("app02");
+            if (null != numericIds) {
+                // Numeric ids come from the application as numbers, turning them to strings is part of the cost.
+                transaction.addIdsByTypeKey("dataType01", numericIds);
+            } else {
+                List<String> ids = new ArrayList<String>(stringIds.size());
+                for (int j = 0; j < LARGE_ID_COUNT; j++) {
+                    ids.add(String.valueOf(100000000L + j));
+                }
+                transaction.addIdsByTypeKey("dataType01", ids);
+            }
+            sink += buffer.serialize(Collections.singletonList(TransactionSerializable.from(transaction))).length();
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) threads : null;
+    }
+}
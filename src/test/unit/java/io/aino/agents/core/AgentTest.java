@@ -18,15 +18,32 @@ package io.aino.agents.core;
 
 import static org.junit.Assert.*;
 
+import com.sun.jersey.api.client.ClientHandlerException;
+import io.aino.agents.core.config.AgentConfig;
+import io.aino.agents.core.config.AgentConfigBuilder;
 import io.aino.agents.core.config.FileConfigBuilder;
 import io.aino.agents.core.config.InvalidAgentConfigException;
+import io.aino.agents.core.validators.ValidationResult;
 import org.junit.*;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class AgentTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void setUp() throws Exception {
     }
@@ -60,4 +77,406 @@ public class AgentTest {
         assertEquals("thread count", agent.getSenderThreadCount(), 0);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testThreadsAreRetiredDownToMinimum() throws Exception {
+        Agent agent = Agent.getFactory().setConfigurationBuilder(new FileConfigBuilder(new File("src/test/resources/validConfig.xml"))).build();
+        agent.getAgentConfig().setMaxSenderThreads(2);
+
+        agent.increaseThreads();
+        agent.increaseThreads();
+        assertEquals("thread count is bounded by maximum", 2, agent.getSenderThreadCount());
+
+        agent.decreaseThreads();
+        agent.decreaseThreads();
+        assertEquals("thread count is bounded by minimum", 1, agent.getSenderThreadCount());
+
+        agent.shutdown();
+        assertEquals("thread count", 0, agent.getSenderThreadCount());
+    }
+
+    @Test
+    public void testFlushSendsWithoutWaitingForFullBatch() throws Exception {
+        InMemoryApiClient client = new InMemoryApiClient();
+        Agent agent = Agent.getFactory().setConfigurationBuilder(new FileConfigBuilder(new File("src/test/resources/validConfig.xml")))
+                .setApiClient(client).build();
+        agent.getAgentConfig().setSizeThreshold(100);
+        agent.getAgentConfig().setBatchLinger(60000);
+
+        for(int i = 0; i < 3; i++) {
+            agent.addTransaction(newTransaction(agent));
+        }
+        assertTrue("flush should complete", agent.flush(5000).get(5, TimeUnit.SECONDS));
+        assertEquals("transactions should be sent in one batch", 1, client.getBatches().size());
+        assertEquals("transactions should be delivered", 3, agent.getMetrics().getDeliveredTransactions());
+
+        ShutdownReport report = agent.stop(1000);
+        assertEquals("report should count delivered transactions", 3, report.getDelivered());
+    }
+
+    @Test
+    public void testStopSpillsWhatCannotBeSentInTime() throws Exception {
+        final File deadLetterDirectory = folder.newFolder();
+        Agent agent = Agent.getFactory().setConfigurationBuilder(new AgentConfigBuilder() {
+            @Override
+            public AgentConfig build() {
+                try {
+                    AgentConfig config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+                    config.setDeadLetterDirectory(deadLetterDirectory.getAbsolutePath());
+                    config.setMaxRetries(100);
+                    return config;
+                } catch (FileNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }).setApiClient(new ApiClient() {
+            @Override
+            public ApiResponse send(byte[] data) {
+                throw new ClientHandlerException("Connection refused");
+            }
+        }).build();
+
+        for(int i = 0; i < 5; i++) {
+            agent.addTransaction(newTransaction(agent));
+        }
+        long start = System.currentTimeMillis();
+        ShutdownReport report = agent.stop(1000);
+
+        assertTrue("stop should respect the timeout", System.currentTimeMillis() - start < 2000);
+        assertEquals("nothing should be delivered", 0, report.getDelivered());
+        assertEquals("everything should be spilled", 5, report.getSpilled());
+        assertEquals("nothing should be dropped", 0, report.getDropped());
+        assertEquals("nothing should be in flight", 0, report.getInFlight());
+        assertTrue("spilled batches should be stored", deadLetterDirectory.list().length > 0);
+    }
+
+    @Test
+    public void testAsyncTransactionIsCompletedAndListenerCalledOncePerBatch() throws Exception {
+        InMemoryApiClient client = new InMemoryApiClient();
+        Agent agent = Agent.getFactory().setConfigurationBuilder(new FileConfigBuilder(new File("src/test/resources/validConfig.xml")))
+                .setApiClient(client).build();
+        agent.getAgentConfig().setSizeThreshold(3);
+        agent.getAgentConfig().setBatchLinger(60000);
+        CountingListener listener = new CountingListener();
+        agent.addBatchListener(listener);
+
+        agent.addTransaction(newTransaction(agent));
+        agent.addTransaction(newTransaction(agent));
+        Future<DeliveryOutcome> delivery = agent.addTransactionAsync(newTransaction(agent));
+
+        assertEquals("transaction should be delivered", DeliveryOutcome.DELIVERED, delivery.get(5, TimeUnit.SECONDS));
+        assertEquals("listener should be called once for the batch", 1, listener.sent);
+        assertEquals("listener should get the batch size", 3, listener.transactions);
+        agent.stop(1000);
+    }
+
+    @Test
+    public void testAsyncTransactionRejectedByApiIsDropped() throws Exception {
+        Agent agent = Agent.getFactory().setConfigurationBuilder(new FileConfigBuilder(new File("src/test/resources/validConfig.xml")))
+                .setApiClient(new ApiClient() {
+                    @Override
+                    public ApiResponse send(byte[] data) {
+                        return new ApiResponse() {
+                            @Override
+                            public int getStatus() { return 400; }
+
+                            @Override
+                            public String getPayload() { return "Bad Request"; }
+                        };
+                    }
+                }).build();
+        CountingListener listener = new CountingListener();
+        agent.addBatchListener(listener);
+
+        Future<DeliveryOutcome> delivery = agent.addTransactionAsync(newTransaction(agent));
+
+        assertEquals("transaction should be dropped", DeliveryOutcome.DROPPED, delivery.get(5, TimeUnit.SECONDS));
+        assertEquals("listener should be told", 1, listener.dropped);
+        agent.stop(1000);
+    }
+
+    @Test
+    public void testPartitionedSendersKeepEachFlowInOrder() throws Exception {
+        InMemoryApiClient client = new InMemoryApiClient();
+        Agent agent = Agent.getFactory().setConfigurationBuilder(new AgentConfigBuilder() {
+            @Override
+            public AgentConfig build() {
+                try {
+                    AgentConfig config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+                    config.setSenderPartitions(3);
+                    config.setGzipEnabled(false);
+                    config.setBatchMaxCount(4);
+                    return config;
+                } catch (FileNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }).setApiClient(client).build();
+        assertEquals("one sender per partition", 3, agent.getSenderThreadCount());
+        agent.increaseThreads();
+        assertEquals("partitioned sender count is fixed", 3, agent.getSenderThreadCount());
+
+        String[] flows = { "flow-a", "flow-b", "flow-c", "flow-d" };
+        for(int i = 0; i < 20; i++) {
+            for(String flow : flows) {
+                Transaction transaction = newTransaction(agent);
+                transaction.setFlowId(flow);
+                transaction.setMessage(flow + "#" + i);
+                agent.addTransaction(transaction);
+            }
+        }
+        assertTrue("flush should complete", agent.flush(5000).get());
+
+        Map<String, Integer> lastSeen = new HashMap<String, Integer>();
+        Matcher matcher = Pattern.compile("(flow-\\w)#(\\d+)").matcher("");
+        for(byte[] batch : client.getBatches()) {
+            matcher.reset(new String(batch));
+            while(matcher.find()) {
+                int sequence = Integer.parseInt(matcher.group(2));
+                Integer previous = lastSeen.put(matcher.group(1), sequence);
+                assertEquals(matcher.group(1) + " should arrive in order", null == previous ? 0 : previous + 1, sequence);
+            }
+        }
+        assertEquals("all flows should be sent", flows.length, lastSeen.size());
+        agent.stop(1000);
+    }
+
+    @Test
+    public void testTemplateTransactionsUseResolvedNames() throws Exception {
+        InMemoryApiClient client = new InMemoryApiClient();
+        Agent agent = Agent.getFactory().setConfigurationBuilder(new FileConfigBuilder(new File("src/test/resources/validConfig.xml")))
+                .setApiClient(client).build();
+        agent.getAgentConfig().setGzipEnabled(false);
+
+        TransactionTemplate template = agent.newTemplate(agent.application("app01"), agent.application("app02"),
+                agent.operation("create"), agent.payloadType("subInterface01"));
+        Transaction transaction = template.newTransaction();
+        transaction.setStatus("success");
+        transaction.addIds(agent.idType("dataType01"), Arrays.asList("1", "2"));
+        agent.addTransaction(transaction);
+        assertTrue("flush should complete", agent.flush(5000).get());
+
+        String sent = new String(client.getBatches().get(0));
+        assertTrue("from name should be sent", sent.contains("\"from\":\"TestApp 1\""));
+        assertTrue("to name should be sent", sent.contains("\"to\":\"TestApp 2\""));
+        assertTrue("operation name should be sent", sent.contains("\"operation\":\"Create\""));
+        assertTrue("payload type name should be sent", sent.contains("\"payloadType\":\"Interface 1\""));
+        assertTrue("id type name should be sent", sent.contains("\"idType\":\"Data Type 1\""));
+        agent.stop(1000);
+    }
+
+    @Test
+    public void testRecycledTransactionsAreSentWithOwnData() throws Exception {
+        InMemoryApiClient client = new InMemoryApiClient();
+        Agent agent = Agent.getFactory().setConfigurationBuilder(new AgentConfigBuilder() {
+            @Override
+            public AgentConfig build() {
+                try {
+                    AgentConfig config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+                    config.setGzipEnabled(false);
+                    config.setRecyclingEnabled(true);
+                    config.setRecyclingPoolSize(4);
+                    return config;
+                } catch (FileNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }).setApiClient(client).build();
+
+        Transaction first = null;
+        for(int round = 0; round < 3; round++) {
+            for(int i = 0; i < 4; i++) {
+                Transaction transaction = newTransaction(agent);
+                if(null == first) {
+                    first = transaction;
+                }
+                transaction.setMessage("message-" + round + "-" + i);
+                if(0 == round) {
+                    transaction.addMetadata("round", "zero");
+                    transaction.addIdsByTypeKey("dataType01", new long[] { 42 });
+                }
+                agent.addTransaction(transaction);
+            }
+            assertTrue("flush should complete", agent.flush(5000).get());
+        }
+        assertSame("transactions should be reused", first, agent.newTransaction());
+
+        StringBuilder sent = new StringBuilder();
+        for(byte[] batch : client.getBatches()) {
+            sent.append(new String(batch));
+        }
+        for(int round = 0; round < 3; round++) {
+            for(int i = 0; i < 4; i++) {
+                assertTrue("every message should be sent", sent.indexOf("message-" + round + "-" + i) >= 0);
+            }
+        }
+        assertEquals("metadata should not leak to recycled transactions", 4, countMatches(sent, "\"zero\""));
+        assertEquals("ids should not leak to recycled transactions", 4, countMatches(sent, "\"42\""));
+        agent.stop(1000);
+    }
+
+    @Test
+    public void testRingTransactionsAreSentAlongsideAddedOnes() throws Exception {
+        InMemoryApiClient client = new InMemoryApiClient();
+        Agent agent = Agent.getFactory().setConfigurationBuilder(new AgentConfigBuilder() {
+            @Override
+            public AgentConfig build() {
+                try {
+                    AgentConfig config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+                    config.setGzipEnabled(false);
+                    config.setRingSize(8);
+                    return config;
+                } catch (FileNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }).setApiClient(client).build();
+        TransactionRing ring = agent.getRing();
+        KeyHandle from = agent.application("app01");
+        KeyHandle to = agent.application("app02");
+
+        for(int i = 0; i < 20; i++) {
+            long sequence = ring.claim();
+            try {
+                Transaction transaction = ring.get(sequence);
+                transaction.setFrom(from);
+                transaction.setTo(to);
+                transaction.setStatus("success");
+                transaction.setMessage("ring-" + i);
+            } finally {
+                ring.publish(sequence);
+            }
+        }
+        Transaction added = newTransaction(agent);
+        added.setMessage("added");
+        agent.addTransaction(added);
+        assertTrue("flush should complete", agent.flush(5000).get());
+
+        StringBuilder sent = new StringBuilder();
+        for(byte[] batch : client.getBatches()) {
+            sent.append(new String(batch));
+        }
+        for(int i = 0; i < 20; i++) {
+            assertTrue("every ring transaction should be sent", sent.indexOf("\"ring-" + i + "\"") >= 0);
+        }
+        assertTrue("added transaction should be sent", sent.indexOf("\"added\"") >= 0);
+        assertEquals("nothing should be left", 21, agent.stop(1000).getDelivered());
+    }
+
+    @Test
+    public void testBulkAddReportsInvalidTransactionsAndSendsTheRest() throws Exception {
+        InMemoryApiClient client = new InMemoryApiClient();
+        Agent agent = Agent.getFactory().setConfigurationBuilder(new AgentConfigBuilder() {
+            @Override
+            public AgentConfig build() {
+                try {
+                    AgentConfig config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+                    config.setGzipEnabled(false);
+                    return config;
+                } catch (FileNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }).setApiClient(client).build();
+
+        List<Transaction> transactions = new ArrayList<Transaction>();
+        for(int i = 0; i < 10; i++) {
+            Transaction transaction = newTransaction(agent);
+            transaction.setMessage("bulk-" + i);
+            transactions.add(transaction);
+        }
+        Transaction invalid = newTransaction(agent);
+        invalid.setToKey("nonexistent");
+        transactions.add(3, invalid);
+
+        BulkAddResult result = agent.addTransactions(transactions);
+        assertEquals("valid transactions should be added", 10, result.getAddedCount());
+        assertEquals("invalid transaction should be rejected", 1, result.getRejections().size());
+        assertSame("rejection should name the transaction", invalid, result.getRejections().get(0).getTransaction());
+        assertSame("rejection should give the reason", ValidationResult.UNKNOWN_TO, result.getRejections().get(0).getResult());
+        assertEquals("error should name the key", "to application does not exist: nonexistent",
+                result.getRejections().get(0).getError().getMessage());
+        assertTrue("flush should complete", agent.flush(5000).get());
+
+        StringBuilder sent = new StringBuilder();
+        for(byte[] batch : client.getBatches()) {
+            sent.append(new String(batch));
+        }
+        for(int i = 0; i < 10; i++) {
+            assertTrue("every valid transaction should be sent", sent.indexOf("\"bulk-" + i + "\"") >= 0);
+        }
+        assertEquals("nothing should be left", 10, agent.stop(1000).getDelivered());
+    }
+
+    @Test
+    public void testTryAddReturnsValidationResultInsteadOfThrowing() throws Exception {
+        Agent agent = Agent.getFactory()
+                .setConfigurationBuilder(new FileConfigBuilder(new File("src/test/resources/validConfig.xml")))
+                .setApiClient(new InMemoryApiClient()).build();
+        Transaction invalid = newTransaction(agent);
+        invalid.setFromKey("nonexistent");
+
+        assertSame(ValidationResult.UNKNOWN_FROM, agent.tryAddTransaction(invalid));
+        assertSame(ValidationResult.VALID, agent.tryAddTransaction(newTransaction(agent)));
+        assertEquals("only the valid transaction should be added", 1, agent.stop(1000).getDelivered());
+    }
+
+    private static int countMatches(CharSequence text, String part) {
+        Matcher matcher = Pattern.compile(Pattern.quote(part)).matcher(text);
+        int count = 0;
+        while(matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test(expected = AgentCoreException.class)
+    public void testHandleForUnknownKeyIsRejected() throws Exception {
+        Agent agent = Agent.getFactory().setConfigurationBuilder(new FileConfigBuilder(new File("src/test/resources/validConfig.xml"))).build();
+        try {
+            agent.application("no-such-app");
+        } finally {
+            agent.stop(1000);
+        }
+    }
+
+    @Test(expected = AgentCoreException.class)
+    public void testHandleOfWrongTypeIsRejected() throws Exception {
+        Agent agent = Agent.getFactory().setConfigurationBuilder(new FileConfigBuilder(new File("src/test/resources/validConfig.xml"))).build();
+        try {
+            agent.newTransaction().setFrom(agent.operation("create"));
+        } finally {
+            agent.stop(1000);
+        }
+    }
+
+    private static class CountingListener implements BatchListener {
+        private volatile int sent = 0;
+        private volatile int dropped = 0;
+        private volatile int transactions = 0;
+
+        @Override
+        public void onSent(int count) {
+            sent++;
+            transactions += count;
+        }
+
+        @Override
+        public void onRetried(int count, int attempt) { }
+
+        @Override
+        public void onSpilled(int count) { }
+
+        @Override
+        public void onDropped(int count) {
+            dropped++;
+        }
+    }
+
+    private Transaction newTransaction(Agent agent) {
+        Transaction transaction = agent.newTransaction();
+        transaction.setFromKey("app01");
+        transaction.setToKey("app02");
+        transaction.setStatus("success");
+        return transaction;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchSizeTunerTest {
+    private static final long MILLIS = 1000000;
+
+    private AgentMetrics metrics;
+    private BatchSizeTuner tuner;
+
+    @Before
+    public void setUp() {
+        metrics = new AgentMetrics();
+        tuner = new BatchSizeTuner(10, 100, metrics);
+    }
+
+    @Test
+    public void testBatchSizeGrowsAdditivelyUpToMaximum() {
+        assertEquals("should start from minimum", 10, tuner.getBatchSize());
+        tuner.record(50 * MILLIS, false);
+        tuner.record(50 * MILLIS, false);
+        assertEquals("should grow by minimum size", 30, tuner.getBatchSize());
+
+        for(int i = 0; i < 20; i++) {
+            tuner.record(50 * MILLIS, false);
+        }
+        assertEquals("should stop at maximum", 100, tuner.getBatchSize());
+        assertEquals("metrics should show the batch size", 100, metrics.getBatchSize());
+    }
+
+    @Test
+    public void testBatchSizeIsHalvedOnFailureDownToMinimum() {
+        for(int i = 0; i < 9; i++) {
+            tuner.record(50 * MILLIS, false);
+        }
+        tuner.record(50 * MILLIS, true);
+        assertEquals("should be halved", 50, tuner.getBatchSize());
+
+        tuner.record(50 * MILLIS, true);
+        tuner.record(50 * MILLIS, true);
+        tuner.record(50 * MILLIS, true);
+        assertEquals("should stop at minimum", 10, tuner.getBatchSize());
+    }
+
+    @Test
+    public void testBatchSizeIsHalvedWhenLatencyDegrades() {
+        for(int i = 0; i < 5; i++) {
+            tuner.record(50 * MILLIS, false);
+        }
+        assertEquals(60, tuner.getBatchSize());
+
+        tuner.record(500 * MILLIS, false);
+        assertEquals("should be halved on slow response", 30, tuner.getBatchSize());
+    }
+}
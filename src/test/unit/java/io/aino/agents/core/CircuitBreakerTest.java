@@ -0,0 +1,98 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.aino.agents.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void testBreakerOpensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 10000);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals("breaker should still be closed", CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.recordFailure();
+        assertEquals("breaker should be open", CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse("requests should not be permitted", breaker.tryAcquire());
+    }
+
+    @Test
+    public void testSuccessResetsFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 10000);
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        assertEquals("breaker should still be closed", CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testOnlySingleProbeIsLetThroughWhenHalfOpen() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        breaker.recordFailure();
+        Thread.sleep(60);
+
+        assertTrue("first caller should get to probe", breaker.tryAcquire());
+        assertEquals("breaker should be half-open", CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse("second caller should not get to send", breaker.tryAcquire());
+
+        breaker.recordSuccess();
+        assertEquals("breaker should be closed", CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue("requests should be permitted", breaker.tryAcquire());
+    }
+
+    @Test
+    public void testFailedProbeReopensBreaker() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        breaker.recordFailure();
+        Thread.sleep(60);
+
+        assertTrue("first caller should get to probe", breaker.tryAcquire());
+        breaker.recordFailure();
+        assertEquals("breaker should be open", CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse("requests should not be permitted", breaker.isRequestPermitted());
+    }
+
+    @Test
+    public void testPermissionDelayCountsDownOpenTime() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 200);
+        assertEquals("closed breaker should not delay", 0, breaker.permissionDelay());
+
+        breaker.recordFailure();
+        long delay = breaker.permissionDelay();
+        assertTrue("open breaker should delay until probe", delay > 100 && delay <= 200);
+
+        breaker.recordSuccess();
+        assertEquals("closed breaker should not delay", 0, breaker.permissionDelay());
+    }
+
+    @Test
+    public void testBackoffStaysWithinBounds() {
+        RetryBackoff backoff = new RetryBackoff(100, 1000);
+        for (int i = 0; i < 100; i++) {
+            long delay = backoff.nextDelay();
+            assertTrue("delay should not be below base delay", delay >= 100);
+            assertTrue("delay should not exceed max delay", delay <= 1000);
+        }
+        backoff.reset();
+        assertTrue("delay after reset should be at most three times base", backoff.nextDelay() <= 300);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.aino.agents.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeadLetterStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStoredBatchCanBeClaimedAndRemoved() throws IOException {
+        DeadLetterStore store = new DeadLetterStore(folder.getRoot(), 1000);
+        byte[] batch = Gzip.compress("{\"transactions\":[]}".getBytes());
+        assertTrue("batch should be stored", store.store(batch));
+
+        String name = store.claim();
+        assertTrue("stored batch should be read back", Arrays.equals(batch, store.read(name)));
+        assertNull("claimed batch should not be claimed twice", store.claim());
+        assertFalse("no batches should be waiting", store.hasBatches());
+
+        store.remove(name);
+        assertEquals("store should be empty", 0, store.size());
+        assertEquals("no files should be left", 0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testReleasedBatchCanBeClaimedAgain() {
+        DeadLetterStore store = new DeadLetterStore(folder.getRoot(), 1000);
+        store.store(new byte[10]);
+
+        String name = store.claim();
+        store.release(name);
+        assertEquals("released batch should be claimed again", name, store.claim());
+    }
+
+    @Test
+    public void testOldestBatchesAreEvictedWhenFull() {
+        DeadLetterStore store = new DeadLetterStore(folder.getRoot(), 250);
+        store.store(new byte[100]);
+        String oldest = store.claim();
+        store.release(oldest);
+
+        store.store(new byte[100]);
+        store.store(new byte[100]);
+
+        assertEquals("oldest batch should have been evicted", 2, store.size());
+        assertTrue("disk usage should stay within bounds", store.getTotalBytes() <= 250);
+        assertFalse("oldest batch should be gone", oldest.equals(store.claim()));
+    }
+
+    @Test
+    public void testTooLargeBatchIsNotStored() {
+        DeadLetterStore store = new DeadLetterStore(folder.getRoot(), 50);
+        assertFalse("batch should not be stored", store.store(new byte[100]));
+    }
+
+    @Test
+    public void testBatchesFromEarlierRunsArePickedUp() {
+        new DeadLetterStore(folder.getRoot(), 1000).store(new byte[10]);
+
+        DeadLetterStore store = new DeadLetterStore(folder.getRoot(), 1000);
+        assertEquals("batch should be picked up", 1, store.size());
+        assertEquals("disk usage should be counted", 10, store.getTotalBytes());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.aino.agents.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FanOutApiClientTest {
+
+    @Test
+    public void testSlowSinkDoesNotHoldBackOtherSinks() throws InterruptedException {
+        BlockedSink blocked = new BlockedSink();
+        InMemoryApiClient memory = new InMemoryApiClient(10);
+        FanOutApiClient client = new FanOutApiClient().addSink(blocked, 2).addSink(memory, 10);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("fan-out should accept every batch", 202, client.send(new byte[] { (byte) i }).getStatus());
+        }
+
+        assertTrue("fast sink should get every batch", memory.awaitBatches(5, 2000));
+        assertTrue("slow sink should drop its oldest batches", client.getDroppedCount() >= 2);
+
+        blocked.release.countDown();
+        client.close();
+        assertEquals("slow sink should get the newest batch", 4, blocked.last[0]);
+    }
+
+    @Test
+    public void testSinksAreWrittenOnTheGivenExecutor() {
+        final AtomicInteger tasks = new AtomicInteger();
+        InMemoryApiClient memory = new InMemoryApiClient(10);
+        FanOutApiClient client = new FanOutApiClient(new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                tasks.incrementAndGet();
+                task.run();
+            }
+        }).addSink(memory, 10);
+
+        client.send(new byte[] { 1 });
+        client.send(new byte[] { 2 });
+
+        assertEquals("each batch should be written by a task on the executor", 2, tasks.get());
+        assertEquals(2, memory.getBatches().size());
+        client.close();
+    }
+
+    @Test
+    public void testTaskWritesAtMostOneQueueBeforeHandingBackItsThread() {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        FanOutApiClient client = new FanOutApiClient(new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                tasks.add(task);
+            }
+        });
+        RefillingSink sink = new RefillingSink(client);
+        client.addSink(sink, 2);
+
+        client.send(new byte[] { 0 });
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+
+        assertEquals("task should stop after a queue's worth of batches", 2, sink.written.get());
+        assertEquals("rest should be left to a new task", 2, tasks.size());
+        tasks.get(1).run();
+        assertEquals(4, sink.written.get());
+    }
+
+    private static final class RefillingSink implements ApiClient {
+        private final FanOutApiClient client;
+        private final AtomicInteger written = new AtomicInteger();
+
+        private RefillingSink(FanOutApiClient client) {
+            this.client = client;
+        }
+
+        @Override
+        public ApiResponse send(byte[] data) {
+            written.incrementAndGet();
+            client.send(data);
+            return AcceptedApiResponse.INSTANCE;
+        }
+    }
+
+    private static final class BlockedSink implements ApiClient {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile byte[] last;
+
+        @Override
+        public ApiResponse send(byte[] data) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            last = data;
+            return AcceptedApiResponse.INSTANCE;
+        }
+    }
+}
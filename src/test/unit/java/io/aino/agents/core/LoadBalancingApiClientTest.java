@@ -0,0 +1,147 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.aino.agents.core;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LoadBalancingApiClientTest {
+
+    @Test
+    public void testRequestsAreSpreadOverHealthyEndpoints() {
+        StubClient first = new StubClient(200, 0);
+        StubClient second = new StubClient(200, 0);
+        LoadBalancingApiClient client = new LoadBalancingApiClient(Arrays.asList("first", "second"), Arrays.asList(first, second));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("request should succeed", 200, client.send(new byte[0]).getStatus());
+        }
+        assertTrue("first endpoint should get requests", first.requests > 0);
+        assertTrue("second endpoint should get requests", second.requests > 0);
+    }
+
+    @Test
+    public void testFailedRequestFailsOverToNextEndpoint() {
+        StubClient broken = new StubClient(-1, 0);
+        StubClient working = new StubClient(202, 0);
+        LoadBalancingApiClient client = new LoadBalancingApiClient(Arrays.asList("broken", "working"), Arrays.asList(broken, working));
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals("every request should end up on the working endpoint", 202, client.send(new byte[0]).getStatus());
+        }
+        assertEquals("working endpoint should get all requests", 4, working.requests);
+    }
+
+    @Test
+    public void testFailingEndpointIsEjected() {
+        StubClient broken = new StubClient(503, 0);
+        StubClient working = new StubClient(202, 0);
+        LoadBalancingApiClient client = new LoadBalancingApiClient(Arrays.asList("broken", "working"), Arrays.asList(broken, working));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("every request should succeed", 202, client.send(new byte[0]).getStatus());
+        }
+        assertTrue("broken endpoint should not get requests after consecutive failures", broken.requests <= LoadBalancingApiClient.EJECT_AFTER_FAILURES);
+    }
+
+    @Test
+    public void testEndpointsAreEjectedAfterConsecutiveFailures() {
+        StubClient first = new StubClient(503, 0);
+        StubClient second = new StubClient(-1, 0);
+        LoadBalancingApiClient client = new LoadBalancingApiClient(Arrays.asList("first", "second"), Arrays.asList(first, second));
+
+        for (int i = 0; i < LoadBalancingApiClient.EJECT_AFTER_FAILURES; i++) {
+            assertEquals("last response should be returned when all endpoints fail", 503, client.send(new byte[0]).getStatus());
+        }
+        assertTrue("all endpoints should be ejected", client.getHealthyEndpoints().isEmpty());
+    }
+
+    @Test
+    public void testSlowEndpointGetsLessTraffic() {
+        StubClient slow = new StubClient(200, 20);
+        StubClient fast = new StubClient(200, 1);
+        LoadBalancingApiClient client = new LoadBalancingApiClient(Arrays.asList("slow", "fast"), Arrays.asList(slow, fast));
+
+        for (int i = 0; i < 40; i++) {
+            client.send(new byte[0]);
+        }
+        assertTrue("slow endpoint should get a small share of requests", slow.requests < 10);
+    }
+
+    @Test
+    public void testEndpointTurningSlowIsEjected() {
+        StubClient slowing = new StubClient(200, 2);
+        StubClient fast = new StubClient(200, 2);
+        LoadBalancingApiClient client = new LoadBalancingApiClient(Arrays.asList("slowing", "fast"), Arrays.asList(slowing, fast));
+
+        for (int i = 0; i < 12; i++) {
+            client.send(new byte[0]);
+        }
+        slowing.latency = 50;
+        for (int i = 0; i < 30; i++) {
+            client.send(new byte[0]);
+        }
+        assertFalse("slow endpoint should be ejected", client.getHealthyEndpoints().contains("slowing"));
+    }
+
+    @Test(expected = ClientHandlerException.class)
+    public void testExceptionIsThrownWhenAllEndpointsFail() {
+        LoadBalancingApiClient client = new LoadBalancingApiClient(Arrays.asList("a", "b"),
+                Arrays.asList(new StubClient(-1, 0), new StubClient(-1, 0)));
+        client.send(new byte[0]);
+    }
+
+    private static class StubClient implements ApiClient {
+        private final int status;
+        private long latency;
+        private int requests = 0;
+
+        StubClient(int status, long latency) {
+            this.status = status;
+            this.latency = latency;
+        }
+
+        @Override
+        public ApiResponse send(byte[] data) {
+            requests++;
+            if(latency > 0) {
+                try {
+                    Thread.sleep(latency);
+                } catch (InterruptedException ignored) { }
+            }
+            if(status < 0) {
+                throw new ClientHandlerException("Connection refused");
+            }
+            return new ApiResponse() {
+                @Override
+                public int getStatus() {
+                    return status;
+                }
+
+                @Override
+                public String getPayload() {
+                    return "";
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.aino.agents.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RollingFileApiClientTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBatchesAreWrittenAsJsonLines() throws IOException {
+        RollingFileApiClient client = new RollingFileApiClient(folder.getRoot(), false, 1000, 2);
+        client.send("{\"a\":1}".getBytes());
+        client.send("{\"b\":2}".getBytes());
+        client.close();
+
+        File[] files = folder.getRoot().listFiles();
+        assertEquals("batches should go to one file", 1, files.length);
+        assertEquals("batches should be written one per line", "{\"a\":1}\n{\"b\":2}\n", new String(Files.readAllBytes(files[0].toPath())));
+    }
+
+    @Test
+    public void testGzippedBatchesAreReadableAsOneFile() throws IOException {
+        RollingFileApiClient client = new RollingFileApiClient(folder.getRoot(), true, 1000, 2);
+        client.send(Gzip.compress("first".getBytes()));
+        client.send(Gzip.compress("second".getBytes()));
+        client.close();
+
+        File[] files = folder.getRoot().listFiles();
+        assertEquals("concatenated gzip members should decompress as one", "firstsecond",
+                new String(Gzip.decompress(Files.readAllBytes(files[0].toPath()))));
+    }
+
+    @Test
+    public void testFilesAreRolledAndOldestDeleted() {
+        RollingFileApiClient client = new RollingFileApiClient(folder.getRoot(), true, 150, 2);
+        for (int i = 0; i < 5; i++) {
+            client.send(new byte[100]);
+        }
+        client.close();
+
+        String[] names = folder.getRoot().list();
+        Arrays.sort(names);
+        assertEquals("only the newest files should be kept", 2, names.length);
+        for (String name : names) {
+            assertTrue("file should stay within size limit", new File(folder.getRoot(), name).length() <= 150);
+        }
+    }
+
+    @Test
+    public void testSendAfterCloseIsRefused() {
+        RollingFileApiClient client = new RollingFileApiClient(folder.getRoot(), false, 1000, 2);
+        client.send("{\"a\":1}".getBytes());
+        client.close();
+        try {
+            client.send("{\"b\":2}".getBytes());
+            fail("send should fail once closed");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals("no new file should be started", 1, folder.getRoot().list().length);
+    }
+}
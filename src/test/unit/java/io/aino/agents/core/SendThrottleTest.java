@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.aino.agents.core;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SendThrottleTest {
+
+    @Test
+    public void testRetryAfterSecondsIsParsed() {
+        assertEquals("delta-seconds should be converted to milliseconds", 120000, SendThrottle.parseRetryAfter("120"));
+        assertEquals("missing header should be ignored", -1, SendThrottle.parseRetryAfter(null));
+        assertEquals("garbage should be ignored", -1, SendThrottle.parseRetryAfter("soon"));
+    }
+
+    @Test
+    public void testRetryAfterHttpDateIsParsed() {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        String inOneMinute = format.format(new Date(System.currentTimeMillis() + 60000));
+
+        long delay = SendThrottle.parseRetryAfter(inOneMinute);
+        assertTrue("delay should be about a minute", delay > 55000 && delay <= 60000);
+    }
+
+    @Test
+    public void testThrottlingPausesAllSenders() {
+        SendThrottle throttle = new SendThrottle();
+        assertTrue("requests should be permitted initially", throttle.tryAcquire());
+
+        throttle.throttled(10000);
+        assertFalse("requests should not be permitted while paused", throttle.isRequestPermitted());
+        assertFalse("requests should not be permitted while paused", throttle.tryAcquire());
+    }
+
+    @Test
+    public void testRequestSpacingBacksOffAndRecovers() {
+        SendThrottle throttle = new SendThrottle();
+        throttle.throttled(0);
+        throttle.throttled(0);
+        assertEquals("spacing should double on repeated throttling", 2 * SendThrottle.MIN_SPACING_STEP, throttle.getRequestSpacing());
+
+        throttle.accepted();
+        throttle.accepted();
+        assertEquals("spacing should decrease additively", 0, throttle.getRequestSpacing());
+    }
+}
@@ -20,6 +20,7 @@ package io.aino.agents.core;
 import io.aino.agents.core.config.AgentConfig;
 import io.aino.agents.core.config.FileConfigBuilder;
 import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -29,7 +30,12 @@ import org.mockito.MockitoAnnotations;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
@@ -51,6 +57,23 @@ public class SenderTest {
         }
     };
 
+    private ApiResponse throttledResponse = new HeaderAwareApiResponse() {
+        @Override
+        public int getStatus() {
+            return 429;
+        }
+
+        @Override
+        public String getPayload() {
+            return "Too Many Requests";
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return "Retry-After".equals(name) ? "1" : null;
+        }
+    };
+
     @BeforeClass
     public static void initConfigs() throws FileNotFoundException {
         validConfig = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
@@ -71,7 +94,287 @@ public class SenderTest {
         new Thread(sender).start();
         sender.stop();
         Thread.sleep(1500l);
-        verify(apiClient, times(trxCount)).send(any(byte[].class));
+        // All remaining entries fit in one batch.
+        verify(apiClient, times(1)).send(any(byte[].class));
+        assertEquals("buffer should be empty", 0, dataBuffer.getSize());
+    }
+
+    @Test
+    public void testBacklogIsSentInBatchesOfMaxCount() throws InterruptedException, FileNotFoundException {
+        AgentConfig config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+        config.setSendInterval(60000);
+        config.setBatchMaxCount(4);
+        config.setGzipEnabled(false);
+        InMemoryApiClient client = new InMemoryApiClient(10);
+        Sender sender = new Sender(config, initDataBuffer(10), client);
+        new Thread(sender).start();
+
+        assertTrue("backlog should be sent without waiting for the send interval", client.awaitBatches(3, 2000));
+        assertEquals("last batch holds the rest", 2, StringUtils.countMatches(new String(client.getBatches().get(2)), "\"from\""));
+        sender.stop();
+        assertTrue("sender should stop", sender.awaitTermination(5000));
+    }
+
+    @Test
+    public void testBatchesEncodedAheadOnEncoderPoolAreSentInOrder() throws InterruptedException, FileNotFoundException {
+        AgentConfig config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+        config.setBatchMaxCount(4);
+        config.setGzipEnabled(false);
+        config.setEncoderThreads(2);
+        SenderContext context = new SenderContext(config);
+        InMemoryApiClient client = new InMemoryApiClient(10);
+        TransactionDataBuffer dataBuffer = new TransactionDataBuffer(1);
+        for(int i = 0; i < 10; i++) {
+            TransactionSerializable entry = newTransaction();
+            entry.addField("message", "message " + i);
+            dataBuffer.addTransaction(entry);
+        }
+
+        Sender sender = new Sender(config, dataBuffer, client, context);
+        new Thread(sender).start();
+        assertTrue("all data should be sent", client.awaitBatches(3, 5000));
+        sender.stop();
+
+        StringBuilder sent = new StringBuilder();
+        for(byte[] batch : client.getBatches()) {
+            sent.append(new String(batch));
+        }
+        assertEquals("all data should be sent in batches of max count", 3, client.getBatches().size());
+        for(int i = 0; i < 9; i++) {
+            assertTrue("batches should be sent in order", sent.indexOf("message " + i) < sent.indexOf("message " + (i + 1)));
+        }
+        assertEquals("encoding stage should be empty", 0, context.metrics.getEncodeQueueDepth());
+        assertEquals("sending stage should be empty", 0, context.metrics.getSendQueueDepth());
+        context.encoder.shutdown();
+    }
+
+    @Test
+    public void testPartialBatchIsSentAfterLinger() throws InterruptedException, FileNotFoundException {
+        AgentConfig config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+        config.setSendInterval(60000);
+        config.setSizeThreshold(100);
+        config.setBatchLinger(300);
+        InMemoryApiClient client = new InMemoryApiClient(10);
+        TransactionDataBuffer dataBuffer = new TransactionDataBuffer(100);
+        Sender sender = new Sender(config, dataBuffer, client);
+        new Thread(sender).start();
+        Thread.sleep(100l);
+
+        dataBuffer.addTransaction(newTransaction());
+        dataBuffer.addTransaction(newTransaction());
+        Thread.sleep(100l);
+        assertEquals("batch should linger for more data", 0, client.getBatches().size());
+        assertTrue("batch should be sent when linger time is up", client.awaitBatches(1, 2000));
+
+        sender.stop();
+        assertTrue("sender should stop", sender.awaitTermination(5000));
+    }
+
+    @Test
+    public void testSendersShareOneExecutorThread() throws InterruptedException {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        InMemoryApiClient client = new InMemoryApiClient(10);
+        Sender first = new Sender(validConfig, initDataBuffer(3), client);
+        Sender second = new Sender(validConfig, initDataBuffer(3), client);
+
+        first.start(executor);
+        second.start(executor);
+        first.stop();
+        second.stop();
+
+        assertTrue("first sender should stop", first.awaitTermination(5000));
+        assertTrue("second sender should stop", second.awaitTermination(5000));
+        assertEquals("all data should be sent, one batch per buffer", 2, client.getBatches().size());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testIdleScheduledSenderIsWokenByNewData() throws InterruptedException, FileNotFoundException {
+        AgentConfig config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+        config.setSendInterval(60000);
+        config.setSizeThreshold(1);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        InMemoryApiClient client = new InMemoryApiClient(10);
+        TransactionDataBuffer dataBuffer = new TransactionDataBuffer(1);
+        Sender sender = new Sender(config, dataBuffer, client);
+        sender.start(executor);
+        Thread.sleep(100l);
+
+        dataBuffer.addTransaction(newTransaction());
+        assertTrue("new data should be sent before the send interval", client.awaitBatches(1, 2000));
+
+        sender.stop();
+        assertTrue("sender should stop", sender.awaitTermination(5000));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testThrottledDataIsKeptAndSentAfterRetryAfter() throws InterruptedException {
+        TransactionDataBuffer dataBuffer = initDataBuffer(1);
+        when(apiClient.send(any(byte[].class))).thenReturn(throttledResponse, apiResponse);
+        Sender sender = new Sender(validConfig, dataBuffer, apiClient);
+        new Thread(sender).start();
+
+        Thread.sleep(500l);
+        verify(apiClient, times(1)).send(any(byte[].class));
+
+        Thread.sleep(1500l);
+        sender.stop();
+        verify(apiClient, times(2)).send(any(byte[].class));
+    }
+
+    @Test
+    public void testSenderSleepsUntilRetryAfterInsteadOfPolling() throws InterruptedException {
+        TransactionDataBuffer dataBuffer = initDataBuffer(1);
+        when(apiClient.send(any(byte[].class))).thenReturn(throttledResponse, apiResponse);
+        Sender sender = new Sender(validConfig, dataBuffer, apiClient);
+
+        assertEquals("throttled send should come back to wait", 0, sender.step());
+        long delay = sender.step();
+        assertTrue("wait should last until Retry-After, not the send interval: " + delay,
+                delay > validConfig.getSendInterval() && delay <= 1000);
+        verify(apiClient, times(1)).send(any(byte[].class));
+    }
+
+    @Test
+    public void testRejectedBatchIsBisectedAndOnlyInvalidEntryDropped() throws InterruptedException, FileNotFoundException {
+        AgentConfig config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+        config.setSendInterval(100);
+        config.setGzipEnabled(false);
+        config.setBisectRejectedEnabled(true);
+
+        RejectingApiClient client = new RejectingApiClient(400);
+        assertOnlyPoisonedEntryIsDropped(config, client);
+    }
+
+    @Test
+    public void testPayloadTooLargeIsBisectedWithoutConfiguration() throws InterruptedException, FileNotFoundException {
+        AgentConfig config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+        config.setSendInterval(100);
+        config.setGzipEnabled(false);
+
+        RejectingApiClient client = new RejectingApiClient(413);
+        assertOnlyPoisonedEntryIsDropped(config, client);
+    }
+
+    private void assertOnlyPoisonedEntryIsDropped(AgentConfig config, RejectingApiClient client) throws InterruptedException {
+        TransactionDataBuffer dataBuffer = new TransactionDataBuffer(10);
+        for (int i = 0; i < 8; i++) {
+            Transaction transaction = new Transaction(config);
+            transaction.setFromKey("app01");
+            transaction.setToKey("app02");
+            transaction.setStatus("success");
+            transaction.setMessage(i == 5 ? "poison" : "message " + i);
+            dataBuffer.addTransaction(TransactionSerializable.from(transaction));
+        }
+
+        Sender sender = new Sender(config, dataBuffer, client);
+        new Thread(sender).start();
+        sender.stop();
+        Thread.sleep(1000l);
+
+        assertEquals("all valid entries should be accepted", 7, client.acceptedEntries);
+    }
+
+    @Test
+    public void testNewBatchIsCopiedToSinksOnce() throws InterruptedException, FileNotFoundException {
+        AgentConfig config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+        config.setSendInterval(100);
+        config.setGzipEnabled(false);
+        config.setBisectRejectedEnabled(true);
+
+        InMemoryApiClient sink = new InMemoryApiClient(10);
+        TransactionDataBuffer dataBuffer = new TransactionDataBuffer(10);
+        for (int i = 0; i < 5; i++) {
+            Transaction transaction = new Transaction(config);
+            transaction.setFromKey("app01");
+            transaction.setToKey("app02");
+            transaction.setStatus("success");
+            transaction.setMessage(i == 3 ? "poison" : "message " + i);
+            dataBuffer.addTransaction(TransactionSerializable.from(transaction));
+        }
+
+        Sender sender = new Sender(config, dataBuffer, new RejectingApiClient(400), new SenderContext(config, sink));
+        new Thread(sender).start();
+        sender.stop();
+        Thread.sleep(1000l);
+
+        assertEquals("split batches should not be copied again", 1, sink.getBatches().size());
+        assertEquals("sink should get the whole batch", 5, StringUtils.countMatches(new String(sink.getBatches().get(0)), "\"message\""));
+    }
+
+    @Test
+    public void testExhaustedBatchIsStoredAndRedrivenAfterSuccessfulSend() throws Exception {
+        File deadLetterDirectory = Files.createTempDirectory("aino-dead-letter").toFile();
+        AgentConfig config = new FileConfigBuilder(new File("src/test/resources/validConfig.xml")).build();
+        config.setSendInterval(50);
+        config.setMaxRetries(2);
+        config.setRetryBaseDelay(10);
+        config.setRetryMaxDelay(20);
+        config.setDeadLetterDirectory(deadLetterDirectory.getAbsolutePath());
+
+        ApiResponse serverError = new ApiResponse() {
+            @Override
+            public int getStatus() {
+                return HttpStatus.SC_INTERNAL_SERVER_ERROR;
+            }
+
+            @Override
+            public String getPayload() {
+                return "Internal Server Error";
+            }
+        };
+        when(apiClient.send(any(byte[].class))).thenReturn(serverError, serverError, apiResponse);
+
+        TransactionDataBuffer dataBuffer = initDataBuffer(1);
+        Sender sender = new Sender(config, dataBuffer, apiClient);
+        new Thread(sender).start();
+        Thread.sleep(500l);
+        assertEquals("exhausted batch should be stored", 1, deadLetterDirectory.list().length);
+
+        dataBuffer.addTransaction(newTransaction());
+        Thread.sleep(500l);
+        sender.stop();
+
+        verify(apiClient, times(4)).send(any(byte[].class));
+        assertEquals("stored batch should be re-driven", 0, deadLetterDirectory.list().length);
+    }
+
+    private TransactionSerializable newTransaction() {
+        Transaction transaction = new Transaction(validConfig);
+        transaction.setFromKey("app01");
+        transaction.setToKey("app02");
+        transaction.setStatus("success");
+        return TransactionSerializable.from(transaction);
+    }
+
+    private static class RejectingApiClient implements ApiClient {
+        private final int rejectStatus;
+        private int acceptedEntries = 0;
+
+        RejectingApiClient(int rejectStatus) {
+            this.rejectStatus = rejectStatus;
+        }
+
+        @Override
+        public synchronized ApiResponse send(byte[] data) {
+            final String payload = new String(data);
+            final boolean rejected = payload.contains("poison");
+            if(!rejected) {
+                acceptedEntries += StringUtils.countMatches(payload, "\"message\"");
+            }
+            return new ApiResponse() {
+                @Override
+                public int getStatus() {
+                    return rejected ? rejectStatus : HttpStatus.SC_ACCEPTED;
+                }
+
+                @Override
+                public String getPayload() {
+                    return rejected ? "Bad Request" : "OK";
+                }
+            };
+        }
     }
 
     private TransactionDataBuffer initDataBuffer(int trxCount) {
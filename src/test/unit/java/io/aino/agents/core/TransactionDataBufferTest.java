@@ -20,9 +20,12 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class TransactionDataBufferTest {
 
@@ -56,6 +59,77 @@ public class TransactionDataBufferTest {
         assertEquals("No more transactions should exist", 0, buffer.getSize());
     }
 
+    @Test
+    public void testEntriesAreDrainedOldestFirstUpToMaxCount() {
+        TransactionDataBuffer buffer = new TransactionDataBuffer(1);
+        TransactionSerializable first = transactionWrapper();
+        TransactionSerializable second = transactionWrapper();
+        buffer.addTransaction(first);
+        buffer.addTransaction(second);
+        buffer.addTransaction(transactionWrapper());
+
+        List<TransactionSerializable> batch = buffer.drainEntries(2, Long.MAX_VALUE);
+        assertEquals("Should have returned two transactions", Arrays.asList(first, second), batch);
+        assertEquals("One transaction should remain", 1, buffer.getSize());
+    }
+
+    @Test
+    public void testEntriesAreDrainedUpToMaxBytes() {
+        TransactionDataBuffer buffer = new TransactionDataBuffer(1);
+        buffer.addTransaction(transactionWrapper());
+        buffer.addTransaction(transactionWrapper());
+        buffer.addTransaction(transactionWrapper());
+        long entrySize = buffer.getSizeInBytes() / 3;
+        assertTrue("Entry size should be estimated", entrySize > 0);
+
+        assertEquals("Should fit two transactions", 2, buffer.drainEntries(100, entrySize * 2).size());
+        assertEquals("Should return an oversized transaction alone", 1, buffer.drainEntries(100, 1).size());
+        assertEquals("Size should be zero when empty", 0, buffer.getSizeInBytes());
+        assertEquals("Age should be unknown when empty", -1, buffer.getOldestEntryAge());
+    }
+
+    @Test
+    public void testBulkAddKeepsOrderAndNotifiesObserversOnce() {
+        TransactionDataBuffer buffer = new TransactionDataBuffer(1);
+        final int[] notifications = new int[3];
+        buffer.addLogDataSizeObserver(new BulkDataObserver() {
+            @Override
+            public void logDataAdded(int newSize) {
+                notifications[0]++;
+            }
+
+            @Override
+            public void logDataAdded(int newSize, int addedCount) {
+                notifications[1]++;
+                notifications[2] = addedCount;
+            }
+        });
+        buffer.addTransaction(transactionWrapper());
+        List<TransactionSerializable> entries = Arrays.asList(transactionWrapper(), transactionWrapper(), transactionWrapper());
+        buffer.addTransactions(entries);
+
+        assertEquals("Bulk observers should not be called with the single entry variant", 0, notifications[0]);
+        assertEquals("Observer should be notified once per add", 2, notifications[1]);
+        assertEquals("Observer should be told about the whole bulk", 3, notifications[2]);
+        assertEquals("All entries should be counted", 4, buffer.getAddedCount());
+        buffer.drainEntries(1, Long.MAX_VALUE);
+        assertEquals("Bulk entries should follow in order", entries, buffer.drainEntries(100, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testNumericIdsAreSerializedAsStringsAfterOtherIds() throws IOException {
+        config.getIdTypes().addEntry("orderId", "Order Id");
+        Transaction transaction = simpleTransation();
+        transaction.addIdsByTypeKey("orderId", Arrays.asList("A1"));
+        transaction.addIdsByTypeKey("orderId", new long[] { 12, Long.MIN_VALUE });
+        transaction.addIdsByTypeKey("orderId", new int[] { -7, 0 });
+
+        TransactionDataBuffer buffer = new TransactionDataBuffer(1);
+        String json = buffer.serialize(Arrays.asList(TransactionSerializable.from(transaction)));
+
+        assertTrue(json, json.contains("{\"idType\":\"Order Id\",\"values\":[\"A1\",\"12\",\"-9223372036854775808\",\"-7\",\"0\"]}"));
+    }
+
     private void assertSingleTransactionsAreReturned(TransactionDataBuffer buffer) throws IOException {
         buffer.addTransaction(transactionWrapper());
         buffer.addTransaction(transactionWrapper());
@@ -0,0 +1,161 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import io.aino.agents.core.config.AgentConfig;
+import io.aino.agents.core.validators.TransactionValidator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransactionRingTest {
+    private AgentConfig config;
+    private TransactionRing ring;
+
+    @Before
+    public void setUp() {
+        config = new AgentConfig();
+        config.getApplications().addEntry("app1", "Application 1");
+        config.getApplications().addEntry("app2", "Application 2");
+        config.setRingSize(4);
+        ring = new TransactionRing(config, new TransactionValidator() {
+            @Override
+            public void validate(Transaction entry) {
+                if(!"success".equals(entry.getStatus())) {
+                    throw new AgentCoreException("Invalid status");
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testPublishedSlotsAreDrainedInOrderAndReusedOnceSettled() {
+        for(int i = 0; i < 4; i++) {
+            publish("message-" + i);
+        }
+        assertEquals("ring should be full", -1, ring.tryClaim());
+        assertEquals(4, ring.getSize());
+
+        List<TransactionSerializable> batch = ring.drainEntries(3, Long.MAX_VALUE);
+        assertEquals(3, batch.size());
+        for(int i = 0; i < 3; i++) {
+            assertEquals("message-" + i, batch.get(i).getMessage());
+        }
+        assertEquals("drained slots are still in flight", -1, ring.tryClaim());
+
+        TransactionSerializable first = batch.get(0);
+        first.owner.release(first);
+        long sequence = ring.tryClaim();
+        assertEquals("settled slot should be claimed again", 4, sequence);
+        assertTrue("recycled transaction should be empty", null == ring.get(sequence).getMessage());
+        ring.get(sequence).setStatus("success");
+        ring.get(sequence).setMessage("message-4");
+        ring.publish(sequence);
+
+        List<TransactionSerializable> rest = ring.drainEntries(10, Long.MAX_VALUE);
+        assertEquals(2, rest.size());
+        assertEquals("message-3", rest.get(0).getMessage());
+        assertEquals("message-4", rest.get(1).getMessage());
+        assertSame("entries should be preallocated", first, rest.get(1));
+        assertEquals(5, ring.getAddedCount());
+        assertEquals(0, ring.getSize());
+    }
+
+    @Test
+    public void testInvalidTransactionIsSkippedAndItsSlotFreed() {
+        long sequence = ring.claim();
+        ring.get(sequence).setMessage("invalid");
+        try {
+            ring.publish(sequence);
+            fail("publish should throw");
+        } catch (AgentCoreException expected) {
+        }
+        publish("valid");
+
+        List<TransactionSerializable> batch = ring.drainEntries(10, Long.MAX_VALUE);
+        assertEquals(1, batch.size());
+        assertEquals("valid", batch.get(0).getMessage());
+        assertEquals("only the drained slot should still be in use", 3, claimAll());
+    }
+
+    @Test
+    public void testSlotPublishedAfterCloseDoesNotBlockLaterSlotPublishedBefore() {
+        long earlier = ring.claim();
+        long later = ring.claim();
+        Transaction transaction = ring.get(later);
+        transaction.setFromKey("app1");
+        transaction.setToKey("app2");
+        transaction.setStatus("success");
+        transaction.setMessage("published before close");
+        ring.publish(later);
+
+        ring.close();
+        ring.get(earlier).setStatus("success");
+        ring.publish(earlier);
+
+        List<TransactionSerializable> batch = ring.drainEntries(10, Long.MAX_VALUE);
+        assertEquals(1, batch.size());
+        assertEquals("published before close", batch.get(0).getMessage());
+        assertEquals(0, ring.getSize());
+    }
+
+    @Test
+    public void testClaimFailsOnceClosed() {
+        for(int i = 0; i < 4; i++) {
+            ring.claim();
+        }
+        ring.close();
+        for(int i = 0; i < 4; i++) {
+            ring.publish(i);
+        }
+        assertEquals("slots published after close should be freed right away", -1, ring.getOldestEntryAge());
+        try {
+            ring.claim();
+            fail("claim should fail on a closed ring");
+        } catch (AgentCoreException expected) {
+        }
+        try {
+            ring.tryClaim();
+            fail("tryClaim should fail on a closed ring");
+        } catch (AgentCoreException expected) {
+        }
+    }
+
+    private int claimAll() {
+        int claimed = 0;
+        while(-1 != ring.tryClaim()) {
+            claimed++;
+        }
+        return claimed;
+    }
+
+    private void publish(String message) {
+        long sequence = ring.claim();
+        Transaction transaction = ring.get(sequence);
+        transaction.setFromKey("app1");
+        transaction.setToKey("app2");
+        transaction.setStatus("success");
+        transaction.setMessage(message);
+        ring.publish(sequence);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core;
+
+import io.aino.agents.core.config.AgentConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionTest {
+    private Transaction transaction;
+
+    @Before
+    public void setUp() {
+        transaction = new Transaction(new AgentConfig());
+    }
+
+    @Test
+    public void testNewTransactionHasNoIdsOrMetadata() {
+        assertTrue(transaction.getIds().isEmpty());
+        assertTrue(transaction.getMetadata().isEmpty());
+        assertNull(transaction.getIdsByType("orderId"));
+    }
+
+    @Test
+    public void testLazyValuesAreComputedOnceWhenSerializedAndCut() throws IOException {
+        AgentConfig config = new AgentConfig();
+        config.setLazyValueMaxLength(5);
+        Transaction lazy = new Transaction(config);
+        final int[] calls = new int[1];
+        Callable<String> supplier = new Callable<String>() {
+            @Override
+            public String call() {
+                calls[0]++;
+                return "0123456789";
+            }
+        };
+        lazy.setLazyMessage(supplier);
+        lazy.addLazyMetadata("payload", supplier);
+
+        TransactionSerializable entry = TransactionSerializable.from(lazy);
+        assertEquals("Nothing should be computed before serializing", 0, calls[0]);
+        TransactionDataBuffer buffer = new TransactionDataBuffer(1);
+        String json = buffer.serialize(Arrays.asList(entry));
+        buffer.serialize(Arrays.asList(entry));
+
+        assertEquals("Each value should be computed once", 2, calls[0]);
+        assertTrue("Message should be cut", json.contains("\"message\":\"01234\""));
+        assertTrue("Metadata value should be cut", json.contains("\"value\":\"01234\""));
+    }
+
+    @Test
+    public void testMetadataIsReplacedByKeyInPlace() {
+        transaction.addMetadata("a", "1");
+        transaction.addMetadata("b", "2");
+        transaction.addMetadata("a", "3");
+
+        assertEquals(Arrays.asList(new NameValuePair("a", "3"), new NameValuePair("b", "2")), transaction.getMetadata());
+    }
+
+    @Test
+    public void testManyMetadataEntriesKeepOrderAndReplaceByKey() {
+        for(int i = 0; i < 100; i++) {
+            transaction.addMetadata("key" + i, "old");
+        }
+        for(int i = 0; i < 100; i += 2) {
+            transaction.addMetadata("key" + i, "new");
+        }
+
+        List<NameValuePair> metadata = transaction.getMetadata();
+        assertEquals(100, metadata.size());
+        for(int i = 0; i < 100; i++) {
+            assertEquals(new NameValuePair("key" + i, i % 2 == 0 ? "new" : "old"), metadata.get(i));
+        }
+    }
+
+    @Test
+    public void testIdsAndMetadataAreLiveCollections() {
+        transaction.getIds().put("orderId", new ArrayList<String>(Arrays.asList("1")));
+        List<NameValuePair> metadata = transaction.getMetadata();
+        for(int i = 0; i < 10; i++) {
+            metadata.add(new NameValuePair("key" + i, "old"));
+        }
+        metadata.remove(0);
+        transaction.addMetadata("key5", "new");
+
+        assertEquals(Arrays.asList("1"), transaction.getIdsByType("orderId"));
+        assertEquals(Collections.singleton("orderId"), transaction.getIdTypeKeys());
+        assertEquals(9, transaction.getMetadata().size());
+        assertEquals("replacing by key should see changes made through the list",
+                new NameValuePair("key5", "new"), transaction.getMetadata().get(4));
+        assertEquals(transaction.getTimestamp().longValue(), transaction.getTimestampMillis());
+    }
+
+    @Test
+    public void testIdsAreAddedByType() {
+        transaction.addIdsByTypeKey("orderId", Arrays.asList("1", "2"));
+        transaction.addIdsByTypeKey("orderId", Arrays.asList("3"));
+
+        assertEquals(Arrays.asList("1", "2", "3"), transaction.getIdsByType("orderId"));
+        assertEquals(1, transaction.getIds().size());
+    }
+
+    @Test
+    public void testNumericIdsAreKeptByType() {
+        transaction.addIdsByTypeKey("orderId", new long[] { 1, 2 });
+        transaction.addIdsByTypeKey("orderId", new int[] { 3 });
+
+        assertArrayEquals(new long[] { 1, 2, 3 }, transaction.getNumericIdsByType("orderId"));
+        assertEquals(Collections.singleton("orderId"), transaction.getNumericIdTypeKeys());
+        assertTrue("string ids should be separate", transaction.getIds().isEmpty());
+    }
+
+    @Test
+    public void testNameValuePairHashDependsOnBothParts() {
+        assertEquals(new NameValuePair("a", "bc").hashCode(), new NameValuePair("a", "bc").hashCode());
+        assertTrue(new NameValuePair("a", "bc").hashCode() != new NameValuePair("ab", "c").hashCode());
+    }
+}
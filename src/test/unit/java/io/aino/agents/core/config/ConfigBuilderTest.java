@@ -20,9 +20,12 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.Arrays;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class ConfigBuilderTest {
 
@@ -93,4 +96,103 @@ public class ConfigBuilderTest {
         assertEquals("proxy port should be set", 8080, confWithProxy.getProxyPort());
     }
 
+    @Test
+    public void testConfigBuilderPopulatesRetryConfigs() {
+        AgentConfig defaults = new ClasspathResourceConfigBuilder("validConfig.xml").build();
+        assertEquals("maxRetries has default value", 4, defaults.getMaxRetries());
+
+        AgentConfig conf = new ClasspathResourceConfigBuilder("validConfigWithRetry.xml").build();
+        assertEquals("maxRetries is correct", 6, conf.getMaxRetries());
+        assertEquals("retryBaseDelay is correct", 200, conf.getRetryBaseDelay());
+        assertEquals("retryMaxDelay is correct", 20000, conf.getRetryMaxDelay());
+        assertEquals("circuitBreakerThreshold is correct", 3, conf.getCircuitBreakerThreshold());
+        assertEquals("circuitBreakerOpenTime is correct", 15000, conf.getCircuitBreakerOpenTime());
+    }
+
+    @Test
+    public void testConfigBuilderPopulatesBatchConfigs() {
+        AgentConfig defaults = new ClasspathResourceConfigBuilder("validConfig.xml").build();
+        assertEquals("batchLinger defaults to send interval", defaults.getSendInterval(), defaults.getBatchLinger());
+        assertEquals("batchMaxCount has default value", 1000, defaults.getBatchMaxCount());
+
+        AgentConfig conf = new ClasspathResourceConfigBuilder("validConfigWithIntervalAndSize.xml").build();
+        assertEquals("batchLinger is correct", 5000, conf.getBatchLinger());
+        assertEquals("batchMaxCount is correct", 500, conf.getBatchMaxCount());
+        assertEquals("batchMaxBytes is correct", 65536, conf.getBatchMaxBytes());
+        assertEquals("auto-tuning is disabled by default", false, conf.isBatchAutoTuneEnabled());
+
+        AgentConfig tuned = new ClasspathResourceConfigBuilder("validConfigWithRetry.xml").build();
+        assertEquals("auto-tuning is enabled", true, tuned.isBatchAutoTuneEnabled());
+        assertEquals("batchMinCount is correct", 20, tuned.getBatchMinCount());
+        assertEquals("batchMaxCount is correct", 200, tuned.getBatchMaxCount());
+    }
+
+    @Test
+    public void testConfigBuilderPopulatesMultipleEndpoints() {
+        AgentConfig conf = new ClasspathResourceConfigBuilder("validConfigWithMultipleEndpoints.xml").build();
+
+        assertEquals("both endpoints are configured", Arrays.asList("http://localhost:8808/api/1.0/saveLogArray",
+                "http://localhost:8809/api/1.0/saveLogArray"), conf.getLogServiceUris());
+        assertEquals("addressUri is the first endpoint", "http://localhost:8808/api/1.0/saveLogArray", conf.getLogServiceUri());
+    }
+
+    @Test
+    public void testConfigBuilderPopulatesSinks() {
+        AgentConfig conf = new ClasspathResourceConfigBuilder("validConfigWithSinks.xml").build();
+        assertEquals("both sinks are configured", 2, conf.getSinks().size());
+
+        SinkConfig file = conf.getSinks().get(0);
+        assertEquals("first sink is a file sink", SinkConfig.Type.FILE, file.getType());
+        assertEquals("directory is correct", "target/aino-archive", file.getTarget());
+        assertEquals("maxFileBytes is correct", 4096, file.getMaxFileBytes());
+        assertEquals("maxFiles is correct", 3, file.getMaxFiles());
+        assertEquals("queueSize is correct", 50, file.getQueueSize());
+
+        SinkConfig custom = conf.getSinks().get(1);
+        assertEquals("second sink is a custom sink", SinkConfig.Type.CLASS, custom.getType());
+        assertEquals("class is correct", "io.aino.agents.core.InMemoryApiClient", custom.getTarget());
+        assertEquals("queueSize has default value", SinkConfig.DEFAULT_QUEUE_SIZE, custom.getQueueSize());
+    }
+
+    @Test
+    public void testConfigBuilderPopulatesRecycling() {
+        AgentConfig conf = new ClasspathResourceConfigBuilder("validConfigWithSinks.xml").build();
+        assertTrue("recycling is enabled", conf.isRecyclingEnabled());
+        assertEquals("poolSize is correct", 64, conf.getRecyclingPoolSize());
+
+        AgentConfig defaults = new ClasspathResourceConfigBuilder("validConfig.xml").build();
+        assertFalse("recycling is disabled by default", defaults.isRecyclingEnabled());
+    }
+
+    @Test
+    public void testConfigBuilderPopulatesLazyValueMaxLength() {
+        AgentConfig conf = new ClasspathResourceConfigBuilder("validConfigWithSinks.xml").build();
+        assertEquals("maxLength is correct", 512, conf.getLazyValueMaxLength());
+
+        AgentConfig defaults = new ClasspathResourceConfigBuilder("validConfig.xml").build();
+        assertEquals("lazy values are not cut by default", 0, defaults.getLazyValueMaxLength());
+    }
+
+    @Test
+    public void testBuilderReadsStreamOnceAndBuildsIndependentConfigs() {
+        ClasspathResourceConfigBuilder builder = new ClasspathResourceConfigBuilder("validConfig.xml");
+        AgentConfig first = builder.build();
+        AgentConfig second = builder.build();
+
+        first.getApplications().addEntry("late", "Late application");
+        assertTrue("first config is changed", first.getApplications().entryExists("late"));
+        assertFalse("second config is not changed", second.getApplications().entryExists("late"));
+        assertEquals("both have the same values", first.getSendInterval(), second.getSendInterval());
+    }
+
+    @Test
+    public void testConfigBuilderPopulatesValidation() {
+        AgentConfig conf = new ClasspathResourceConfigBuilder("validConfigWithSinks.xml").build();
+        assertEquals("mode is correct", ValidationMode.SAMPLED, conf.getValidationMode());
+        assertEquals("sampleInterval is correct", 10, conf.getValidationSampleInterval());
+
+        AgentConfig defaults = new ClasspathResourceConfigBuilder("validConfig.xml").build();
+        assertEquals("validation is strict by default", ValidationMode.STRICT, defaults.getValidationMode());
+    }
+
 }
@@ -0,0 +1,106 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core.config;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReloadSwapsAllValuesWithoutSharingState() {
+        AgentConfig config = new ClasspathResourceConfigBuilder("validConfig.xml").build();
+        AgentConfig source = new ClasspathResourceConfigBuilder("validConfigWithSinks.xml").build();
+        KeyNameListConfig oldApplications = config.getApplications();
+
+        config.reload(source);
+
+        assertEquals("tuning values are reloaded", source.getSendInterval(), config.getSendInterval());
+        assertEquals("pool size is reloaded", 64, config.getRecyclingPoolSize());
+        assertEquals("keys are reloaded", source.getApplications().getKeys(), config.getApplications().getKeys());
+        assertNotSame("key lists are swapped", oldApplications, config.getApplications());
+
+        source.getApplications().addEntry("late", "Late application");
+        source.setSendInterval(source.getSendInterval() + 1);
+        assertFalse("source changes do not leak", config.getApplications().entryExists("late"));
+        assertEquals("source changes do not leak", source.getSendInterval() - 1, config.getSendInterval());
+    }
+
+    @Test
+    public void testChangedFileIsReloaded() throws Exception {
+        File file = folder.newFile("config.xml");
+        String xml = new String(Files.readAllBytes(new File("src/test/resources/validConfig.xml").toPath()), "UTF-8");
+        write(file, xml);
+        AgentConfig config = new FileConfigBuilder(file).build();
+
+        ConfigWatcher watcher = new ConfigWatcher(file, config);
+        ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1);
+        try {
+            watcher.start(executor);
+            write(file, xml.replace("<applications>",
+                    "<applications>\n        <application key=\"late\" name=\"Late application\" />"));
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while(!config.getApplications().entryExists("late") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue("new application should be known", config.getApplications().entryExists("late"));
+
+            write(file, "<ainoConfig>");
+            assertFalse("invalid file should not be loaded", watcher.reload());
+            assertTrue("configuration should be kept", config.getApplications().entryExists("late"));
+        } finally {
+            watcher.close();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCloseCancelsChecks() throws Exception {
+        File file = folder.newFile("config.xml");
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+        try {
+            ConfigWatcher watcher = new ConfigWatcher(file, new AgentConfig());
+            watcher.start(executor);
+            assertEquals("checks should be scheduled on the executor", 1, executor.getQueue().size());
+            watcher.close();
+            assertEquals("checks should be cancelled", 0, executor.getQueue().size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes("UTF-8"));
+    }
+}
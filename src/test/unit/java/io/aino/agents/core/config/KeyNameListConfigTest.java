@@ -19,7 +19,9 @@ package io.aino.agents.core.config;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Set;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
@@ -62,6 +64,16 @@ public class KeyNameListConfigTest {
         assertFalse("entryExists() returns false", object.entryExists("test911"));
     }
 
+    @Test
+    public void testKeysAreASnapshot() {
+        object.addEntry("test1", "test11");
+        Set<String> keys = object.getKeys();
+        object.addEntry("test2", "test21");
+
+        assertEquals("earlier keys are not changed by additions", Collections.singleton("test1"), keys);
+        assertEquals("new keys are visible", 2, object.getKeys().size());
+    }
+
     @Test(expected = InvalidAgentConfigException.class)
     public void testThrowsWithDuplicateEntry() {
         object.addEntry("hoi", ":D");
@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2016 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core.overloadchecker;
+
+import io.aino.agents.core.AgentMetrics;
+import io.aino.agents.core.Transaction;
+import io.aino.agents.core.TransactionDataBuffer;
+import io.aino.agents.core.TransactionSerializable;
+import io.aino.agents.core.config.AgentConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SenderOverloadCheckerTaskTest {
+
+    private AgentConfig config;
+    private TransactionDataBuffer buffer;
+    private CountingObserver observer;
+
+    @Before
+    public void setUp() {
+        config = new AgentConfig();
+        config.setSizeThreshold(5);
+        config.setMinSenderThreads(1);
+        config.setMaxSenderThreads(3);
+        buffer = new TransactionDataBuffer(5);
+        observer = new CountingObserver();
+    }
+
+    @Test
+    public void testThreadIsAddedWhenQueueBacksUp() {
+        addTransactions(20);
+        observer.threads = 1;
+
+        new SenderOverloadCheckerTask(observer, buffer, config, new AgentMetrics()).run();
+
+        assertEquals("one thread should be added", 1, observer.increased);
+        assertEquals("no thread should be retired", 0, observer.decreased);
+    }
+
+    @Test
+    public void testThreadCountIsBoundedByMaximum() {
+        addTransactions(20);
+        observer.threads = 3;
+
+        new SenderOverloadCheckerTask(observer, buffer, config, new AgentMetrics()).run();
+
+        assertEquals("no thread should be added", 0, observer.increased);
+    }
+
+    @Test
+    public void testIdleThreadIsRetired() {
+        observer.threads = 3;
+
+        new SenderOverloadCheckerTask(observer, buffer, config, new AgentMetrics()).run();
+
+        assertEquals("one thread should be retired", 1, observer.decreased);
+    }
+
+    @Test
+    public void testThreadCountIsBoundedByMinimum() {
+        observer.threads = 1;
+
+        new SenderOverloadCheckerTask(observer, buffer, config, new AgentMetrics()).run();
+
+        assertEquals("no thread should be retired", 0, observer.decreased);
+        assertEquals("no thread should be added", 0, observer.increased);
+    }
+
+    @Test
+    public void testThreadsAskedForAreCountedForObserverWithoutThreadCount() {
+        addTransactions(20);
+        final int[] increased = new int[1];
+        SenderOverloadCheckerTask task = new SenderOverloadCheckerTask(new ThreadAmountObserver() {
+            @Override
+            public void increaseThreads() {
+                increased[0]++;
+            }
+
+            @Override
+            public void decreaseThreads() {
+            }
+        }, buffer, config, new AgentMetrics());
+
+        for (int i = 0; i < 5; i++) {
+            task.run();
+        }
+
+        assertEquals("threads should be added up to the maximum", 2, increased[0]);
+    }
+
+    private void addTransactions(int count) {
+        for (int i = 0; i < count; i++) {
+            buffer.addTransaction(TransactionSerializable.from(new Transaction(config)));
+        }
+    }
+
+    private static class CountingObserver implements ThreadCountAwareObserver {
+        private int threads;
+        private int increased;
+        private int decreased;
+
+        @Override
+        public void increaseThreads() {
+            increased++;
+        }
+
+        @Override
+        public void decreaseThreads() {
+            decreased++;
+        }
+
+        @Override
+        public int getSenderThreadCount() {
+            return threads;
+        }
+    }
+}
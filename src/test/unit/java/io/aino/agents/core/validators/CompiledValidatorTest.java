@@ -0,0 +1,120 @@
+/*
+ *  Copyright 2017 Aino.io
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.aino.agents.core.validators;
+
+import io.aino.agents.core.Transaction;
+import io.aino.agents.core.config.AgentConfig;
+import io.aino.agents.core.config.ClasspathResourceConfigBuilder;
+import io.aino.agents.core.config.ValidationMode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CompiledValidatorTest {
+
+    private AgentConfig config;
+
+    @Before
+    public void setUp() {
+        config = new ClasspathResourceConfigBuilder("validConfig.xml").build();
+    }
+
+    @Test
+    public void testReportsFailuresAsResultCodes() {
+        CompiledValidator validator = new CompiledValidator(config);
+        assertSame(ValidationResult.VALID, validator.check(transaction("app01", "esb")));
+        assertSame(ValidationResult.MISSING_FROM, validator.check(transaction(" ", "esb")));
+        assertSame(ValidationResult.MISSING_TO, validator.check(transaction("app01", null)));
+        assertSame(ValidationResult.UNKNOWN_FROM, validator.check(transaction("app09", "esb")));
+        assertSame(ValidationResult.UNKNOWN_TO, validator.check(transaction("app01", "esb01")));
+
+        Transaction unknownOperation = transaction("app01", "esb");
+        unknownOperation.setOperationKey("nonexistent");
+        assertSame(ValidationResult.UNKNOWN_OPERATION, validator.check(unknownOperation));
+
+        Transaction unknownIdType = transaction("app01", "esb");
+        unknownIdType.addIdsByTypeKey("nonexistent", new long[] { 1 });
+        assertSame(ValidationResult.UNKNOWN_ID_TYPE, validator.check(unknownIdType));
+        assertEquals("IdType not found: nonexistent",
+                validator.toException(unknownIdType, ValidationResult.UNKNOWN_ID_TYPE).getMessage());
+    }
+
+    @Test
+    public void testKeysAddedToConfigurationLaterAreKnown() {
+        CompiledValidator validator = new CompiledValidator(config);
+        config.getApplications().addEntry("late", "Late application");
+        assertSame(ValidationResult.VALID, validator.check(transaction("late", "esb")));
+    }
+
+    @Test
+    public void testKeysAddedAfterReloadAreKnown() {
+        CompiledValidator validator = new CompiledValidator(config);
+        AgentConfig previous = new AgentConfig();
+        previous.reload(config);
+        config.reload(new ClasspathResourceConfigBuilder("validConfig.xml").build());
+        config.getIdTypes().addEntry("late", "Late id type");
+        previous.getIdTypes().addEntry("stale", "Stale id type");
+
+        Transaction late = transaction("app01", "esb");
+        late.addIdsByTypeKey("late", new long[] { 1 });
+        assertSame(ValidationResult.VALID, validator.check(late));
+        Transaction stale = transaction("app01", "esb");
+        stale.addIdsByTypeKey("stale", new long[] { 1 });
+        assertSame(ValidationResult.UNKNOWN_ID_TYPE, validator.check(stale));
+    }
+
+    @Test
+    public void testModeOffSkipsValidation() {
+        config.setValidationMode(ValidationMode.OFF);
+        CompiledValidator validator = new CompiledValidator(config);
+        Transaction invalid = transaction("app09", "esb");
+
+        assertSame(ValidationResult.VALID, validator.check(invalid));
+        assertSame("checkAll ignores the mode", ValidationResult.UNKNOWN_FROM, validator.checkAll(invalid));
+    }
+
+    @Test
+    public void testSampledModeValidatesSomeTransactions() {
+        config.setValidationMode(ValidationMode.SAMPLED);
+        config.setValidationSampleInterval(4);
+        CompiledValidator validator = new CompiledValidator(config);
+        Transaction invalid = transaction("app09", "esb");
+
+        int failures = 0;
+        for(int i = 0; i < 4000; i++) {
+            if(!validator.check(invalid).isValid()) {
+                failures++;
+            }
+        }
+        assertEquals("about one in four should be validated", 1000, failures, 200);
+
+        config.setValidationSampleInterval(1);
+        assertSame(ValidationResult.UNKNOWN_FROM, new CompiledValidator(config).check(invalid));
+    }
+
+    private Transaction transaction(String from, String to) {
+        Transaction transaction = new Transaction(config);
+        transaction.setFromKey(from);
+        transaction.setToKey(to);
+        transaction.addIdsByTypeKey("dataType01", Arrays.asList("1"));
+        return transaction;
+    }
+}
@@ -58,6 +58,13 @@ public class IdTypeValidatorTest {
         agent.addTransaction(tle);
     }
 
+    @Test(expected = AgentCoreException.class)
+    public void testThrowsWithInvalidNumericIdType() {
+        tle.addIdsByTypeKey("invalidDataType", new long[] { 123, 6666 });
+
+        agent.addTransaction(tle);
+    }
+
     @Test
     public void testDoesNotThrowWithMultipleValidIdTypes() {
         List<String> idList1 = tle.addIdTypeKey("dataType01");